@@ -0,0 +1,107 @@
+package com.example.produktapi.benchmarks;
+
+import com.example.produktapi.config.ProductProtobufHttpMessageConverter;
+import com.example.produktapi.model.Product;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding and decoding the whole catalog of {@link #size} products in every format the API negotiates. The
+ * size of each encoding, plain and gzipped, is printed once per trial. Jackson formats use an
+ * {@link ObjectMapper} configured the way Spring MVC configures its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductFormatBenchmark {
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    String format;
+
+    @Param({"100000"})
+    int size;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private ProductProtobufHttpMessageConverter protobuf;
+    private List<Product> products;
+    private byte[] encoded;
+
+    @Setup
+    public void encodeCatalog() throws IOException {
+        ObjectMapper objectMapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+            case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+            default -> null;
+        };
+        if (objectMapper != null) {
+            writer = objectMapper.writerFor(new TypeReference<List<Product>>() { });
+            reader = objectMapper.readerFor(new TypeReference<List<Product>>() { });
+        } else {
+            protobuf = new ProductProtobufHttpMessageConverter(new SimpleMeterRegistry());
+        }
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product("Produkt " + i, i * 0.5, "kategori " + i % 100,
+                    "En bra produkt att ha", "https://example.com/img/" + i + ".jpg");
+            product.setId(i + 1);
+            product.setVersion(0);
+            products.add(product);
+        }
+        encoded = write();
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(encoded);
+        }
+        System.out.printf("%n%s, %d products: %d bytes, %d bytes gzipped%n",
+                format, size, encoded.length, gzipped.size());
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        if (protobuf != null) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(encoded != null ? encoded.length : 1024);
+            protobuf.writeTo(products, output);
+            return output.toByteArray();
+        }
+        return writer.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public List<Product> read() throws IOException {
+        if (protobuf != null) {
+            return protobuf.readProducts(new ByteArrayInputStream(encoded));
+        }
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.produktapi.benchmarks;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductPage;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of product lists of {@link #size} products, with an {@link ObjectMapper} configured
+ * the way Spring MVC configures the one it writes responses with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductSerializationBenchmark {
+
+    @Param({"20", "1000", "100000"})
+    int size;
+
+    private ObjectWriter listWriter;
+    private ObjectWriter pageWriter;
+    private ObjectReader listReader;
+    private List<Product> products;
+    private ProductPage<Product> page;
+    private byte[] json;
+
+    @Setup
+    public void createProducts() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        listWriter = objectMapper.writerFor(new TypeReference<List<Product>>() { });
+        pageWriter = objectMapper.writerFor(new TypeReference<ProductPage<Product>>() { });
+        listReader = objectMapper.readerFor(new TypeReference<List<Product>>() { });
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product("Produkt " + i, i * 0.5, "kategori " + i % 100,
+                    "En bra produkt att ha", "https://example.com/img/" + i + ".jpg");
+            product.setId(i + 1);
+            product.setVersion(0);
+            products.add(product);
+        }
+        page = new ProductPage<>(products, "eyJpZCI6MTAwMH0");
+        json = listWriter.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] writeProductList() throws IOException {
+        return listWriter.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] writeProductPage() throws IOException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Product> readProductList() throws IOException {
+        return listReader.readValue(json);
+    }
+}
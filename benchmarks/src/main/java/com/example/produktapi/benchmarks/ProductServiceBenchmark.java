@@ -0,0 +1,75 @@
+package com.example.produktapi.benchmarks;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductService} reads and inserts against H2 seeded with {@link #rows} products, with the application's
+ * default configuration, including the product cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ProductServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+
+    private SeededCatalog catalog;
+    private ProductService productService;
+    private int[] ids;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int added;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        catalog = new SeededCatalog(rows);
+        productService = catalog.getBean(ProductService.class);
+        ids = catalog.ids();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        catalog.close();
+    }
+
+    @Benchmark
+    public List<Product> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    @Benchmark
+    public List<Product> getProductsByCategory() {
+        return productService.getProductsByCategory("kategori " + random.nextInt(SeededCatalog.CATEGORIES));
+    }
+
+    @Benchmark
+    public Product getProductById() {
+        return productService.getProductById(ids[random.nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Product addProduct() {
+        return productService.addProduct(new Product("Ny produkt " + added++, 10.0, "kategori 1", "ny", "url"));
+    }
+}
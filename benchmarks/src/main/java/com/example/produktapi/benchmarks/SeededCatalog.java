@@ -0,0 +1,44 @@
+package com.example.produktapi.benchmarks;
+
+import com.example.produktapi.ProduktapiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The application without a web server, its in-memory H2 database filled with generated products on top
+ * of the rows from data.sql.
+ */
+final class SeededCatalog implements AutoCloseable {
+
+    static final int CATEGORIES = 100;
+
+    private final ConfigurableApplicationContext context;
+
+    SeededCatalog(int rows) {
+        context = new SpringApplicationBuilder(ProduktapiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN");
+        context.getBean(JdbcTemplate.class).update("INSERT INTO product(title, price, category, description, image) " +
+                "SELECT 'Produkt ' || x, x * 0.5, 'kategori ' || MOD(x, ?), 'En bra produkt att ha', 'url' " +
+                "FROM SYSTEM_RANGE(1, ?)", CATEGORIES, rows);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * @return the ids of every product, the sequence hands out blocks so they are not consecutive
+     */
+    int[] ids() {
+        return context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM product ORDER BY id", Integer.class)
+                .stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
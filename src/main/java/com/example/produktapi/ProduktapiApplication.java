@@ -1,9 +1,17 @@
 package com.example.produktapi;
 
+import com.example.produktapi.config.NativeImageHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
-@SpringBootApplication
+// the reactive read API configures its own R2DBC access, see ReactiveReadConfiguration
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(NativeImageHints.class)
 public class ProduktapiApplication {
 
 	public static void main(String[] args) {
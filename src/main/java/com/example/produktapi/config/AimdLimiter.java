@@ -0,0 +1,64 @@
+package com.example.produktapi.config;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit that follows the latency of the requests it lets through, additive increase and
+ * multiplicative decrease like TCP congestion control. While requests finish within the target latency the limit
+ * grows by one for every limit's worth of them, as long as they actually use it. A request that takes longer, or
+ * fails, cuts the limit to {@code backoffRatio} of what it was. A request over the limit is refused at once
+ * instead of waiting, so the ones let through keep their latency when the database cannot keep up.
+ */
+public class AimdLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+    private final LongAdder rejected = new LongAdder();
+
+    public AimdLimiter(ConcurrencyLimitProperties.Limit settings) {
+        this.minLimit = settings.getMinLimit();
+        this.maxLimit = settings.getMaxLimit();
+        this.targetLatencyNanos = settings.getTargetLatency().toNanos();
+        this.backoffRatio = settings.getBackoffRatio();
+        this.limit = settings.getInitialLimit();
+    }
+
+    /**
+     * @return whether the request may go ahead, in which case it must be {@link #release released}
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected.increment();
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void release(long latencyNanos, boolean failed) {
+        if (failed || latencyNanos > targetLatencyNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= limit) {
+            // a limit that is not used is not known to be safe, so it only grows under load
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.produktapi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Load shedding for the product endpoints when {@code produktapi.concurrency-limit.enabled=true}, see
+ * {@link ConcurrencyLimitInterceptor}. Exports, batch imports and the change feed are left out: they run for as long
+ * as their data takes, so they would hold places for minutes and every one of them would count as slow and cut the
+ * limit for the point reads and writes it is meant for.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "produktapi.concurrency-limit.enabled", havingValue = "true")
+public class ConcurrencyLimitConfiguration implements WebMvcConfigurer {
+
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    public ConcurrencyLimitConfiguration(ConcurrencyLimitProperties properties) {
+        this.concurrencyLimitInterceptor = new ConcurrencyLimitInterceptor(properties);
+    }
+
+    @Bean
+    public ConcurrencyLimitInterceptor concurrencyLimitInterceptor() {
+        return concurrencyLimitInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyLimitInterceptor)
+                .excludePathPatterns("/products/export", "/products/batch", "/products/changes/**");
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.controller.ProductController;
+import com.example.produktapi.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Keeps the requests to {@link ProductController} within an {@link AimdLimiter} each for reads and writes, so
+ * that a saturated database shows up as fast 503s for some requests rather than slow answers for all of them.
+ * A request that continues asynchronously holds its place until its async dispatch completes.
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor, MeterBinder {
+
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".PERMIT";
+
+    private final AimdLimiter reads;
+    private final AimdLimiter writes;
+    private final ConcurrencyLimitProperties properties;
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimitProperties properties) {
+        this.reads = new AimdLimiter(properties.getRead());
+        this.writes = new AimdLimiter(properties.getWrite());
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method) || !ProductController.class.isAssignableFrom(method.getBeanType())
+                || request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            // not a product endpoint, or the async dispatch of a request that already holds a place
+            return true;
+        }
+        AimdLimiter limiter = isRead(request) ? reads : writes;
+        if (!limiter.tryAcquire()) {
+            throw new ServiceUnavailableException("För många samtidiga förfrågningar, försök igen om en stund",
+                    properties.getRetryAfter());
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(limiter, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof Permit permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permit.limiter.release(System.nanoTime() - permit.start, ex != null || response.getStatus() >= 500);
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, reads, "read");
+        bind(registry, writes, "write");
+    }
+
+    private static void bind(MeterRegistry registry, AimdLimiter limiter, String name) {
+        Gauge.builder("produktapi.concurrency.limit", limiter, AimdLimiter::getLimit)
+                .description("Requests let through at once")
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder("produktapi.concurrency.in-flight", limiter, AimdLimiter::getInFlight)
+                .description("Requests being handled")
+                .tag("name", name)
+                .register(registry);
+        FunctionCounter.builder("produktapi.concurrency.rejected", limiter, AimdLimiter::getRejected)
+                .description("Requests refused with 503 because the limit was reached")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private record Permit(AimdLimiter limiter, long start) {
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductChangeEntry;
+import com.example.produktapi.model.ProductChanges;
+import com.example.produktapi.service.ProductChangeLog;
+import com.example.produktapi.service.ProductService;
+import com.example.produktapi.service.ReplicasSyncedEvent;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in for read replicas: in-memory H2 databases next to the primary, with pools like the primary's. They
+ * are kept in sync the way a delta sync client is, by pulling {@link ProductChangeLog#getChangesSince} every
+ * {@code produktapi.replicas.sync-interval}, so they lag behind the primary by about that much like asynchronous
+ * replicas do. The first sync copies the whole catalog before the web server starts.
+ */
+public class LocalReplicas implements SmartLifecycle, DisposableBean, MeterBinder {
+
+    private static final String MERGE = "MERGE INTO product (id, title, price, category, description, image, " +
+            "version) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE = "DELETE FROM product WHERE id = ?";
+
+    private final Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+    private final ObjectProvider<ProductChangeLog> productChangeLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long syncIntervalNanos;
+
+    private String token;
+    private volatile long caughtUpAt = System.nanoTime();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private Thread syncer;
+    private volatile boolean running;
+
+    /**
+     * @param urls JDBC URLs of empty H2 databases by replica name
+     */
+    public LocalReplicas(HikariConfig primary, Map<String, String> urls, ReplicaProperties properties,
+                         ObjectProvider<ProductChangeLog> productChangeLog, ApplicationEventPublisher eventPublisher) {
+        this.productChangeLog = productChangeLog;
+        this.eventPublisher = eventPublisher;
+        this.syncIntervalNanos = properties.getSyncInterval().toNanos();
+        urls.forEach((name, url) -> {
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setJdbcUrl(url);
+            config.setPoolName(name);
+            HikariDataSource replica = new HikariDataSource(config);
+            replicas.put(name, replica);
+            createSchema(replica);
+        });
+    }
+
+    public Map<String, HikariDataSource> getDataSources() {
+        return replicas;
+    }
+
+    private static void createSchema(HikariDataSource replica) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replica);
+        try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+            // changes arrive with only the latest state of each product, two products that swapped titles
+            // would collide on the way, and the primary keeps titles unique already
+            statement.execute("ALTER TABLE product DROP CONSTRAINT uk_product_title");
+            // nothing reads changes from a replica
+            statement.execute("DROP TRIGGER product_delete_tombstone");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Kunde inte skapa repliken " + replica.getPoolName(), e);
+        }
+    }
+
+    /**
+     * Copies everything committed on the primary since the last sync to every replica.
+     */
+    synchronized void sync() {
+        long started = System.nanoTime();
+        ProductChanges changes;
+        do {
+            changes = productChangeLog.getObject().getChangesSince(token, ProductService.MAX_PAGE_SIZE);
+            if (!changes.getChanges().isEmpty()) {
+                for (HikariDataSource replica : replicas.values()) {
+                    apply(replica, changes);
+                }
+                applied.add(changes.getChanges().size());
+                Set<Integer> ids = new LinkedHashSet<>();
+                for (ProductChangeEntry change : changes.getChanges()) {
+                    ids.add(change.getId());
+                }
+                eventPublisher.publishEvent(new ReplicasSyncedEvent(ids));
+            }
+            token = changes.getNextToken();
+        } while (changes.isMore());
+        caughtUpAt = started;
+    }
+
+    /**
+     * One transaction per page, so that a reader of the replica sees all of it or none.
+     */
+    private static void apply(HikariDataSource replica, ProductChanges changes) {
+        try (Connection connection = replica.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement merge = connection.prepareStatement(MERGE);
+                 PreparedStatement delete = connection.prepareStatement(DELETE)) {
+                for (ProductChangeEntry change : changes.getChanges()) {
+                    Product product = change.getProduct();
+                    if (product == null) {
+                        delete.setInt(1, change.getId());
+                        delete.addBatch();
+                        continue;
+                    }
+                    merge.setInt(1, product.getId());
+                    merge.setString(2, product.getTitle());
+                    merge.setObject(3, product.getPrice());
+                    merge.setString(4, product.getCategory());
+                    merge.setString(5, product.getDescription());
+                    merge.setString(6, product.getImage());
+                    merge.setInt(7, product.getVersion());
+                    merge.addBatch();
+                }
+                // ids are never used again after a delete, so merges and deletes need not keep their order
+                merge.executeBatch();
+                delete.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Kunde inte uppdatera repliken " + replica.getPoolName(), e);
+        }
+    }
+
+    private void syncContinuously() {
+        while (running) {
+            LockSupport.parkNanos(this, syncIntervalNanos);
+            if (!running) {
+                return;
+            }
+            try {
+                sync();
+            } catch (RuntimeException e) {
+                // the next round starts over from the same token
+                failures.increment();
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        sync();
+        running = true;
+        syncer = new Thread(this::syncContinuously, "replica-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        LockSupport.unpark(syncer);
+        try {
+            syncer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Before the web server starts serving reads, and stopped after it has stopped.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public void destroy() {
+        replicas.values().forEach(HikariDataSource::close);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // the pools are not beans, so they are left out of the hikaricp meters of the primary's pool
+        for (HikariDataSource replica : replicas.values()) {
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+        Gauge.builder("produktapi.replicas.lag", this, local -> (System.nanoTime() - local.caughtUpAt) / 1e9)
+                .description("Time since the replicas last had every change committed on the primary")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("produktapi.replicas.applied", applied, LongAdder::sum)
+                .description("Changes copied to the replicas")
+                .register(registry);
+        FunctionCounter.builder("produktapi.replicas.sync-failures", failures, LongAdder::sum)
+                .description("Syncs that failed and were tried again")
+                .register(registry);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.produktapi.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary formats for clients that ask for them with Accept or send them with Content-Type: CBOR, Smile and
+ * Protocol Buffers. They are added after JSON, which stays what a client gets when it accepts anything.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MessageFormatConfiguration implements WebMvcConfigurer {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilders;
+    private final MeterRegistry meterRegistry;
+
+    public MessageFormatConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilders,
+                                      MeterRegistry meterRegistry) {
+        this.objectMapperBuilders = objectMapperBuilders;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring MVC's own CBOR and Smile converters use an ObjectMapper without the settings of this application
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        int json = 0;
+        while (json < converters.size() && !(converters.get(json) instanceof MappingJackson2HttpMessageConverter)) {
+            json++;
+        }
+        // a new builder every time, the one Spring Boot provides is a prototype
+        converters.addAll(Math.min(json + 1, converters.size()), List.of(
+                new TimedJackson2HttpMessageConverter(objectMapperBuilders.getObject().factory(new CBORFactory()).build(),
+                        meterRegistry, MediaType.APPLICATION_CBOR),
+                new TimedJackson2HttpMessageConverter(objectMapperBuilders.getObject().factory(new SmileFactory()).build(),
+                        meterRegistry, APPLICATION_SMILE),
+                new ProductProtobufHttpMessageConverter(meterRegistry)));
+    }
+}
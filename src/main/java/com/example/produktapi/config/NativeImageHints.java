@@ -0,0 +1,18 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.repository.ProductTombstoneTrigger;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * What a native image cannot find out by itself: classes this application only reaches by reflection.
+ */
+public class NativeImageHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // H2 creates the trigger named in schema.sql by its class name
+        hints.reflection().registerType(ProductTombstoneTrigger.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
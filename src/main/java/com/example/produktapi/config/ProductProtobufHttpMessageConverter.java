@@ -0,0 +1,276 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.model.FilteredProductPage;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductField;
+import com.example.produktapi.model.ProductPage;
+import com.example.produktapi.model.ProductSummary;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes products as Protocol Buffers, with the messages declared in {@code proto/product.proto}.
+ * The messages are encoded by hand with protobuf-java's coded streams instead of generated classes, so a
+ * product goes to the wire straight from the entity without being copied into a message first.
+ */
+public class ProductProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // field numbers and tags from product.proto
+    private static final int PAGE_ITEMS = 1;
+    private static final int PAGE_NEXT_CURSOR = 2;
+    private static final int PAGE_CATEGORY_COUNTS = 3;
+    private static final int LIST_PRODUCTS = 1;
+    private static final int ENTRY_KEY = 1;
+    private static final int ENTRY_VALUE = 2;
+
+    private static final int ID_TAG = 1 << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int TITLE_TAG = 2 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int PRICE_TAG = 3 << 3 | WireFormat.WIRETYPE_FIXED64;
+    private static final int CATEGORY_TAG = 4 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int DESCRIPTION_TAG = 5 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int IMAGE_TAG = 6 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int VERSION_TAG = 7 << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int LIST_PRODUCTS_TAG = LIST_PRODUCTS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+    private static final ProductField[] FIELDS = ProductField.values();
+
+    private final MeterRegistry meterRegistry;
+
+    public ProductProtobufHttpMessageConverter(MeterRegistry meterRegistry) {
+        super(APPLICATION_PROTOBUF);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Product.class.isAssignableFrom(clazz) || ProductPage.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == Product.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (ResolvableType.forType(type).toClass() == Product.class || isProductList(type)) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return (supports(clazz) || isProductList(type)) && canWrite(mediaType);
+    }
+
+    /**
+     * Lists are only written when the declared type says they hold products, which this method cannot check.
+     */
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || List.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    private static boolean isProductList(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolved.toClass())
+                && Product.class.isAssignableFrom(resolved.getGeneric(0).toClass());
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return isProductList(type) ? readProducts(inputMessage) : readInternal(Product.class, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return readProduct(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Ogiltig protobuf: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    private List<Product> readProducts(HttpInputMessage inputMessage) throws IOException {
+        try {
+            return readProducts(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Ogiltig protobuf: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            writeTo(object, outputMessage.getBody());
+        } finally {
+            sample.stop(TimedJackson2HttpMessageConverter.timer(meterRegistry, object, type, outputMessage));
+        }
+    }
+
+    /**
+     * Writes a {@code Product}, a {@code ProductPage} or a {@code ProductList} message, depending on the value.
+     * Pages of summaries and of selected fields are written as pages of products with only those fields set.
+     */
+    public void writeTo(Object value, OutputStream outputStream) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+        if (value instanceof Product product) {
+            writeFields(output, fieldsOf(product));
+        } else if (value instanceof ProductPage<?> page) {
+            for (Object item : page.getItems()) {
+                writeProduct(output, PAGE_ITEMS, fieldsOf(item));
+            }
+            if (page.getNextCursor() != null) {
+                output.writeString(PAGE_NEXT_CURSOR, page.getNextCursor());
+            }
+            if (page instanceof FilteredProductPage<?> filtered) {
+                for (Map.Entry<String, Integer> count : filtered.getCategoryCounts().entrySet()) {
+                    output.writeTag(PAGE_CATEGORY_COUNTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                    output.writeUInt32NoTag(CodedOutputStream.computeStringSize(ENTRY_KEY, count.getKey())
+                            + CodedOutputStream.computeInt32Size(ENTRY_VALUE, count.getValue()));
+                    output.writeString(ENTRY_KEY, count.getKey());
+                    output.writeInt32(ENTRY_VALUE, count.getValue());
+                }
+            }
+        } else if (value instanceof List<?> products) {
+            for (Object product : products) {
+                writeProduct(output, LIST_PRODUCTS, fieldsOf(product));
+            }
+        } else {
+            throw new HttpMessageNotWritableException("Kan inte skriva " + value.getClass().getName() + " som protobuf");
+        }
+        output.flush();
+    }
+
+    public Product readProduct(InputStream inputStream) throws IOException {
+        return readProduct(CodedInputStream.newInstance(inputStream));
+    }
+
+    public List<Product> readProducts(InputStream inputStream) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(inputStream);
+        List<Product> products = new ArrayList<>();
+        for (int tag; (tag = input.readTag()) != 0; ) {
+            if (tag == LIST_PRODUCTS_TAG) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                products.add(readProduct(input));
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Reads fields until the end of the input or of the current limit. Unknown fields are skipped, as protobuf
+     * requires, so that newer clients can talk to this server.
+     */
+    private static Product readProduct(CodedInputStream input) throws IOException {
+        Product product = new Product();
+        for (int tag; (tag = input.readTag()) != 0; ) {
+            switch (tag) {
+                case ID_TAG -> product.setId(input.readInt32());
+                case TITLE_TAG -> product.setTitle(input.readString());
+                case PRICE_TAG -> product.setPrice(input.readDouble());
+                case CATEGORY_TAG -> product.setCategory(input.readString());
+                case DESCRIPTION_TAG -> product.setDescription(input.readString());
+                case IMAGE_TAG -> product.setImage(input.readString());
+                case VERSION_TAG -> product.setVersion(input.readInt32());
+                default -> input.skipField(tag);
+            }
+        }
+        return product;
+    }
+
+    /**
+     * @return the value of every field indexed by {@link ProductField#ordinal()}, {@code null} for fields the
+     * item does not have
+     */
+    private static Object[] fieldsOf(Object item) {
+        Object[] values = new Object[FIELDS.length];
+        if (item instanceof Product product) {
+            for (ProductField field : FIELDS) {
+                values[field.ordinal()] = field.valueOf(product);
+            }
+        } else if (item instanceof ProductSummary summary) {
+            values[ProductField.ID.ordinal()] = summary.getId();
+            values[ProductField.TITLE.ordinal()] = summary.getTitle();
+            values[ProductField.PRICE.ordinal()] = summary.getPrice();
+            values[ProductField.IMAGE.ordinal()] = summary.getImage();
+        } else if (item instanceof Map<?, ?> row) {
+            for (Map.Entry<?, ?> property : row.entrySet()) {
+                values[ProductField.fromParameter(property.getKey().toString()).ordinal()] = property.getValue();
+            }
+        } else {
+            throw new HttpMessageNotWritableException("Kan inte skriva " + item.getClass().getName() + " som protobuf");
+        }
+        return values;
+    }
+
+    private static void writeProduct(CodedOutputStream output, int fieldNumber, Object[] values) throws IOException {
+        output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(sizeOf(values));
+        writeFields(output, values);
+    }
+
+    private static int sizeOf(Object[] values) {
+        int size = 0;
+        for (ProductField field : FIELDS) {
+            Object value = values[field.ordinal()];
+            if (value instanceof Integer number) {
+                size += CodedOutputStream.computeInt32Size(fieldNumber(field), number);
+            } else if (value instanceof Double number) {
+                size += CodedOutputStream.computeDoubleSize(fieldNumber(field), number);
+            } else if (value instanceof String text) {
+                size += CodedOutputStream.computeStringSize(fieldNumber(field), text);
+            }
+        }
+        return size;
+    }
+
+    private static void writeFields(CodedOutputStream output, Object[] values) throws IOException {
+        for (ProductField field : FIELDS) {
+            Object value = values[field.ordinal()];
+            if (value instanceof Integer number) {
+                output.writeInt32(fieldNumber(field), number);
+            } else if (value instanceof Double number) {
+                output.writeDouble(fieldNumber(field), number);
+            } else if (value instanceof String text) {
+                output.writeString(fieldNumber(field), text);
+            }
+        }
+    }
+
+    private static int fieldNumber(ProductField field) {
+        return switch (field) {
+            case ID -> 1;
+            case TITLE -> 2;
+            case PRICE -> 3;
+            case CATEGORY -> 4;
+            case DESCRIPTION -> 5;
+            case IMAGE -> 6;
+            case VERSION -> 7;
+        };
+    }
+}
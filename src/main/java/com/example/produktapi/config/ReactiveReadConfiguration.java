@@ -0,0 +1,67 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.controller.ReactiveProductHandler;
+import com.example.produktapi.repository.ReactiveProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+/**
+ * The reactive read API, started when {@code produktapi.reactive.enabled=true}. It reads the same H2
+ * database as JPA through its own R2DBC connection pool. Spring Boot's R2DBC auto-configuration is excluded
+ * in {@code ProduktapiApplication}: it would create a second, empty embedded database and a transaction
+ * manager that takes the place of JPA's.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "produktapi.reactive.enabled", havingValue = "true")
+public class ReactiveReadConfiguration {
+
+    private static final String H2_PREFIX = "jdbc:h2:";
+
+    @Bean
+    public ReactiveProductRepository reactiveProductRepository(DataSourceProperties dataSourceProperties,
+                                                               ReactiveReadProperties properties) {
+        String url = dataSourceProperties.determineUrl();
+        if (url == null || !url.startsWith(H2_PREFIX)) {
+            throw new IllegalStateException("Det reaktiva API:et stöder bara H2, inte " + url);
+        }
+        H2ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(url.substring(H2_PREFIX.length()))
+                .username(dataSourceProperties.determineUsername())
+                .password(dataSourceProperties.determinePassword())
+                .build());
+        return new ReactiveProductRepository(new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .maxSize(properties.getMaxConnections())
+                .build()));
+    }
+
+    @Bean
+    public ReactiveReadServer reactiveReadServer(ReactiveProductRepository reactiveProductRepository,
+                                                 ReactiveReadProperties properties, ObjectMapper objectMapper,
+                                                 ObjectProvider<ServerProperties> serverProperties) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        ReactiveProductHandler handler = new ReactiveProductHandler(reactiveProductRepository, objectMapper);
+        // compressed like the servlet API, without a web server there are no server properties
+        Compression compression = serverProperties.getIfAvailable(ServerProperties::new).getCompression();
+        return new ReactiveReadServer(RouterFunctions.toHttpHandler(handler.routes(), strategies),
+                properties.getPort(), compression);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.produktapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("produktapi.reactive")
+public class ReactiveReadProperties {
+
+    /**
+     * Whether to start the reactive read API on its own Netty server next to the servlet API.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Port of the reactive read API, 0 picks a free port.
+     */
+    private int port = 8081;
+
+    /**
+     * Maximum number of R2DBC connections the reactive read API keeps open to the database.
+     */
+    private int maxConnections = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+}
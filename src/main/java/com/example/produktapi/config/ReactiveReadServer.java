@@ -0,0 +1,61 @@
+package com.example.produktapi.config;
+
+import org.springframework.boot.web.server.Compression;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Netty server of the reactive read API. It runs on its own port next to Tomcat, which keeps serving the
+ * servlet API and every write.
+ */
+public class ReactiveReadServer implements SmartLifecycle {
+
+    private final HttpHandler httpHandler;
+    private final int port;
+    private final Compression compression;
+
+    private volatile DisposableServer server;
+
+    public ReactiveReadServer(HttpHandler httpHandler, int port, Compression compression) {
+        this.httpHandler = httpHandler;
+        this.port = port;
+        this.compression = compression;
+    }
+
+    @Override
+    public void start() {
+        HttpServer httpServer = HttpServer.create().port(port);
+        if (compression.getEnabled()) {
+            // bodies of unknown length are always compressed, as they are by Tomcat
+            httpServer = httpServer.compress((int) compression.getMinResponseSize().toBytes());
+        }
+        server = httpServer
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer running = server;
+        if (running != null) {
+            running.disposeNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return the port the server listens on, the actual one when configured with 0
+     */
+    public int getPort() {
+        DisposableServer running = server;
+        return running != null ? running.port() : port;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.service.ReadYourWrites;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Read-your-writes with read replicas. A write answers with a cookie holding when it was made, and for
+ * {@code produktapi.replicas.stickiness} after that the requests that send it back read from the primary, by then
+ * the replicas have caught up. Writes themselves read from the primary too, for the checks they make before and
+ * after writing.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "produktapi-wrote";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final Duration stickiness;
+
+    public ReadYourWritesFilter(Duration stickiness) {
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            // before the body, a failed write only costs a few reads from the primary
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(COOKIE,
+                            Long.toString(System.currentTimeMillis()))
+                    .path("/")
+                    .maxAge(Duration.ofSeconds((stickiness.toMillis() + 999) / 1000))
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build()
+                    .toString());
+        } else if (!wroteRecently(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadYourWrites.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    long since = System.currentTimeMillis() - Long.parseLong(cookie.getValue());
+                    return since >= 0 && since < stickiness.toMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
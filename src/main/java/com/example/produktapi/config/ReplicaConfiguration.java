@@ -0,0 +1,77 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.service.ProductChangeLog;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read replicas, when {@code produktapi.replicas.enabled=true}. Spring Boot's data source backs off and JPA uses
+ * {@link ReplicaRoutingDataSource} in front of the primary's pool, configured by {@code spring.datasource.*} as
+ * before, and one pool per {@link LocalReplicas local replica}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "produktapi.replicas.enabled", havingValue = "true")
+public class ReplicaConfiguration {
+
+    private static final String H2_PREFIX = "jdbc:h2:";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return primary;
+    }
+
+    @Bean
+    public LocalReplicas localReplicas(HikariDataSource primaryDataSource, DataSourceProperties dataSourceProperties,
+                                       ReplicaProperties properties, ObjectProvider<ProductChangeLog> productChangeLog,
+                                       ApplicationEventPublisher eventPublisher) {
+        String url = dataSourceProperties.determineUrl();
+        if (url == null || !url.startsWith(H2_PREFIX)) {
+            throw new IllegalStateException("Lokala repliker stöds bara för H2, inte " + url);
+        }
+        if (properties.getCount() < 1) {
+            throw new IllegalStateException("produktapi.replicas.count måste vara minst 1");
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (int i = 1; i <= properties.getCount(); i++) {
+            urls.put("replica-" + i, H2_PREFIX + "mem:" + dataSourceProperties.determineDatabaseName() + "-replica-" + i
+                    + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        }
+        return new LocalReplicas(primaryDataSource, urls, properties, productChangeLog, eventPublisher);
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             LocalReplicas localReplicas) {
+        return new ReplicaRoutingDataSource(primaryDataSource, localReplicas.getDataSources());
+    }
+
+    /**
+     * The data source of JPA and everything else. The connection is taken at the first statement, once the
+     * transaction has been marked read-only or not.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaProperties properties) {
+        return new ReadYourWritesFilter(properties.getStickiness());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.produktapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("produktapi.replicas")
+public class ReplicaProperties {
+
+    /**
+     * Whether read-only transactions go to read replicas, in-memory H2 databases next to the primary.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of replicas, read-only transactions take turns among them.
+     */
+    private int count = 1;
+
+    /**
+     * How long after a write the reads of the same client still go to the primary.
+     */
+    private Duration stickiness = Duration.ofSeconds(2);
+
+    /**
+     * How often the replicas copy the changes committed on the primary, which is about how far they lag behind.
+     */
+    private Duration syncInterval = Duration.ofMillis(50);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public Duration getStickiness() {
+        return stickiness;
+    }
+
+    public void setStickiness(Duration stickiness) {
+        this.stickiness = stickiness;
+    }
+
+    public Duration getSyncInterval() {
+        return syncInterval;
+    }
+
+    public void setSyncInterval(Duration syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.service.ReadYourWrites;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out connections to a read replica for read-only transactions, taking turns among the replicas, and to
+ * the primary for everything else, including reads outside a transaction and reads of a client that has just
+ * written (see {@link ReadYourWrites}).
+ * <p>
+ * A transaction manager takes its connection before it marks the transaction read-only, so this has to sit behind
+ * a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which takes the connection at the
+ * first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder {
+
+    static final String PRIMARY = "primary";
+
+    private final List<String> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, LongAdder> connections = new LinkedHashMap<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, ? extends DataSource> replicas) {
+        this.replicas = List.copyOf(replicas.keySet());
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        connections.put(PRIMARY, new LongAdder());
+        for (String replica : this.replicas) {
+            connections.put(replica, new LongAdder());
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isActive()
+                ? replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()))
+                : PRIMARY;
+        connections.get(target).increment();
+        return target;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        connections.forEach((name, count) ->
+                FunctionCounter.builder("produktapi.datasource.connections", count, LongAdder::sum)
+                        .description("Connections taken from the primary or a read replica")
+                        .tag("name", name)
+                        .register(registry));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import com.example.produktapi.service.ReadYourWrites;
+import jakarta.persistence.EntityManagerFactory;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.PlatformTransactionManagerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.io.Serializable;
+import java.net.URI;
+
+/**
+ * Hibernate's second-level cache when {@code produktapi.second-level-cache.enabled=true}: products by id and the
+ * results of the queries marked cacheable in {@code ProductRepository}, kept in Ehcache through JCache. Every
+ * region is bounded on the heap, optionally with an off-heap tier behind it. This sits below {@code ProductCache}
+ * and also serves what that does not cache, such as the products of a category.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "produktapi.second-level-cache.enabled", havingValue = "true")
+public class SecondLevelCacheConfiguration {
+
+    /**
+     * One per application context, tests start several in one JVM and each has a database of its own.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(SecondLevelCacheProperties properties) {
+        ResourcePoolsBuilder pools = ResourcePoolsBuilder.heap(properties.getHeapEntries());
+        if (properties.getOffHeapSize().toBytes() > 0) {
+            pools = pools.offheap(Math.max(1, properties.getOffHeapSize().toMegabytes()), MemoryUnit.MB);
+        }
+        // off-heap entries are serialized, Hibernate's keys and entries all are serializable
+        CacheConfiguration<Serializable, Serializable> region = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Serializable.class, Serializable.class, pools)
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(properties.getTimeToLive()))
+                .build();
+        // one entry per table, they must not expire or be evicted before the query results that depend on them
+        CacheConfiguration<Serializable, Serializable> timestamps = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Serializable.class, Serializable.class, ResourcePoolsBuilder.heap(1000))
+                .build();
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("produktapi:" + Long.toString(System.nanoTime(), 36)),
+                ConfigurationBuilder.newConfigurationBuilder()
+                        .withCache(Product.class.getName(), region)
+                        .withCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region)
+                        .withCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, timestamps)
+                        .build());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            // every region is created above, a region nobody configured would be unbounded
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+        };
+    }
+
+    /**
+     * A client reading its own write reads past the cache, which may hold what a read replica returned before
+     * the write reached it, and caches what it read from the primary instead.
+     */
+    @Bean
+    public PlatformTransactionManagerCustomizer<JpaTransactionManager> readYourWritesCacheMode() {
+        return transactionManager -> transactionManager.setEntityManagerInitializer(entityManager -> {
+            if (ReadYourWrites.isActive()) {
+                entityManager.unwrap(Session.class).setCacheMode(CacheMode.REFRESH);
+            }
+        });
+    }
+
+    @Bean
+    public SecondLevelCacheEviction secondLevelCacheEviction(EntityManagerFactory entityManagerFactory) {
+        return new SecondLevelCacheEviction(entityManagerFactory);
+    }
+
+    /**
+     * Puts {@link SecondLevelCacheEviction} around the methods of {@link ProductRepository}, inside the transaction
+     * their own advice starts.
+     */
+    @Bean
+    public static BeanPostProcessor secondLevelCacheEvictionAdvice(
+            ObjectProvider<SecondLevelCacheEviction> secondLevelCacheEviction) {
+        return new BeanPostProcessor() {
+
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof JpaRepositoryFactoryBean<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repository) -> {
+                                if (repository.getRepositoryInterface() == ProductRepository.class) {
+                                    proxyFactory.addAdvice(secondLevelCacheEviction.getObject());
+                                }
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.produktapi.config;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.service.ProductChangedEvent;
+import com.example.produktapi.service.ReplicasSyncedEvent;
+import jakarta.persistence.EntityManagerFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.event.EventListener;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+
+/**
+ * Updates and deletes are native statements that Hibernate cannot see into, so it would neither evict the product
+ * they change nor invalidate the query results that contain it. This sits around them in {@code ProductRepository}
+ * and does what Hibernate does around a write of its own: before the statement the product's entry is soft locked
+ * and the query results over the product table are marked stale, and both are released when the transaction
+ * completes. Until then no read caches the product or such a query, and afterwards only reads that began after
+ * the release do, so a read that saw the row as it was before the write cannot put it back. Inserts go through
+ * Hibernate and need nothing.
+ */
+public class SecondLevelCacheEviction implements MethodInterceptor {
+
+    // each takes the product's id as its first argument
+    private static final Set<String> NATIVE_WRITES = Set.of("updateReturningById", "updateReturningByIdAndVersion",
+            "deleteReturningById", "deleteReturningByIdAndVersion");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final SessionFactoryImplementor sessionFactory;
+    private final EntityPersister persister;
+    private final String[] spaces;
+
+    public SecondLevelCacheEviction(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.persister = sessionFactory.getRuntimeMetamodels().getMappingMetamodel()
+                .getEntityDescriptor(Product.class.getName());
+        this.spaces = persister.getSynchronizationSpaces();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!NATIVE_WRITES.contains(invocation.getMethod().getName())) {
+            return invocation.proceed();
+        }
+        // the statements are transactional themselves, or join the caller's transaction
+        SharedSessionContractImplementor session = EntityManagerFactoryUtils
+                .getTransactionalEntityManager(entityManagerFactory).unwrap(SharedSessionContractImplementor.class);
+        EntityDataAccess products = persister.getCacheAccessStrategy();
+        Object key = products.generateCacheKey(invocation.getArguments()[0], persister, sessionFactory,
+                session.getTenantIdentifier());
+        SoftLock lock = products.lockItem(session, key, null);
+        TimestampsCache timestamps = sessionFactory.getCache().getTimestampsCache();
+        timestamps.preInvalidate(spaces, session);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public int getOrder() {
+                return ProductChangedEvent.STORE_ORDER;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                products.unlockItem(session, key, lock);
+                timestamps.invalidate(spaces, session);
+            }
+        });
+        return invocation.proceed();
+    }
+
+    /**
+     * Drops what reads from a lagging replica may have cached since the changes were committed.
+     */
+    @EventListener
+    public void onReplicasSynced(ReplicasSyncedEvent event) {
+        for (Integer id : event.getIds()) {
+            sessionFactory.getCache().evictEntityData(Product.class, id);
+        }
+        sessionFactory.getCache().evictDefaultQueryRegion();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.produktapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties("produktapi.second-level-cache")
+public class SecondLevelCacheProperties {
+
+    /**
+     * Whether Hibernate caches products and the results of cacheable queries between transactions.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Entries each cache region keeps on the heap.
+     */
+    private long heapEntries = 10_000;
+
+    /**
+     * Memory outside the heap each cache region may use behind its heap entries, 0 for none.
+     */
+    private DataSize offHeapSize = DataSize.ofBytes(0);
+
+    /**
+     * How long products and query results stay cached, a bound on how stale a missed invalidation leaves them.
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHeapEntries() {
+        return heapEntries;
+    }
+
+    public void setHeapEntries(long heapEntries) {
+        this.heapEntries = heapEntries;
+    }
+
+    public DataSize getOffHeapSize() {
+        return offHeapSize;
+    }
+
+    public void setOffHeapSize(DataSize offHeapSize) {
+        this.offHeapSize = offHeapSize;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.produktapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+
+/**
+ * Training run of the fast-startup build. With {@code produktapi.startup.training-run=true} the application lists
+ * the products once, so that the classes serving a request are in the class-data sharing archive too, and exits.
+ * A plain property check rather than a bean condition, because AOT processing decides conditions at build time.
+ */
+@Component
+public class StartupTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final boolean enabled;
+
+    public StartupTrainingRun(@Value("${produktapi.startup.training-run:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        try (InputStream products = URI.create("http://localhost:" + port + "/products").toURL().openStream()) {
+            products.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+}
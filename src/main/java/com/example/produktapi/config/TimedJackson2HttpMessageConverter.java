@@ -0,0 +1,137 @@
+package com.example.produktapi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Times the serialization of every response body in {@code http.server.serialization}, tagged with the
+ * endpoint, the type written and the format. The time includes writing to the response, which blocks once the
+ * socket buffer is full, so a slow client shows up here as well as in {@code http.server.requests}. Writes JSON
+ * unless given the media types of another Jackson format along with an {@link ObjectMapper} for it.
+ * <p>
+ * A body that concurrent requests share, marked with {@link #SHARED_BODY_ATTRIBUTE}, is serialized once and the
+ * same bytes are written to each of them.
+ */
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    static final String METRIC = "http.server.serialization";
+
+    /**
+     * Request attribute telling that the response body is the same object other requests are answered with
+     * at about the same time, see {@link com.example.produktapi.service.ProductReadCoalescer}.
+     */
+    public static final String SHARED_BODY_ATTRIBUTE = TimedJackson2HttpMessageConverter.class.getName() + ".SHARED_BODY";
+
+    private final MeterRegistry meterRegistry;
+
+    // by identity, and only for as long as the requests that share a body take to be answered
+    private final Cache<Object, byte[]> sharedBodies = Caffeine.newBuilder()
+            .weakKeys()
+            .expireAfterWrite(Duration.ofSeconds(1))
+            .maximumSize(1_000)
+            .build();
+
+    public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                             MediaType... supportedMediaTypes) {
+        this(objectMapper, meterRegistry);
+        setSupportedMediaTypes(List.of(supportedMediaTypes));
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (isSharedBody()) {
+                writeShared(object, type, outputMessage);
+            } else {
+                super.writeInternal(object, type, outputMessage);
+            }
+        } finally {
+            sample.stop(timer(meterRegistry, object, type, outputMessage));
+        }
+    }
+
+    private void writeShared(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte[] body;
+        try {
+            body = sharedBodies.get(object, shared -> serialize(shared, type, outputMessage.getHeaders()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        outputMessage.getHeaders().setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+
+    private byte[] serialize(Object object, Type type, HttpHeaders headers) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            super.writeInternal(object, type, new HttpOutputMessage() {
+                @Override
+                public OutputStream getBody() {
+                    return body;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return headers;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toByteArray();
+    }
+
+    private static boolean isSharedBody() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getAttribute(SHARED_BODY_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    /**
+     * Shared with the converters of formats Jackson does not write, so that all of them end up in one metric.
+     */
+    static Timer timer(MeterRegistry meterRegistry, Object object, Type type, HttpOutputMessage outputMessage) {
+        Class<?> written = type != null ? ResolvableType.forType(type).toClass() : object.getClass();
+        MediaType contentType = outputMessage.getHeaders().getContentType();
+        return Timer.builder(METRIC)
+                .tag("uri", currentUri())
+                .tag("type", written.getSimpleName())
+                .tag("format", contentType != null ? contentType.getSubtype() : "UNKNOWN")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String currentUri() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object pattern = attributes == null ? null : attributes.getAttribute(
+                HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
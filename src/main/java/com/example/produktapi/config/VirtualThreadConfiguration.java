@@ -0,0 +1,60 @@
+package com.example.produktapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Runs every request and every task of the application task executor on a virtual thread of its own when
+ * {@code produktapi.virtual-threads.enabled=true}. A request blocked on the database then parks its virtual
+ * thread instead of holding one of Tomcat's platform threads, so the number of requests in flight is bounded
+ * by the connection pool rather than by the thread pool, which is sized for that with
+ * {@code produktapi.virtual-threads.maximum-pool-size}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "produktapi.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Replaces the pooled executor Spring Boot would otherwise create, which sends the change feed to its
+     * subscribers and runs async MVC requests. There are no {@code @Async} methods, so {@code @EnableAsync} is not
+     * needed.
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * With platform threads Tomcat's 200 threads keep most requests queued in front of the connection pool, with
+     * a virtual thread per request every request in flight waits on the pool itself. Applied before
+     * initialization but after {@code spring.datasource.hikari.*} is bound, so it overrides the size given there.
+     */
+    @Bean
+    public static BeanPostProcessor virtualThreadConnectionPoolSize(
+            @Value("${produktapi.virtual-threads.maximum-pool-size}") int maximumPoolSize) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource pool) {
+                    pool.setMaximumPoolSize(maximumPoolSize);
+                }
+                return bean;
+            }
+        };
+    }
+}
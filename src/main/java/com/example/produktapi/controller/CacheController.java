@@ -0,0 +1,24 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.service.ProductCache;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+public class CacheController {
+
+    private final ProductCache productCache;
+
+    public CacheController(ProductCache productCache) {
+        this.productCache = productCache;
+    }
+
+    @GetMapping("/cache/stats")
+    ResponseEntity<Map<String, Map<String, Number>>> getCacheStats() {
+        return new ResponseEntity<Map<String, Map<String, Number>>>(productCache.getStats(), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.model.ProductChanges;
+import com.example.produktapi.service.ProductChangeFeed;
+import com.example.produktapi.service.ProductChangeLog;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@CrossOrigin
+@RestController
+public class ProductChangeController {
+
+    private final ProductChangeFeed productChangeFeed;
+    private final ProductChangeLog productChangeLog;
+
+    public ProductChangeController(ProductChangeFeed productChangeFeed, ProductChangeLog productChangeLog) {
+        this.productChangeFeed = productChangeFeed;
+        this.productChangeLog = productChangeLog;
+    }
+
+    /**
+     * The products created, updated or deleted since {@code since}, the token of the previous call. Without a
+     * token every product is returned, as changes, so a client can start with this instead of a full download.
+     */
+    @GetMapping("/products/changes")
+    ProductChanges getChanges(@RequestParam(required = false) String since,
+                              @RequestParam(required = false) Integer limit) {
+        return productChangeLog.getChangesSince(since, limit);
+    }
+
+    /**
+     * Every committed create, update and delete as an event named after the change, with the product after
+     * the change as data. A client that reconnects with Last-Event-ID continues where it left off, or gets a
+     * {@code reset} event when it has to reload the catalog.
+     */
+    @GetMapping(value = "/products/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return productChangeFeed.subscribe(lastEventId);
+    }
+}
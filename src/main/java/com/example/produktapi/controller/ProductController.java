@@ -1,63 +1,281 @@
 package com.example.produktapi.controller;
 
+import com.example.produktapi.config.TimedJackson2HttpMessageConverter;
+import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.exception.ConflictException;
+import com.example.produktapi.model.CategoryStats;
+import com.example.produktapi.model.ImportResult;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductIngestion;
+import com.example.produktapi.model.ProductLookup;
+import com.example.produktapi.model.ProductView;
+import com.example.produktapi.service.CatalogVersion;
+import com.example.produktapi.service.ProductExportService;
+import com.example.produktapi.service.ProductImportService;
+import com.example.produktapi.service.ProductIngestionQueue;
+import com.example.produktapi.service.ProductReadCoalescer;
+import com.example.produktapi.service.ProductSearchService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
 import com.example.produktapi.service.ProductService;
 import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductPage;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @CrossOrigin
 @RestController
 public class ProductController {
 
+    private static final String PREFER = "Prefer";
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+    private static final String RESPOND_ASYNC = "respond-async";
+
     private final ProductService productService;
+    private final ProductExportService productExportService;
+    private final ProductImportService productImportService;
+    private final ProductIngestionQueue productIngestionQueue;
+    private final ProductSearchService productSearchService;
+    private final ProductReadCoalescer productReadCoalescer;
+    private final CatalogVersion catalogVersion;
+    private final ObjectReader productReader;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductExportService productExportService,
+                             ProductImportService productImportService, ProductIngestionQueue productIngestionQueue,
+                             ProductSearchService productSearchService, ProductReadCoalescer productReadCoalescer,
+                             CatalogVersion catalogVersion, ObjectMapper objectMapper) {
         this.productService = productService;
+        this.productExportService = productExportService;
+        this.productImportService = productImportService;
+        this.productIngestionQueue = productIngestionQueue;
+        this.productSearchService = productSearchService;
+        this.productReadCoalescer = productReadCoalescer;
+        this.catalogVersion = catalogVersion;
+        this.productReader = objectMapper.readerFor(Product.class);
+    }
+
+    /**
+     * Sets ETag and Last-Modified from the catalog-wide change counter and tells whether the client's copy
+     * is still current, in which case a 304 has already been prepared and the handler should return null.
+     */
+    private boolean catalogNotModified(WebRequest webRequest) {
+        return webRequest.checkNotModified(catalogVersion.getETag(), catalogVersion.getLastModified());
+    }
+
+    /**
+     * For reads that concurrent requests share: their body is serialized once for all of them.
+     */
+    private static void shareBody(WebRequest webRequest) {
+        webRequest.setAttribute(TimedJackson2HttpMessageConverter.SHARED_BODY_ATTRIBUTE, Boolean.TRUE,
+                RequestAttributes.SCOPE_REQUEST);
     }
 
     @GetMapping("/products")
-    ResponseEntity<List<Product>>getAllProducts() {
-        List<Product> products = productService.getAllProducts();
+    ResponseEntity<ProductPage<?>> getAllProducts(@RequestParam(required = false) Integer limit,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(required = false) String sort,
+                                                  @RequestParam(required = false) List<String> category,
+                                                  @RequestParam(required = false) Double minPrice,
+                                                  @RequestParam(required = false) Double maxPrice,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestParam(required = false) String view,
+                                                  WebRequest webRequest) {
+        ProductView productView = ProductView.fromParameters(fields, view);
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        ProductPage<?> products;
+        if (category == null && minPrice == null && maxPrice == null) {
+            products = productService.getProductPage(null, productView, sort, after, limit);
+        } else {
+            // category=a,b arrives split on the commas
+            products = productService.getFilteredProductPage(new ProductFilter(category, minPrice, maxPrice),
+                    productView, sort, after, limit);
+        }
+        return new ResponseEntity<ProductPage<?>>(products, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/products", params = "ids")
+    ResponseEntity<ProductLookup> getProductsByIds(@RequestParam List<Integer> ids, WebRequest webRequest) {
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        ProductLookup lookup = productService.getProductsByIds(ids);
+        return new ResponseEntity<ProductLookup>(lookup, HttpStatus.OK);
+    }
+
+    @GetMapping("/products/search")
+    ResponseEntity<List<Product>> searchProducts(@RequestParam String q,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 WebRequest webRequest) {
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        List<Product> products = productSearchService.search(q, limit);
         return new ResponseEntity<List<Product>>(products, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/products/export", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    void exportProducts(@RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) String accept,
+                        HttpServletResponse response) throws IOException {
+        boolean ndjson = MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        productExportService.exportProducts(response.getOutputStream(),
+                ndjson ? ProductExportService.Format.NDJSON : ProductExportService.Format.JSON);
+    }
+
     @GetMapping("/products/categories")
-    ResponseEntity<List<String>> getAllCategories() {
-        List<String> allProducts = productService.getAllCategories();
-        return new ResponseEntity<List<String>>(allProducts, HttpStatus.OK);
+    CompletableFuture<ResponseEntity<List<String>>> getAllCategories(WebRequest webRequest) {
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        shareBody(webRequest);
+        return productReadCoalescer.getAllCategories()
+                .thenApply(allProducts -> new ResponseEntity<List<String>>(allProducts, HttpStatus.OK));
+    }
+
+    @GetMapping("/products/categories/stats")
+    ResponseEntity<List<CategoryStats>> getCategoryStats(WebRequest webRequest) {
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        List<CategoryStats> stats = productService.getCategoryStats();
+        return new ResponseEntity<List<CategoryStats>>(stats, HttpStatus.OK);
     }
 
     @GetMapping("/products/categories/{category}")
-    ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
-        List productsByCategory =  productService.getProductsByCategory(category);
-        return new ResponseEntity<List<Product>>(productsByCategory, HttpStatus.OK);
+    CompletableFuture<ResponseEntity<ProductPage<?>>> getProductsByCategory(@PathVariable String category,
+                                                                            @RequestParam(required = false) Integer limit,
+                                                                            @RequestParam(required = false) String after,
+                                                                            @RequestParam(required = false) String sort,
+                                                                            @RequestParam(required = false) String fields,
+                                                                            @RequestParam(required = false) String view,
+                                                                            WebRequest webRequest) {
+        ProductView productView = ProductView.fromParameters(fields, view);
+        if (catalogNotModified(webRequest)) {
+            return null;
+        }
+        shareBody(webRequest);
+        return productReadCoalescer.getProductPage(category, productView, sort, after, limit)
+                .thenApply(productsByCategory -> new ResponseEntity<ProductPage<?>>(productsByCategory, HttpStatus.OK));
     }
 
     @GetMapping("/products/{id}")
-    ResponseEntity<Product> getProductById(@PathVariable Integer id) {
+    ResponseEntity<Product> getProductById(@PathVariable Integer id, WebRequest webRequest,
+                                           HttpServletResponse response) {
+        // the version is known without loading the product, a missing product falls through to the 404 below
+        Integer version = productService.getProductVersion(id);
+        if (version != null && webRequest.checkNotModified(productETag(id, version), catalogVersion.getLastModified())) {
+            return null;
+        }
         Product product = productService.getProductById(id);
+        // a write between the two reads must not send the new product under the old tag
+        response.setHeader(HttpHeaders.ETAG, productETag(id, product.getVersion()));
         return new ResponseEntity<Product>(product, HttpStatus.OK);
     }
 
+    /**
+     * With the write-behind queue enabled, {@code Prefer: respond-async} answers 202 as soon as the product is
+     * queued, with its status URL in Location. Without it the request waits for the group commit of its product.
+     */
     @PostMapping("/products")
-    ResponseEntity<Product> addProduct(@RequestBody Product newProduct) {
-        Product createdProduct = productService.addProduct(newProduct);
-        return new ResponseEntity<Product>(createdProduct, HttpStatus.CREATED);
+    CompletableFuture<ResponseEntity<?>> addProduct(@RequestBody Product newProduct,
+                                                    @RequestHeader(value = PREFER, required = false) String prefer) {
+        if (!productIngestionQueue.isEnabled()) {
+            Product createdProduct = productService.addProduct(newProduct);
+            return CompletableFuture.completedFuture(new ResponseEntity<Product>(createdProduct, HttpStatus.CREATED));
+        }
+        ProductIngestionQueue.Ingestion ingestion = productIngestionQueue.submit(newProduct);
+        if (prefer != null && prefer.toLowerCase().contains(RESPOND_ASYNC)) {
+            return CompletableFuture.completedFuture(ResponseEntity
+                    .accepted()
+                    .location(URI.create("/products/ingestions/" + ingestion.getTicket()))
+                    .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                    .body(ProductIngestion.queued(ingestion.getTicket())));
+        }
+        return ingestion.getResult()
+                .thenApply(createdProduct -> new ResponseEntity<Product>(createdProduct, HttpStatus.CREATED));
+    }
+
+    @GetMapping("/products/ingestions/{ticket}")
+    ResponseEntity<ProductIngestion> getIngestion(@PathVariable String ticket) {
+        ProductIngestion ingestion = productIngestionQueue.getStatus(ticket);
+        if (ingestion.getStatus() == ProductIngestion.Status.CREATED) {
+            return ResponseEntity.ok().location(URI.create("/products/" + ingestion.getId())).body(ingestion);
+        }
+        return ResponseEntity.ok(ingestion);
+    }
+
+    @PostMapping(value = "/products/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    ResponseEntity<ImportResult> importProducts(HttpServletRequest request) throws IOException {
+        // reads a JSON array or a sequence of JSON objects one product at a time
+        try (MappingIterator<Product> products = productReader.readValues(request.getInputStream())) {
+            ImportResult result = productImportService.importProducts(products);
+            return new ResponseEntity<ImportResult>(result, HttpStatus.OK);
+        }
     }
 
     @PutMapping("/products/{id}")
-    ResponseEntity<Product> updateProduct(@RequestBody Product newProduct, @PathVariable Integer id) {
-        Product updatedProduct = productService.updateProduct(newProduct, id);
-        return new ResponseEntity<Product>(updatedProduct, HttpStatus.OK);
+    ResponseEntity<Product> updateProduct(@RequestBody Product newProduct, @PathVariable Integer id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product updatedProduct = productService.updateProduct(newProduct, id, parseIfMatch(id, ifMatch));
+        return ResponseEntity.ok().eTag(productETag(id, updatedProduct.getVersion())).body(updatedProduct);
     }
 
     @DeleteMapping("/products/{id}")
-    ResponseEntity<String> deleteProduct(@PathVariable Integer id) {
-        productService.deleteProduct(id);
+    ResponseEntity<String> deleteProduct(@PathVariable Integer id,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        productService.deleteProduct(id, parseIfMatch(id, ifMatch));
         return new ResponseEntity<String>(String.format("Produkt med id %d har raderats", id), HttpStatus.OK);
     }
+
+    /**
+     * Strong, and made from the instance and the id as well as the version, so a tag from another product or from
+     * an earlier run of the application never matches.
+     */
+    String productETag(Integer id, Integer version) {
+        return "\"" + catalogVersion.getInstance() + "-" + id + "-" + version + "\"";
+    }
+
+    /**
+     * @return the product version the client expects, or {@code null} for no header or {@code *}
+     * @throws ConflictException when the tag belongs to another product or an earlier run of the application
+     */
+    Integer parseIfMatch(Integer id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String[] parts = tag.substring(1, tag.length() - 1).split("-");
+            if (parts.length == 3) {
+                try {
+                    Integer version = Integer.valueOf(parts[2]);
+                    if (!parts[0].equals(catalogVersion.getInstance()) || !parts[1].equals(id.toString())) {
+                        throw new ConflictException(id);
+                    }
+                    return version;
+                } catch (NumberFormatException e) {
+                    // handled below
+                }
+            }
+        }
+        throw new BadRequestException("Ogiltig If-Match: " + ifMatch);
+    }
 }
@@ -0,0 +1,7 @@
+package com.example.produktapi.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(Integer id) {
+        super(String.format("Produkt med id %d har ändrats sedan den lästes", id));
+    }
+}
@@ -4,5 +4,9 @@ public class EntityNotFoundException extends RuntimeException {
     public EntityNotFoundException(Integer id) {
         super(String.format("Produkt med id %d hittades inte", id));
     }
+
+    public EntityNotFoundException(String message) {
+        super(message);
+    }
 }
 
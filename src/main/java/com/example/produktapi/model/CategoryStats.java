@@ -0,0 +1,38 @@
+package com.example.produktapi.model;
+
+public class CategoryStats {
+
+    private final String category;
+    private final int count;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final Double averagePrice;
+
+    public CategoryStats(String category, int count, Double minPrice, Double maxPrice, Double averagePrice) {
+        this.category = category;
+        this.count = count;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.averagePrice = averagePrice;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getAveragePrice() {
+        return averagePrice;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.produktapi.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of filtered products, whole or in a {@link ProductView}, together with how many products each category has within the price range,
+ * whatever categories the filter selected.
+ */
+public class FilteredProductPage<T> extends ProductPage<T> {
+
+    private final Map<String, Integer> categoryCounts;
+
+    public FilteredProductPage(ProductPage<T> page, Map<String, Integer> categoryCounts) {
+        super(page.getItems(), page.getNextCursor());
+        this.categoryCounts = categoryCounts;
+    }
+
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.produktapi.model;
+
+public class ImportItemResult {
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+
+    private final int index;
+    private final Status status;
+    private final Integer id;
+    private final String message;
+
+    private ImportItemResult(int index, Status status, Integer id, String message) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+
+    public static ImportItemResult created(int index, Integer id) {
+        return new ImportItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static ImportItemResult rejected(int index, String message) {
+        return new ImportItemResult(index, Status.REJECTED, null, message);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
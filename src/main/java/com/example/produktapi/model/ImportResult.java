@@ -0,0 +1,28 @@
+package com.example.produktapi.model;
+
+import java.util.List;
+
+public class ImportResult {
+
+    private final int created;
+    private final int rejected;
+    private final List<ImportItemResult> items;
+
+    public ImportResult(List<ImportItemResult> items) {
+        this.items = items;
+        this.created = (int) items.stream().filter(item -> item.getStatus() == ImportItemResult.Status.CREATED).count();
+        this.rejected = items.size() - created;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<ImportItemResult> getItems() {
+        return items;
+    }
+}
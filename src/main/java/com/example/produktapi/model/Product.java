@@ -1,20 +1,38 @@
 package com.example.produktapi.model;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+// the schema itself is created by schema.sql, this mirrors it for generated DDL
 @Entity
+@Table(name = "product",
+        uniqueConstraints = @UniqueConstraint(name = "uk_product_title", columnNames = "title"),
+        indexes = @Index(name = "idx_product_category", columnList = "category"))
+// kept in the second-level cache when it is enabled, see SecondLevelCacheConfiguration
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Product {
     // Attributes
     private @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) Integer id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50) Integer id;
     private String title;
     private Double price;
     private String category;
     private String description;
     private String image;
+    @Version
+    private Integer version;
 
     public Product() {
     }
@@ -75,4 +93,12 @@ public class Product {
     public void setImage(String image) {
         this.image = image;
     }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,36 @@
+package com.example.produktapi.model;
+
+/**
+ * A committed product write as clients of the change stream and of delta sync see it. {@code product} is the
+ * state after the write, {@code null} for a deletion.
+ */
+public class ProductChangeEntry {
+
+    private final long sequence;
+    private final String type;
+    private final Integer id;
+    private final Product product;
+
+    public ProductChangeEntry(long sequence, String type, Integer id, Product product) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.product = product;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.produktapi.model;
+
+import java.util.List;
+
+/**
+ * One page of delta sync: the products created, updated or deleted after a token, oldest change first.
+ * A product changed several times is only listed once, with its latest state.
+ */
+public class ProductChanges {
+
+    private final List<ProductChangeEntry> changes;
+    private final String nextToken;
+    private final boolean more;
+    private final boolean reset;
+
+    public ProductChanges(List<ProductChangeEntry> changes, String nextToken, boolean more, boolean reset) {
+        this.changes = changes;
+        this.nextToken = nextToken;
+        this.more = more;
+        this.reset = reset;
+    }
+
+    public List<ProductChangeEntry> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Token for the next request, also when there were no changes.
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * {@code true} when there are more changes than fit on this page, ask again with {@link #getNextToken()}
+     * right away.
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+    /**
+     * {@code true} when the token was not issued by this instance of the catalog. The changes then start
+     * from the beginning and the client should drop what it has.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.produktapi.model;
+
+import com.example.produktapi.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last product on a page, encoded as an opaque string for the client.
+ * Holds the sort key of that product together with its id so the next page can continue
+ * with a keyset condition instead of an OFFSET.
+ */
+public class ProductCursor {
+
+    private final ProductSort sort;
+    private final Integer id;
+    private final Object value;
+
+    public ProductCursor(ProductSort sort, Integer id, Object value) {
+        this.sort = sort;
+        this.id = id;
+        this.value = value;
+    }
+
+    public static ProductCursor after(Product product, ProductSort sort) {
+        return new ProductCursor(sort, product.getId(), sort.valueOf(product));
+    }
+
+    public static ProductCursor decode(String cursor, ProductSort sort) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(":", 3);
+            if (parts.length != 3 || ProductSort.valueOf(parts[0]) != sort) {
+                throw new IllegalArgumentException(decoded);
+            }
+            Integer id = Integer.valueOf(parts[1]);
+            Object value = switch (sort) {
+                case ID -> id;
+                case PRICE -> parts[2].isEmpty() ? null : Double.valueOf(parts[2]);
+                case TITLE -> parts[2].isEmpty() ? null : parts[2].substring(1);
+            };
+            return new ProductCursor(sort, id, value);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Ogiltig cursor: " + cursor);
+        }
+    }
+
+    public String encode() {
+        String encodedValue = switch (sort) {
+            case ID -> "";
+            case PRICE -> value == null ? "" : value.toString();
+            // prefixed so that an empty title can be told apart from a missing one
+            case TITLE -> value == null ? "" : "'" + value;
+        };
+        String raw = sort.name() + ":" + id + ":" + encodedValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ProductSort getSort() {
+        return sort;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+}
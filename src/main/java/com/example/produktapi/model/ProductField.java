@@ -0,0 +1,48 @@
+package com.example.produktapi.model;
+
+import com.example.produktapi.exception.BadRequestException;
+
+/**
+ * A product property a client can select with {@code ?fields=}. Declared in the order the properties of a
+ * whole product are written.
+ */
+public enum ProductField {
+    ID("id"),
+    TITLE("title"),
+    PRICE("price"),
+    CATEGORY("category"),
+    DESCRIPTION("description"),
+    IMAGE("image"),
+    VERSION("version");
+
+    private final String property;
+
+    ProductField(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public static ProductField fromParameter(String value) {
+        for (ProductField field : values()) {
+            if (field.property.equalsIgnoreCase(value)) {
+                return field;
+            }
+        }
+        throw new BadRequestException("Okänt fält: " + value);
+    }
+
+    public Object valueOf(Product product) {
+        return switch (this) {
+            case ID -> product.getId();
+            case TITLE -> product.getTitle();
+            case PRICE -> product.getPrice();
+            case CATEGORY -> product.getCategory();
+            case DESCRIPTION -> product.getDescription();
+            case IMAGE -> product.getImage();
+            case VERSION -> product.getVersion();
+        };
+    }
+}
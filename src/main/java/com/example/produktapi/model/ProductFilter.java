@@ -0,0 +1,81 @@
+package com.example.produktapi.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Which products a listing includes: any of the given categories, all categories when none are given, and
+ * prices within the optional, inclusive bounds. A price bound leaves out products without a price.
+ */
+public class ProductFilter {
+
+    private static final ProductFilter ALL = new ProductFilter(List.of(), null, null);
+
+    private final List<String> categories;
+    private final Double minPrice;
+    private final Double maxPrice;
+
+    public ProductFilter(Collection<String> categories, Double minPrice, Double maxPrice) {
+        this.categories = categories == null ? List.of() : List.copyOf(categories);
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public static ProductFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param category the only category to include, or {@code null} for all products
+     */
+    public static ProductFilter category(String category) {
+        return category == null ? ALL : new ProductFilter(List.of(category), null, null);
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean hasPriceRange() {
+        return minPrice != null || maxPrice != null;
+    }
+
+    /**
+     * @return the category when the filter is exactly one category and nothing else, otherwise {@code null}
+     */
+    public String singleCategory() {
+        return categories.size() == 1 && !hasPriceRange() ? categories.get(0) : null;
+    }
+
+    public boolean matchesPrice(Double price) {
+        if (!hasPriceRange()) {
+            return true;
+        }
+        return price != null
+                && (minPrice == null || price >= minPrice)
+                && (maxPrice == null || price <= maxPrice);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductFilter that = (ProductFilter) o;
+        return categories.equals(that.categories) && Objects.equals(minPrice, that.minPrice)
+                && Objects.equals(maxPrice, that.maxPrice);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(categories, minPrice, maxPrice);
+    }
+}
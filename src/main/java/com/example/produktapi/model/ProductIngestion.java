@@ -0,0 +1,63 @@
+package com.example.produktapi.model;
+
+/**
+ * Where a product sent to {@code POST /products} with {@code Prefer: respond-async} is on its way into the
+ * catalog.
+ */
+public class ProductIngestion {
+
+    public enum Status {
+        /**
+         * Waiting for the next group commit.
+         */
+        QUEUED,
+        CREATED,
+        REJECTED
+    }
+
+    private final String ticket;
+    private final Status status;
+    private final Integer id;
+    private final String message;
+
+    private ProductIngestion(String ticket, Status status, Integer id, String message) {
+        this.ticket = ticket;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+
+    public static ProductIngestion queued(String ticket) {
+        return new ProductIngestion(ticket, Status.QUEUED, null, null);
+    }
+
+    public static ProductIngestion created(String ticket, Integer id) {
+        return new ProductIngestion(ticket, Status.CREATED, id, null);
+    }
+
+    public static ProductIngestion rejected(String ticket, String message) {
+        return new ProductIngestion(ticket, Status.REJECTED, null, message);
+    }
+
+    public String getTicket() {
+        return ticket;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Id of the created product.
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * Why the product was rejected.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
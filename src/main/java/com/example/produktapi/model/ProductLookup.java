@@ -0,0 +1,22 @@
+package com.example.produktapi.model;
+
+import java.util.List;
+
+public class ProductLookup {
+
+    private final List<Product> products;
+    private final List<Integer> missingIds;
+
+    public ProductLookup(List<Product> products, List<Integer> missingIds) {
+        this.products = products;
+        this.missingIds = missingIds;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public List<Integer> getMissingIds() {
+        return missingIds;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.produktapi.model;
+
+import java.util.List;
+
+public class ProductPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public ProductPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
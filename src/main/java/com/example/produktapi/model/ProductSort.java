@@ -0,0 +1,52 @@
+package com.example.produktapi.model;
+
+import com.example.produktapi.exception.BadRequestException;
+
+public enum ProductSort {
+    ID("id"),
+    PRICE("price"),
+    TITLE("title");
+
+    private final String property;
+
+    ProductSort(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public static ProductSort fromParameter(String value) {
+        for (ProductSort sort : values()) {
+            if (sort.property.equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new BadRequestException("Okänd sortering: " + value);
+    }
+
+    public Object valueOf(Product product) {
+        return switch (this) {
+            case ID -> product.getId();
+            case PRICE -> product.getPrice();
+            case TITLE -> product.getTitle();
+        };
+    }
+
+    public Object valueOf(ProductSummary summary) {
+        return switch (this) {
+            case ID -> summary.getId();
+            case PRICE -> summary.getPrice();
+            case TITLE -> summary.getTitle();
+        };
+    }
+
+    public ProductField getField() {
+        return switch (this) {
+            case ID -> ProductField.ID;
+            case PRICE -> ProductField.PRICE;
+            case TITLE -> ProductField.TITLE;
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.produktapi.model;
+
+/**
+ * What a product listing shows of a product, read with {@code ?view=summary} without the description.
+ */
+public class ProductSummary {
+
+    private final Integer id;
+    private final String title;
+    private final Double price;
+    private final String image;
+
+    public ProductSummary(Integer id, String title, Double price, String image) {
+        this.id = id;
+        this.title = title;
+        this.price = price;
+        this.image = image;
+    }
+
+    public static ProductSummary of(Product product) {
+        return new ProductSummary(product.getId(), product.getTitle(), product.getPrice(), product.getImage());
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public String getImage() {
+        return image;
+    }
+}
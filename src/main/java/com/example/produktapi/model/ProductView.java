@@ -0,0 +1,88 @@
+package com.example.produktapi.model;
+
+import com.example.produktapi.exception.BadRequestException;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The part of each product a list response carries: the {@link ProductSummary} for {@code ?view=summary}, or
+ * the properties named in {@code ?fields=}. Only those columns are read from the database.
+ */
+public class ProductView {
+
+    private static final ProductView SUMMARY = new ProductView(true, EnumSet.of(
+            ProductField.ID, ProductField.TITLE, ProductField.PRICE, ProductField.IMAGE));
+
+    private final boolean summary;
+    private final Set<ProductField> fields;
+
+    private ProductView(boolean summary, Set<ProductField> fields) {
+        this.summary = summary;
+        this.fields = Collections.unmodifiableSet(fields);
+    }
+
+    public static ProductView summary() {
+        return SUMMARY;
+    }
+
+    public static ProductView fields(Set<ProductField> fields) {
+        if (fields.isEmpty()) {
+            throw new BadRequestException("fields måste innehålla minst ett fält");
+        }
+        return new ProductView(false, EnumSet.copyOf(fields));
+    }
+
+    /**
+     * @param fields comma separated property names, or {@code null}
+     * @param view   {@code summary}, or {@code null}
+     * @return the view, or {@code null} when the client asked for whole products
+     */
+    public static ProductView fromParameters(String fields, String view) {
+        if (fields != null && view != null) {
+            throw new BadRequestException("Ange antingen fields eller view");
+        }
+        if (view != null) {
+            if (!view.equalsIgnoreCase("summary")) {
+                throw new BadRequestException("Okänd vy: " + view);
+            }
+            return SUMMARY;
+        }
+        if (fields == null) {
+            return null;
+        }
+        Set<ProductField> selected = EnumSet.noneOf(ProductField.class);
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                selected.add(ProductField.fromParameter(field.trim()));
+            }
+        }
+        return fields(selected);
+    }
+
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public Set<ProductField> getFields() {
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProductView other)) {
+            return false;
+        }
+        return summary == other.summary && fields.equals(other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(summary, fields);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.produktapi.repository;
+
+/**
+ * Category and price of one product, without the rest of the row.
+ */
+public interface CategoryPrice {
+
+    String getCategory();
+
+    Double getPrice();
+}
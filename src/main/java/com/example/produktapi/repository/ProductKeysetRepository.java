@@ -0,0 +1,50 @@
+package com.example.produktapi.repository;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductChangeEntry;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductField;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductSort;
+import com.example.produktapi.model.ProductSummary;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface ProductKeysetRepository {
+
+    /**
+     * Reads at most {@code limit} products ordered by {@code sort} and then id, starting right
+     * after {@code after}. Uses a keyset condition on (sort value, id), never an OFFSET.
+     *
+     * @param filter the categories and price range to include
+     * @param after  position of the last product on the previous page, or {@code null} for the first page
+     */
+    @Transactional(readOnly = true)
+    List<Product> findPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit);
+
+    /**
+     * Same page as {@link #findPage}, reading only the columns of {@link ProductSummary}.
+     */
+    @Transactional(readOnly = true)
+    List<ProductSummary> findSummaryPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit);
+
+    /**
+     * Same page as {@link #findPage}, reading only the given columns. Every row also holds the id and the
+     * sort property, which the next cursor is made from, whether they were asked for or not.
+     *
+     * @return one map per product from property name to value, in {@link ProductField} order
+     */
+    @Transactional(readOnly = true)
+    List<Map<String, Object>> findFieldsPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit,
+                                             Set<ProductField> fields);
+
+    /**
+     * Reads at most {@code limit} changes with a change sequence in ({@code after}, {@code until}], ordered by
+     * it: products as they are now, and tombstones of deleted products. Keyset conditions on the indexed
+     * change sequence of each table, so a page costs the same however far back {@code after} is.
+     */
+    List<ProductChangeEntry> findChangePage(long after, long until, int limit);
+}
@@ -0,0 +1,169 @@
+package com.example.produktapi.repository;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductChangeEntry;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductField;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductSort;
+import com.example.produktapi.model.ProductSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class ProductKeysetRepositoryImpl implements ProductKeysetRepository {
+
+    // the change types of the change stream
+    private static final String DELETED = "DELETED";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Product> findPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit) {
+        return createPageQuery("SELECT p", Product.class, filter, sort, after, limit).getResultList();
+    }
+
+    @Override
+    public List<ProductSummary> findSummaryPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit) {
+        return createPageQuery("SELECT new " + ProductSummary.class.getName() + "(p.id, p.title, p.price, p.image)",
+                ProductSummary.class, filter, sort, after, limit).getResultList();
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsPage(ProductFilter filter, ProductSort sort, ProductCursor after,
+                                                    int limit, Set<ProductField> fields) {
+        Set<ProductField> selected = EnumSet.copyOf(fields);
+        selected.add(ProductField.ID);
+        selected.add(sort.getField());
+        String select = selected.stream()
+                .map(field -> "p." + field.getProperty() + " AS " + field.getProperty())
+                .collect(Collectors.joining(", ", "SELECT ", ""));
+
+        List<Tuple> tuples = createPageQuery(select, Tuple.class, filter, sort, after, limit).getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (ProductField field : selected) {
+                row.put(field.getProperty(), tuple.get(field.getProperty()));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ProductChangeEntry> findChangePage(long after, long until, int limit) {
+        // change_seq and change_type are invisible and not mapped, so both tables are read with native queries
+        List<Object[]> products = entityManager.createNativeQuery("SELECT change_seq, id, title, price, category, " +
+                        "description, image, version, change_type FROM product " +
+                        "WHERE change_seq > :after AND change_seq <= :until ORDER BY change_seq")
+                .setParameter("after", after)
+                .setParameter("until", until)
+                .setMaxResults(limit)
+                .getResultList();
+        List<Object[]> tombstones = entityManager.createNativeQuery("SELECT change_seq, product_id " +
+                        "FROM product_tombstone WHERE change_seq > :after AND change_seq <= :until ORDER BY change_seq")
+                .setParameter("after", after)
+                .setParameter("until", until)
+                .setMaxResults(limit)
+                .getResultList();
+
+        // both lists are in change order, merge them up to the limit
+        List<ProductChangeEntry> changes = new ArrayList<>(Math.min(limit, products.size() + tombstones.size()));
+        int p = 0;
+        int t = 0;
+        while (changes.size() < limit && (p < products.size() || t < tombstones.size())) {
+            if (t == tombstones.size()
+                    || (p < products.size() && sequence(products.get(p)) < sequence(tombstones.get(t)))) {
+                changes.add(toChange(products.get(p++)));
+            } else {
+                Object[] tombstone = tombstones.get(t++);
+                changes.add(new ProductChangeEntry(sequence(tombstone), DELETED, ((Number) tombstone[1]).intValue(),
+                        null));
+            }
+        }
+        return changes;
+    }
+
+    private static long sequence(Object[] row) {
+        return ((Number) row[0]).longValue();
+    }
+
+    private static ProductChangeEntry toChange(Object[] row) {
+        Product product = new Product((String) row[2], row[3] == null ? null : ((Number) row[3]).doubleValue(),
+                (String) row[4], (String) row[5], (String) row[6]);
+        product.setId(((Number) row[1]).intValue());
+        product.setVersion(((Number) row[7]).intValue());
+        return new ProductChangeEntry(sequence(row), (String) row[8], product.getId(), product);
+    }
+
+    private <T> TypedQuery<T> createPageQuery(String select, Class<T> type, ProductFilter filter, ProductSort sort,
+                                              ProductCursor after, int limit) {
+
+        List<String> conditions = new ArrayList<>();
+        List<String> categories = filter.getCategories();
+        if (categories.size() == 1) {
+            conditions.add("p.category = :category");
+        } else if (categories.size() > 1) {
+            conditions.add("p.category IN :categories");
+        }
+        if (filter.getMinPrice() != null) {
+            conditions.add("p.price >= :minPrice");
+        }
+        if (filter.getMaxPrice() != null) {
+            conditions.add("p.price <= :maxPrice");
+        }
+        String column = "p." + sort.getProperty();
+        if (after != null) {
+            if (sort == ProductSort.ID) {
+                conditions.add("p.id > :afterId");
+            } else if (after.getValue() == null) {
+                // nulls are ordered first, so after a null value come the remaining nulls and then every value
+                conditions.add("((" + column + " IS NULL AND p.id > :afterId) OR " + column + " IS NOT NULL)");
+            } else {
+                conditions.add("(" + column + " > :afterValue OR (" + column + " = :afterValue AND p.id > :afterId))");
+            }
+        }
+
+        StringBuilder jpql = new StringBuilder(select).append(" FROM Product p");
+        if (!conditions.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (sort == ProductSort.ID) {
+            jpql.append(" ORDER BY p.id");
+        } else {
+            jpql.append(" ORDER BY ").append(column).append(" NULLS FIRST, p.id");
+        }
+
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), type);
+        if (categories.size() == 1) {
+            query.setParameter("category", categories.get(0));
+        } else if (categories.size() > 1) {
+            query.setParameter("categories", categories);
+        }
+        if (filter.getMinPrice() != null) {
+            query.setParameter("minPrice", filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            query.setParameter("maxPrice", filter.getMaxPrice());
+        }
+        if (after != null) {
+            query.setParameter("afterId", after.getId());
+            if (sort != ProductSort.ID && after.getValue() != null) {
+                query.setParameter("afterValue", after.getValue());
+            }
+        }
+        return query.setMaxResults(limit);
+    }
+}
@@ -1,18 +1,94 @@
 package com.example.produktapi.repository;
 
 import com.example.produktapi.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ProductRepository extends JpaRepository<Product, Integer> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, ProductKeysetRepository {
 
+    // Read-only transactions go to a read replica when there are any (see ReplicaRoutingDataSource). The reads
+    // inherited from JpaRepository are read-only already, declared queries only when they say so. Reads that
+    // must see the latest commit, like the change sequence and titles checked before an insert, stay unmarked.
+
+    // query results are cached when the second-level cache is enabled, see SecondLevelCacheConfiguration
+
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Product> findByCategory(String category);
 
     Optional<Product> findByTitle(String title);
 
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT distinct category FROM Product")
     List<String> findAllCategories();
+
+    @Query("SELECT p.category AS category, p.price AS price FROM Product p WHERE p.category IS NOT NULL")
+    List<CategoryPrice> findAllCategoryPrices();
+
+    @Transactional(readOnly = true)
+    @Query("SELECT p.version FROM Product p WHERE p.id = :id")
+    Optional<Integer> findVersionById(Integer id);
+
+    @Query("SELECT p.title FROM Product p WHERE p.title IN :titles")
+    List<String> findExistingTitles(Collection<String> titles);
+
+    /**
+     * Highest change sequence of any product or tombstone, 0 for an empty catalog that never had a product.
+     */
+    @Query(value = "SELECT GREATEST(COALESCE((SELECT MAX(change_seq) FROM product), 0), " +
+            "COALESCE((SELECT MAX(change_seq) FROM product_tombstone), 0))", nativeQuery = true)
+    long findLastChangeSequence();
+
+    /**
+     * Scrolls over every product in id order. Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAll();
+
+    // The write statements below are wrapped in H2 data change delta tables, so the row as it was before
+    // the write comes back from the same statement and a write is a single round trip. That row is not put in
+    // the second-level cache, SecondLevelCacheEviction keeps the product out of it until the write has committed.
+
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query(value = "SELECT * FROM OLD TABLE (UPDATE product SET title = :#{#product.title}, " +
+            "price = :#{#product.price}, category = :#{#product.category}, " +
+            "description = :#{#product.description}, image = :#{#product.image}, version = version + 1 " +
+            "WHERE id = :id)", nativeQuery = true)
+    Optional<Product> updateReturningById(@Param("id") Integer id, @Param("product") Product product);
+
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query(value = "SELECT * FROM OLD TABLE (UPDATE product SET title = :#{#product.title}, " +
+            "price = :#{#product.price}, category = :#{#product.category}, " +
+            "description = :#{#product.description}, image = :#{#product.image}, version = version + 1 " +
+            "WHERE id = :id AND version = :version)", nativeQuery = true)
+    Optional<Product> updateReturningByIdAndVersion(@Param("id") Integer id, @Param("version") Integer version,
+                                                    @Param("product") Product product);
+
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query(value = "SELECT * FROM OLD TABLE (DELETE FROM product WHERE id = :id)", nativeQuery = true)
+    Optional<Product> deleteReturningById(@Param("id") Integer id);
+
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query(value = "SELECT * FROM OLD TABLE (DELETE FROM product WHERE id = :id AND version = :version)",
+            nativeQuery = true)
+    Optional<Product> deleteReturningByIdAndVersion(@Param("id") Integer id, @Param("version") Integer version);
 }
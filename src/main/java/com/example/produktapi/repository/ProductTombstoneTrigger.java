@@ -0,0 +1,27 @@
+package com.example.produktapi.repository;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Leaves a tombstone for every deleted product, in the same statement as the delete, so that delta sync sees
+ * deletes whichever way they are made. Installed on the product table by schema.sql.
+ */
+public class ProductTombstoneTrigger implements Trigger {
+
+    // a merge, in case an id is inserted again with plain SQL and deleted a second time
+    private static final String MERGE_TOMBSTONE = "MERGE INTO product_tombstone (product_id, change_seq) " +
+            "KEY (product_id) VALUES (?, NEXT VALUE FOR product_change_seq)";
+
+    @Override
+    public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(MERGE_TOMBSTONE)) {
+            // the id is the first column of the product table
+            statement.setObject(1, oldRow[0]);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.produktapi.repository;
+
+import com.example.produktapi.model.Product;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Read-only access to the product table over R2DBC, used by the reactive read API. Rows are fetched as the
+ * subscriber requests them, so a slow consumer holds neither a thread nor the whole result. Writes stay with
+ * {@link ProductRepository}.
+ * <p>
+ * The embedded H2 driver does its work on the thread that requests rows, so every query is subscribed on
+ * the bounded elastic scheduler to keep it off the Netty event loop.
+ */
+public class ReactiveProductRepository implements AutoCloseable {
+
+    private static final String SELECT = "SELECT id, title, price, category, description, image, version FROM product";
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveProductRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    public Flux<Product> findAll() {
+        return databaseClient.sql(SELECT + " ORDER BY id")
+                .map(ReactiveProductRepository::toProduct)
+                .all()
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Product> findById(Integer id) {
+        return databaseClient.sql(SELECT + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveProductRepository::toProduct)
+                .one()
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Flux<Product> findByCategory(String category) {
+        return databaseClient.sql(SELECT + " WHERE category = :category ORDER BY id")
+                .bind("category", category)
+                .map(ReactiveProductRepository::toProduct)
+                .all()
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Flux<String> findAllCategories() {
+        return databaseClient.sql("SELECT DISTINCT category FROM product WHERE category IS NOT NULL")
+                .map(row -> row.get("category", String.class))
+                .all()
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Product toProduct(Readable row) {
+        Product product = new Product(row.get("title", String.class), row.get("price", Double.class),
+                row.get("category", String.class), row.get("description", String.class),
+                row.get("image", String.class));
+        product.setId(row.get("id", Integer.class));
+        product.setVersion(row.get("version", Integer.class));
+        return product;
+    }
+
+    @Override
+    public void close() {
+        connectionPool.dispose();
+    }
+}
@@ -0,0 +1,410 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable column-oriented copy of the product table. Rows are stored sorted by id in parallel arrays,
+ * prices as primitive doubles ({@code NaN} for a missing price) and categories as codes into a dictionary.
+ * For every sort order there is a precomputed row order, both for the whole catalog and per category,
+ * so reads never sort or scan. Products handed out are fresh copies, never shared state.
+ */
+public final class CatalogSnapshot {
+
+    private static final int NO_CATEGORY = -1;
+
+    private final int[] ids;
+    private final String[] titles;
+    private final double[] prices;
+    private final int[] categoryCodes;
+    private final String[] descriptions;
+    private final String[] images;
+    private final int[] versions;
+
+    private final String[] categories;
+    private final Map<String, Integer> categoryLookup;
+
+    /** [sort][position] -> row, over all rows */
+    private final int[][] order;
+    /** [category code][sort][position] -> row, over the rows of one category */
+    private final int[][][] categoryOrder;
+
+    private CatalogSnapshot(int[] ids, String[] titles, double[] prices, int[] categoryCodes, String[] descriptions,
+                            String[] images, int[] versions, String[] categories, int[][] order,
+                            int[][][] categoryOrder) {
+        this.ids = ids;
+        this.titles = titles;
+        this.prices = prices;
+        this.categoryCodes = categoryCodes;
+        this.descriptions = descriptions;
+        this.images = images;
+        this.versions = versions;
+        this.categories = categories;
+        this.categoryLookup = new HashMap<>(categories.length * 2);
+        for (int code = 0; code < categories.length; code++) {
+            categoryLookup.put(categories[code], code);
+        }
+        this.order = order;
+        this.categoryOrder = categoryOrder;
+    }
+
+    public static CatalogSnapshot of(Collection<Product> products) {
+        List<Product> rows = new ArrayList<>(products);
+        rows.sort(Comparator.comparing(Product::getId));
+        int size = rows.size();
+        int[] ids = new int[size];
+        String[] titles = new String[size];
+        double[] prices = new double[size];
+        int[] categoryCodes = new int[size];
+        String[] descriptions = new String[size];
+        String[] images = new String[size];
+        int[] versions = new int[size];
+
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        for (int row = 0; row < size; row++) {
+            Product product = rows.get(row);
+            ids[row] = product.getId();
+            titles[row] = product.getTitle();
+            prices[row] = product.getPrice() == null ? Double.NaN : product.getPrice();
+            categoryCodes[row] = product.getCategory() == null
+                    ? NO_CATEGORY
+                    : codes.computeIfAbsent(product.getCategory(), category -> codes.size());
+            descriptions[row] = product.getDescription();
+            images[row] = product.getImage();
+            versions[row] = product.getVersion() == null ? 0 : product.getVersion();
+        }
+        String[] categories = codes.keySet().toArray(new String[0]);
+
+        ProductSort[] sorts = ProductSort.values();
+        int[][] order = new int[sorts.length][];
+        int[][][] categoryOrder = new int[categories.length][sorts.length][];
+        for (ProductSort sort : sorts) {
+            int[] sorted = IntStream.range(0, size).boxed()
+                    .sorted((a, b) -> compareRows(sort, ids, titles, prices, a, b))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            order[sort.ordinal()] = sorted;
+
+            int[] counts = new int[categories.length];
+            for (int row : sorted) {
+                if (categoryCodes[row] != NO_CATEGORY) {
+                    counts[categoryCodes[row]]++;
+                }
+            }
+            for (int code = 0; code < categories.length; code++) {
+                categoryOrder[code][sort.ordinal()] = new int[counts[code]];
+            }
+            int[] filled = new int[categories.length];
+            for (int row : sorted) {
+                int code = categoryCodes[row];
+                if (code != NO_CATEGORY) {
+                    categoryOrder[code][sort.ordinal()][filled[code]++] = row;
+                }
+            }
+        }
+        return new CatalogSnapshot(ids, titles, prices, categoryCodes, descriptions, images, versions, categories,
+                order, categoryOrder);
+    }
+
+    /**
+     * Returns a new snapshot with the changes applied; this snapshot is left untouched. Only the changed rows
+     * are sorted, everything else is merged into the new arrays in order, so a write costs a few linear copies
+     * of the columns and row orders rather than a rebuild of the catalog.
+     */
+    public CatalogSnapshot apply(List<ProductChange> changes) {
+        // the state each changed id ends up in, null when it is gone
+        Map<Integer, Product> changed = new HashMap<>();
+        for (ProductChange change : changes) {
+            if (change.getType() == ProductChange.Type.DELETED) {
+                changed.put(change.getId(), null);
+            } else {
+                if (change.getBefore() != null) {
+                    changed.put(change.getBefore().getId(), null);
+                }
+                changed.put(change.getAfter().getId(), change.getAfter());
+            }
+        }
+        boolean[] replaced = new boolean[ids.length];
+        List<Product> added = new ArrayList<>(changed.size());
+        int replacedCount = 0;
+        for (Map.Entry<Integer, Product> entry : changed.entrySet()) {
+            int row = Arrays.binarySearch(ids, entry.getKey());
+            if (row >= 0) {
+                replaced[row] = true;
+                replacedCount++;
+            }
+            if (entry.getValue() != null) {
+                added.add(entry.getValue());
+            }
+        }
+        added.sort(Comparator.comparing(Product::getId));
+
+        int size = ids.length - replacedCount + added.size();
+        int[] newIds = new int[size];
+        String[] newTitles = new String[size];
+        double[] newPrices = new double[size];
+        int[] newCategoryCodes = new int[size];
+        String[] newDescriptions = new String[size];
+        String[] newImages = new String[size];
+        int[] newVersions = new int[size];
+        // codes of categories no row had so far continue after the existing ones, see the renumbering below
+        List<String> dictionary = new ArrayList<>(Arrays.asList(categories));
+        Map<String, Integer> lookup = new HashMap<>(categoryLookup);
+
+        int[] oldToNew = new int[ids.length];
+        int[] addedRows = new int[added.size()];
+        int row = 0;
+        int next = 0;
+        for (int a = 0; row < ids.length || a < added.size(); ) {
+            if (row < ids.length && replaced[row]) {
+                oldToNew[row++] = -1;
+            } else if (a == added.size() || (row < ids.length && ids[row] < added.get(a).getId())) {
+                newIds[next] = ids[row];
+                newTitles[next] = titles[row];
+                newPrices[next] = prices[row];
+                newCategoryCodes[next] = categoryCodes[row];
+                newDescriptions[next] = descriptions[row];
+                newImages[next] = images[row];
+                newVersions[next] = versions[row];
+                oldToNew[row++] = next++;
+            } else {
+                Product product = added.get(a);
+                newIds[next] = product.getId();
+                newTitles[next] = product.getTitle();
+                newPrices[next] = product.getPrice() == null ? Double.NaN : product.getPrice();
+                newCategoryCodes[next] = product.getCategory() == null
+                        ? NO_CATEGORY
+                        : lookup.computeIfAbsent(product.getCategory(), category -> {
+                            dictionary.add(category);
+                            return dictionary.size() - 1;
+                        });
+                newDescriptions[next] = product.getDescription();
+                newImages[next] = product.getImage();
+                newVersions[next] = product.getVersion() == null ? 0 : product.getVersion();
+                addedRows[a++] = next++;
+            }
+        }
+
+        // renumbered in order of first appearance by id like a fresh snapshot, dropping categories left empty
+        int[] renumbered = new int[dictionary.size()];
+        Arrays.fill(renumbered, NO_CATEGORY);
+        List<String> newCategories = new ArrayList<>(dictionary.size());
+        int[] counts = new int[dictionary.size()];
+        for (int r = 0; r < size; r++) {
+            int code = newCategoryCodes[r];
+            if (code != NO_CATEGORY) {
+                if (renumbered[code] == NO_CATEGORY) {
+                    renumbered[code] = newCategories.size();
+                    newCategories.add(dictionary.get(code));
+                }
+                newCategoryCodes[r] = renumbered[code];
+                counts[renumbered[code]]++;
+            }
+        }
+
+        ProductSort[] sorts = ProductSort.values();
+        int[][] newOrder = new int[sorts.length][];
+        int[][][] newCategoryOrder = new int[newCategories.size()][sorts.length][];
+        for (ProductSort sort : sorts) {
+            int[] addedSorted = Arrays.stream(addedRows).boxed()
+                    .sorted((a, b) -> compareRows(sort, newIds, newTitles, newPrices, a, b))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            newOrder[sort.ordinal()] = merge(sort, order[sort.ordinal()], oldToNew, addedSorted, NO_CATEGORY, size,
+                    newIds, newTitles, newPrices, newCategoryCodes);
+            for (int code = 0; code < dictionary.size(); code++) {
+                if (renumbered[code] == NO_CATEGORY) {
+                    continue;
+                }
+                int[] existing = code < categories.length ? categoryOrder[code][sort.ordinal()] : new int[0];
+                newCategoryOrder[renumbered[code]][sort.ordinal()] = merge(sort, existing, oldToNew, addedSorted,
+                        renumbered[code], counts[renumbered[code]], newIds, newTitles, newPrices, newCategoryCodes);
+            }
+        }
+        return new CatalogSnapshot(newIds, newTitles, newPrices, newCategoryCodes, newDescriptions, newImages,
+                newVersions, newCategories.toArray(new String[0]), newOrder, newCategoryOrder);
+    }
+
+    /**
+     * Merges the rows of an existing order that are still there, as new rows, with added rows sorted the same
+     * way; only added rows of {@code category} are taken unless it is {@link #NO_CATEGORY}.
+     */
+    private static int[] merge(ProductSort sort, int[] existing, int[] oldToNew, int[] addedSorted, int category,
+                               int size, int[] ids, String[] titles, double[] prices, int[] categoryCodes) {
+        int[] merged = new int[size];
+        int e = 0;
+        int a = 0;
+        for (int i = 0; i < size; i++) {
+            while (e < existing.length && oldToNew[existing[e]] < 0) {
+                e++;
+            }
+            while (a < addedSorted.length && category != NO_CATEGORY && categoryCodes[addedSorted[a]] != category) {
+                a++;
+            }
+            if (a == addedSorted.length
+                    || (e < existing.length
+                    && compareRows(sort, ids, titles, prices, oldToNew[existing[e]], addedSorted[a]) < 0)) {
+                merged[i] = oldToNew[existing[e++]];
+            } else {
+                merged[i] = addedSorted[a++];
+            }
+        }
+        return merged;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public Product findById(Integer id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row < 0 ? null : product(row);
+    }
+
+    public Integer findVersionById(Integer id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row < 0 ? null : versions[row];
+    }
+
+    public List<Product> findAll() {
+        return products(order[ProductSort.ID.ordinal()], 0, ids.length);
+    }
+
+    public List<Product> findByCategory(String category) {
+        Integer code = categoryLookup.get(category);
+        if (code == null) {
+            return List.of();
+        }
+        int[] rows = categoryOrder[code][ProductSort.ID.ordinal()];
+        return products(rows, 0, rows.length);
+    }
+
+    public List<String> findAllCategories() {
+        return List.of(categories);
+    }
+
+    /**
+     * Same contract as {@link com.example.produktapi.repository.ProductKeysetRepository#findPage}. A single
+     * category without a price range is a slice of a precomputed order, any other filter walks the order and
+     * skips the rows it leaves out.
+     */
+    public List<Product> findPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit) {
+        List<String> selected = filter.getCategories();
+        int[] rows;
+        if (selected.size() == 1) {
+            Integer code = categoryLookup.get(selected.get(0));
+            if (code == null) {
+                return List.of();
+            }
+            rows = categoryOrder[code][sort.ordinal()];
+        } else {
+            rows = order[sort.ordinal()];
+        }
+        int from = after == null ? 0 : firstAfter(rows, sort, after);
+        if (selected.size() <= 1 && !filter.hasPriceRange()) {
+            return products(rows, from, Math.min(rows.length, from + limit));
+        }
+
+        boolean[] included = null;
+        if (selected.size() > 1) {
+            included = new boolean[categories.length];
+            for (String category : selected) {
+                Integer code = categoryLookup.get(category);
+                if (code != null) {
+                    included[code] = true;
+                }
+            }
+        }
+        List<Product> products = new ArrayList<>();
+        for (int i = from; i < rows.length && products.size() < limit; i++) {
+            int row = rows[i];
+            if (included != null && (categoryCodes[row] == NO_CATEGORY || !included[categoryCodes[row]])) {
+                continue;
+            }
+            if (filter.matchesPrice(Double.isNaN(prices[row]) ? null : prices[row])) {
+                products.add(product(row));
+            }
+        }
+        return products;
+    }
+
+    private int firstAfter(int[] rows, ProductSort sort, ProductCursor after) {
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToCursor(sort, rows[middle], after) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compareRows(ProductSort sort, int[] ids, String[] titles, double[] prices, int a, int b) {
+        int result = switch (sort) {
+            case ID -> 0;
+            case PRICE -> comparePrices(prices[a], prices[b]);
+            case TITLE -> compareNullsFirst(titles[a], titles[b]);
+        };
+        return result != 0 ? result : Integer.compare(ids[a], ids[b]);
+    }
+
+    private int compareToCursor(ProductSort sort, int row, ProductCursor cursor) {
+        int result = switch (sort) {
+            case ID -> 0;
+            case PRICE -> comparePrices(prices[row], cursor.getValue() == null ? Double.NaN : (Double) cursor.getValue());
+            case TITLE -> compareNullsFirst(titles[row], (String) cursor.getValue());
+        };
+        return result != 0 ? result : Integer.compare(ids[row], cursor.getId());
+    }
+
+    private static int comparePrices(double a, double b) {
+        boolean aNull = Double.isNaN(a);
+        boolean bNull = Double.isNaN(b);
+        if (aNull || bNull) {
+            return aNull == bNull ? 0 : (aNull ? -1 : 1);
+        }
+        return Double.compare(a, b);
+    }
+
+    private static int compareNullsFirst(String a, String b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? -1 : 1);
+        }
+        return a.compareTo(b);
+    }
+
+    private List<Product> products(int[] rows, int from, int to) {
+        List<Product> products = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            products.add(product(rows[i]));
+        }
+        return products;
+    }
+
+    private Product product(int row) {
+        Product product = new Product(
+                titles[row],
+                Double.isNaN(prices[row]) ? null : prices[row],
+                categoryCodes[row] == NO_CATEGORY ? null : categories[categoryCodes[row]],
+                descriptions[row],
+                images[row]);
+        product.setId(ids[row]);
+        product.setVersion(versions[row]);
+        return product;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the current {@link CatalogSnapshot} when {@code produktapi.read-engine=snapshot}. Reads are a
+ * single volatile load; every committed write replaces the snapshot with a modified copy.
+ */
+@Component
+public class CatalogSnapshots {
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    // not synchronized: the lock is held across the JDBC read, which must not pin a virtual thread
+    private final Lock lock = new ReentrantLock();
+
+    private volatile CatalogSnapshot current;
+
+    public CatalogSnapshots(ProductRepository productRepository,
+                            @Value("${produktapi.read-engine:jpa}") String readEngine) {
+        this.productRepository = productRepository;
+        this.enabled = "snapshot".equalsIgnoreCase(readEngine);
+    }
+
+    /**
+     * @return the snapshot to serve reads from, or {@code null} when reads should go to the database
+     */
+    public CatalogSnapshot current() {
+        return current;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.lock();
+        try {
+            if (enabled) {
+                current = CatalogSnapshot.of(productRepository.findAll());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Order(ProductChangedEvent.STORE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        lock.lock();
+        try {
+            // before the first load there is nothing to update, the load itself will see the change
+            if (current != null) {
+                current = current.apply(event.getChanges());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
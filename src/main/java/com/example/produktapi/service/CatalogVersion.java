@@ -0,0 +1,61 @@
+package com.example.produktapi.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Catalog-wide change counter. Every committed write moves it forward, so an entity tag built from it
+ * identifies the state of every list response without looking at the data.
+ */
+@Component
+public class CatalogVersion {
+
+    // tags from an earlier run of the application never match, even though the counter starts over
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong changes = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+
+    /**
+     * Weak, because the same list is sent gzipped to some clients and not to others, and because Tomcat does not
+     * compress a response with a strong tag.
+     */
+    public String getETag() {
+        return "W/\"" + instance + "-" + changes.get() + "\"";
+    }
+
+    /**
+     * Differs between runs of the application, for tags that must not match one from an earlier run.
+     */
+    public String getInstance() {
+        return instance;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        advance();
+    }
+
+    /**
+     * Moves on again once the changes are on every replica. A list read from a replica that had not caught up yet
+     * went out with the tag of the write, and would otherwise be confirmed with 304 until the next write.
+     */
+    @EventListener
+    public void onReplicasSynced(ReplicasSyncedEvent event) {
+        advance();
+    }
+
+    private void advance() {
+        lastModified = System.currentTimeMillis();
+        changes.incrementAndGet();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.CategoryStats;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.CategoryPrice;
+import com.example.produktapi.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Count and price aggregates per category, read once and then kept up to date from the change events, so
+ * neither the stats nor the facet counts ever need a GROUP BY over the table. Each category keeps its prices
+ * sorted, which gives min and max from the ends and the count within a price range from two binary searches.
+ */
+@Component
+public class CategoryStatistics {
+
+    private final ProductRepository productRepository;
+    private final ProductChangeLog productChangeLog;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, CategoryPrices> categories = new TreeMap<>();
+    private boolean loaded;
+
+    public CategoryStatistics(ProductRepository productRepository, ProductChangeLog productChangeLog) {
+        this.productRepository = productRepository;
+        this.productChangeLog = productChangeLog;
+    }
+
+    public List<CategoryStats> getStats() {
+        lock.readLock().lock();
+        try {
+            List<CategoryStats> stats = new ArrayList<>(categories.size());
+            categories.forEach((category, prices) -> stats.add(prices.stats(category)));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param minPrice inclusive lower bound, or {@code null}
+     * @param maxPrice inclusive upper bound, or {@code null}
+     * @return per category, in name order, how many products lie within the range; products without a price
+     * only count when there are no bounds, categories without a match are left out
+     */
+    public Map<String, Integer> countByCategory(Double minPrice, Double maxPrice) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            categories.forEach((category, prices) -> {
+                int count = prices.count(minPrice, maxPrice);
+                if (count > 0) {
+                    counts.put(category, count);
+                }
+            });
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads every category and price with writes held off. The events of the writes before it are ignored, the
+     * read sees those writes, and the writes after it wait until it is loaded, so no write counts twice or not
+     * at all.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        productChangeLog.withoutWrites(() -> {
+            List<CategoryPrice> rows = productRepository.findAllCategoryPrices();
+            lock.writeLock().lock();
+            try {
+                categories.clear();
+                for (CategoryPrice row : rows) {
+                    add(row.getCategory(), row.getPrice());
+                }
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    @Order(ProductChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            // before the first load there is nothing to update, the load itself will see the change
+            if (!loaded) {
+                return;
+            }
+            for (ProductChange change : event.getChanges()) {
+                Product before = change.getBefore();
+                if (before != null) {
+                    remove(before.getCategory(), before.getPrice());
+                }
+                Product after = change.getAfter();
+                if (after != null) {
+                    add(after.getCategory(), after.getPrice());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(String category, Double price) {
+        if (category != null) {
+            categories.computeIfAbsent(category, key -> new CategoryPrices()).add(price);
+        }
+    }
+
+    private void remove(String category, Double price) {
+        CategoryPrices prices = category == null ? null : categories.get(category);
+        if (prices != null) {
+            prices.remove(price);
+            if (prices.count() == 0) {
+                categories.remove(category);
+            }
+        }
+    }
+
+    /**
+     * The prices of one category in ascending order, plus the number of products without a price. The sum is
+     * kept exact so that the average does not drift after many writes.
+     */
+    private static final class CategoryPrices {
+
+        private double[] prices = new double[4];
+        private int size;
+        private int withoutPrice;
+        private BigDecimal sum = BigDecimal.ZERO;
+
+        void add(Double price) {
+            if (price == null) {
+                withoutPrice++;
+                return;
+            }
+            int index = insertionPoint(price);
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+            }
+            System.arraycopy(prices, index, prices, index + 1, size - index);
+            prices[index] = price;
+            size++;
+            sum = sum.add(BigDecimal.valueOf(price));
+        }
+
+        void remove(Double price) {
+            if (price == null) {
+                withoutPrice = Math.max(0, withoutPrice - 1);
+                return;
+            }
+            int index = insertionPoint(price);
+            if (index < size && prices[index] == price) {
+                System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+                size--;
+                sum = sum.subtract(BigDecimal.valueOf(price));
+            }
+        }
+
+        int count() {
+            return size + withoutPrice;
+        }
+
+        int count(Double minPrice, Double maxPrice) {
+            if (minPrice == null && maxPrice == null) {
+                return count();
+            }
+            int from = minPrice == null ? 0 : insertionPoint(minPrice);
+            int to = maxPrice == null ? size : insertionPoint(Math.nextUp(maxPrice));
+            return Math.max(0, to - from);
+        }
+
+        CategoryStats stats(String category) {
+            if (size == 0) {
+                return new CategoryStats(category, count(), null, null, null);
+            }
+            double average = sum.divide(BigDecimal.valueOf(size), MathContext.DECIMAL64).doubleValue();
+            return new CategoryStats(category, count(), prices[0], prices[size - 1], average);
+        }
+
+        /**
+         * @return index of the first price that is not less than {@code price}
+         */
+        private int insertionPoint(double price) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (prices[middle] < price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -1,27 +1,86 @@
 package com.example.produktapi.service;
 
 import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.exception.ConflictException;
+import com.example.produktapi.exception.ServiceUnavailableException;
+import com.example.produktapi.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import com.example.produktapi.exception.EntityNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
 @ControllerAdvice
 public class ExceptionHandlerAdvice {
 
     private final String SERVER_ERROR = "Internal Server Error, retry or contact system admin";
 
+    private final MeterRegistry meterRegistry;
+
+    public ExceptionHandlerAdvice(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity handleException(EntityNotFoundException e) {
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        return respond(HttpStatus.NOT_FOUND, e, e.getMessage());
     }
     @ExceptionHandler(BadRequestException.class)
     public ResponseEntity handleException(BadRequestException e) {
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        return respond(HttpStatus.BAD_REQUEST, e, e.getMessage());
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity handleException(ConflictException e) {
+        return respond(HttpStatus.CONFLICT, e, e.getMessage());
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity handleException(TooManyRequestsException e) {
+        return respond(HttpStatus.TOO_MANY_REQUESTS, e, e.getMessage(), retryAfter(e.getRetryAfter()));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity handleException(ServiceUnavailableException e) {
+        return respond(HttpStatus.SERVICE_UNAVAILABLE, e, e.getMessage(), retryAfter(e.getRetryAfter()));
+    }
+
+    /**
+     * A request gave up waiting for a read another request started, see {@link SingleFlight}.
+     */
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity handleException(TimeoutException e) {
+        return respond(HttpStatus.SERVICE_UNAVAILABLE, e, "Tidsgränsen för läsningen överskreds, försök igen");
     }
 
     @ExceptionHandler(NullPointerException.class)
     public ResponseEntity handleNullPointerException(NullPointerException e) {
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(SERVER_ERROR);
+        return respond(HttpStatus.INTERNAL_SERVER_ERROR, e, SERVER_ERROR);
+    }
+
+    /**
+     * Counts the handled exception in {@code produktapi.errors} before answering.
+     */
+    private ResponseEntity respond(HttpStatus status, Exception e, String body) {
+        return respond(status, e, body, HttpHeaders.EMPTY);
+    }
+
+    private ResponseEntity respond(HttpStatus status, Exception e, String body, HttpHeaders headers) {
+        meterRegistry.counter("produktapi.errors",
+                "exception", e.getClass().getSimpleName(),
+                "status", Integer.toString(status.value())).increment();
+        return ResponseEntity.status(status).headers(headers).body(body);
+    }
+
+    private static HttpHeaders retryAfter(Duration retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        // whole seconds, rounded up so that a client does not come back too early
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        return headers;
     }
 }
@@ -0,0 +1,269 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductPage;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache for {@link ProductService}. Entries expire after the configured time to live
+ * and are invalidated key by key when a {@link ProductChangedEvent} is committed.
+ * <p>
+ * Entries are futures. A miss puts an unfinished future in the cache and the caller loads the value outside
+ * the cache's locks, concurrent readers of the same key wait on that future. A blocking database call inside
+ * a lock would pin a virtual thread to its carrier.
+ */
+@Component
+public class ProductCache implements MeterBinder {
+
+    private static final String CATEGORIES_KEY = "categories";
+
+    private final boolean enabled;
+    private final AsyncCache<Integer, Product> products;
+    private final AsyncCache<CategoryPageKey, ProductPage<Product>> categoryPages;
+    private final AsyncCache<String, List<String>> categories;
+
+    public ProductCache(ProductCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.products = build(properties);
+        this.categoryPages = build(properties);
+        this.categories = build(properties);
+    }
+
+    private static <K, V> AsyncCache<K, V> build(ProductCacheProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * @param loader returns the product or {@code null} when it does not exist; missing products are not cached
+     */
+    public Product getProduct(Integer id, Function<Integer, Product> loader) {
+        return cached() ? get(products, id, loader) : loader.apply(id);
+    }
+
+    /**
+     * @return the cached product without loading it or waiting for a load, or {@code null}
+     */
+    public Product peekProduct(Integer id) {
+        return cached() ? peek(products, id) : null;
+    }
+
+    /**
+     * @param loader loads the products that are not cached; ids it leaves out do not exist and are not cached
+     * @return the cached and loaded products by id
+     */
+    public Map<Integer, Product> getProducts(Collection<Integer> ids,
+                                             Function<Set<? extends Integer>, Map<Integer, Product>> loader) {
+        if (!cached()) {
+            return loader.apply(new LinkedHashSet<>(ids));
+        }
+        Map<Integer, CompletableFuture<Product>> futures = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<Product>> owned = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            CompletableFuture<Product> created = new CompletableFuture<>();
+            CompletableFuture<Product> future = products.get(id, (key, executor) -> created);
+            futures.put(id, future);
+            if (future == created) {
+                owned.put(id, created);
+            }
+        }
+        if (!owned.isEmpty()) {
+            try {
+                Map<Integer, Product> loaded = loader.apply(owned.keySet());
+                owned.forEach((id, future) -> future.complete(loaded.get(id)));
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            }
+        }
+        Map<Integer, Product> found = new LinkedHashMap<>();
+        futures.forEach((id, future) -> {
+            Product product = join(future);
+            if (product != null) {
+                found.put(id, product);
+            }
+        });
+        return found;
+    }
+
+    public ProductPage<Product> getCategoryPage(String category, String sort, String after, Integer limit,
+                                                Supplier<ProductPage<Product>> loader) {
+        if (!cached()) {
+            return loader.get();
+        }
+        return get(categoryPages, new CategoryPageKey(category, sort, after, limit), key -> loader.get());
+    }
+
+    public List<String> getCategories(Supplier<List<String>> loader) {
+        return cached() ? get(categories, CATEGORIES_KEY, key -> loader.get()) : loader.get();
+    }
+
+    private boolean cached() {
+        return enabled && !ReadYourWrites.isActive();
+    }
+
+    private static <K, V> V get(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> created);
+        if (future == created) {
+            try {
+                created.complete(loader.apply(key));
+            } catch (RuntimeException | Error e) {
+                // a failed future is dropped from the cache, the next reader tries again
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return join(future);
+    }
+
+    private static <K, V> V peek(AsyncCache<K, V> cache, K key) {
+        CompletableFuture<V> future = cache.getIfPresent(key);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Order(ProductChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        for (ProductChange change : event.getChanges()) {
+            invalidate(change);
+        }
+    }
+
+    /**
+     * Drops what reads from a lagging replica may have cached since the changes were committed.
+     */
+    @EventListener
+    public void onReplicasSynced(ReplicasSyncedEvent event) {
+        products.synchronous().invalidateAll(event.getIds());
+        categoryPages.synchronous().invalidateAll();
+        categories.synchronous().invalidate(CATEGORIES_KEY);
+    }
+
+    private void invalidate(ProductChange change) {
+        // writes that do not read the old row first leave it out, the cached copy may still know it
+        Product previous = change.getBefore() != null ? change.getBefore() : peek(products, change.getId());
+        products.synchronous().invalidate(change.getId());
+
+        String before = previous == null ? null : previous.getCategory();
+        String after = change.getAfter() == null ? null : change.getAfter().getCategory();
+        boolean beforeUnknown = change.getType() != ProductChange.Type.CREATED && previous == null;
+        if (beforeUnknown) {
+            categoryPages.synchronous().invalidateAll();
+        } else {
+            categoryPages.asMap().keySet().removeIf(key ->
+                    key.category.equals(before) || key.category.equals(after));
+        }
+
+        // the category list only changes when a category may have appeared or disappeared
+        boolean categoriesUnchanged;
+        if (change.getType() == ProductChange.Type.CREATED) {
+            List<String> cached = peek(categories, CATEGORIES_KEY);
+            categoriesUnchanged = cached != null && cached.contains(after);
+        } else {
+            categoriesUnchanged = before != null && before.equals(after);
+        }
+        if (!categoriesUnchanged) {
+            categories.synchronous().invalidate(CATEGORIES_KEY);
+        }
+    }
+
+    /**
+     * Publishes the statistics of every cache as {@code cache.*} meters, tagged with the same names as
+     * {@link #getStats()}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, products, "products");
+        CaffeineCacheMetrics.monitor(registry, categoryPages, "categoryPages");
+        CaffeineCacheMetrics.monitor(registry, categories, "categories");
+    }
+
+    public Map<String, Map<String, Number>> getStats() {
+        Map<String, Map<String, Number>> stats = new LinkedHashMap<>();
+        stats.put("products", describe(products));
+        stats.put("categoryPages", describe(categoryPages));
+        stats.put("categories", describe(categories));
+        return stats;
+    }
+
+    private static Map<String, Number> describe(AsyncCache<?, ?> cache) {
+        CacheStats stats = cache.synchronous().stats();
+        Map<String, Number> description = new LinkedHashMap<>();
+        description.put("size", cache.synchronous().estimatedSize());
+        description.put("hits", stats.hitCount());
+        description.put("misses", stats.missCount());
+        description.put("hitRate", stats.hitRate());
+        description.put("evictions", stats.evictionCount());
+        return description;
+    }
+
+    private static final class CategoryPageKey {
+        private final String category;
+        private final String sort;
+        private final String after;
+        private final Integer limit;
+
+        private CategoryPageKey(String category, String sort, String after, Integer limit) {
+            this.category = category;
+            this.sort = sort;
+            this.after = after;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CategoryPageKey other)) {
+                return false;
+            }
+            return category.equals(other.category) && Objects.equals(sort, other.sort)
+                    && Objects.equals(after, other.after) && Objects.equals(limit, other.limit);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(category, sort, after, limit);
+        }
+    }
+}
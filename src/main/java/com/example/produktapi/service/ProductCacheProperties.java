@@ -0,0 +1,45 @@
+package com.example.produktapi.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("produktapi.cache")
+public class ProductCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of entries in each of the product, category page and category list caches.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * How long an entry may be served after it was loaded, even if no write invalidated it.
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+}
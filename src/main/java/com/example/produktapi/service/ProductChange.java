@@ -0,0 +1,56 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+
+/**
+ * A single product write. {@code before} is the state that was replaced or removed and {@code after}
+ * the state that was written; either may be {@code null} when it does not apply or is not known.
+ */
+public class ProductChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Integer id;
+    private final Product before;
+    private final Product after;
+
+    public ProductChange(Type type, Integer id, Product before, Product after) {
+        this.type = type;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static ProductChange created(Product product) {
+        return new ProductChange(Type.CREATED, product.getId(), null, product);
+    }
+
+    public static ProductChange updated(Product before, Product after) {
+        return new ProductChange(Type.UPDATED, after.getId(), before, after);
+    }
+
+    public static ProductChange deleted(Integer id, Product before) {
+        return new ProductChange(Type.DELETED, id, before, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Product getBefore() {
+        return before;
+    }
+
+    public Product getAfter() {
+        return after;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.model.ProductChangeEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes committed product changes to server-sent event streams. A stream is an asynchronous request that holds
+ * no thread while it waits. Each subscriber has a queue of at most {@code bufferSize} changes, which is sent
+ * from a virtual thread of its own only while there is something in it, so a client that stops reading holds up
+ * no one but itself until the server's write timeout gives up on it. A subscriber that falls further behind is
+ * disconnected or loses its oldest changes, see {@link ProductChangeFeedProperties.Overflow}.
+ * Event ids are {@code <instance>-<sequence>}, so a client resuming with Last-Event-ID is sent the changes it
+ * missed, or told to reload the catalog when they are no longer known.
+ */
+@Component
+public class ProductChangeFeed implements MeterBinder, DisposableBean {
+
+    static final String RESET_EVENT = "reset";
+
+    // ids from an earlier run of the application are never resumed, even though the sequence starts over
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final ProductChangeFeedProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Executor senders;
+    private final ScheduledExecutorService heartbeats;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong overflows = new AtomicLong();
+
+    // held while a change is numbered and queued, so that every subscriber gets changes in sequence order
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Event> history = new ArrayDeque<>();
+    private long sequence;
+
+    @Autowired
+    public ProductChangeFeed(ProductChangeFeedProperties properties, ObjectMapper objectMapper) {
+        this(properties, objectMapper,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("change-feed-sender-", 0).factory()));
+    }
+
+    ProductChangeFeed(ProductChangeFeedProperties properties, ObjectMapper objectMapper, Executor senders) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.senders = senders;
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getHeartbeatInterval().toMillis();
+        heartbeats.scheduleAtFixedRate(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param lastEventId the id of the last event the client received, or {@code null} for a new client
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(properties.getTimeout().toMillis()), lastEventId);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, String lastEventId) {
+        Long after = lastEventId == null ? null : parseSequence(lastEventId);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        lock.lock();
+        try {
+            if (lastEventId != null) {
+                List<Event> missed = after != null ? missedAfter(after) : null;
+                if (missed != null) {
+                    missed.forEach(subscriber::offer);
+                } else {
+                    subscriber.offer(new Event(eventId(sequence), RESET_EVENT, "{}"));
+                }
+            }
+            subscribers.add(subscriber);
+        } finally {
+            lock.unlock();
+        }
+        return emitter;
+    }
+
+    /**
+     * @return the sequence number, or {@code null} for an id of another instance of the application
+     */
+    private Long parseSequence(String lastEventId) {
+        int separator = lastEventId.lastIndexOf('-');
+        try {
+            long parsed = Long.parseLong(lastEventId.substring(separator + 1).trim());
+            return separator > 0 && lastEventId.substring(0, separator).trim().equals(instance) ? parsed : null;
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Ogiltigt Last-Event-ID: " + lastEventId);
+        }
+    }
+
+    /**
+     * @return the changes after the given one, or {@code null} when some of them are no longer kept or there
+     * are more than a subscriber may have queued
+     */
+    private List<Event> missedAfter(long after) {
+        long oldest = history.isEmpty() ? sequence + 1 : history.peekFirst().sequence();
+        if (after > sequence || after < oldest - 1 || sequence - after > properties.getBufferSize()) {
+            return null;
+        }
+        List<Event> missed = new ArrayList<>((int) (sequence - after));
+        for (Iterator<Event> newestFirst = history.descendingIterator(); newestFirst.hasNext(); ) {
+            Event event = newestFirst.next();
+            if (event.sequence() <= after) {
+                break;
+            }
+            missed.add(event);
+        }
+        Collections.reverse(missed);
+        return missed;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        lock.lock();
+        try {
+            for (ProductChange change : event.getChanges()) {
+                long next = ++sequence;
+                ProductChangeEntry entry = new ProductChangeEntry(next, change.getType().name(), change.getId(),
+                        change.getAfter());
+                Event sent = new Event(eventId(next), change.getType().name().toLowerCase(Locale.ROOT),
+                        toJson(entry), next);
+                history.addLast(sent);
+                if (history.size() > properties.getHistory()) {
+                    history.removeFirst();
+                }
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(sent);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String toJson(ProductChangeEntry entry) {
+        try {
+            return objectMapper.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String eventId(long sequence) {
+        return instance + "-" + sequence;
+    }
+
+    void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("produktapi.changes.subscribers", subscribers, Set::size)
+                .description("Open change streams")
+                .register(registry);
+        FunctionCounter.builder("produktapi.changes.overflows", overflows, AtomicLong::get)
+                .description("Changes that did not fit in the buffer of a slow subscriber")
+                .tag("policy", properties.getOverflow().name())
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        heartbeats.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        // the senders still complete the streams closed above
+        if (senders instanceof ExecutorService executor) {
+            executor.shutdown();
+        }
+    }
+
+    private record Event(String id, String name, String data, long sequence) {
+
+        Event(String id, String name, String data) {
+            this(id, name, data, -1);
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            return SseEmitter.event().id(id).name(name).data(data);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(properties.getBufferSize());
+        // kept out of the queue, so that a heartbeat never takes the place of a change
+        private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        // only set by whoever holds draining
+        private volatile boolean completed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            if (!queue.offer(event)) {
+                overflows.incrementAndGet();
+                if (properties.getOverflow() == ProductChangeFeedProperties.Overflow.DISCONNECT) {
+                    close();
+                    return;
+                }
+                // changes are only offered under the feed lock and only the sender takes them, so the slot freed
+                // here stays free
+                queue.poll();
+                queue.offer(event);
+            }
+            schedule();
+        }
+
+        void heartbeat() {
+            if (queue.isEmpty() && heartbeatDue.compareAndSet(false, true)) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    closed = true;
+                    subscribers.remove(this);
+                    queue.clear();
+                    // no sender is running and none will, so nothing sends while this completes the stream
+                    complete();
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                for (Event event; !closed && (event = queue.poll()) != null; ) {
+                    emitter.send(event.toSse());
+                }
+                if (!closed && heartbeatDue.getAndSet(false)) {
+                    emitter.send(SseEmitter.event().comment(""));
+                }
+                if (closed) {
+                    complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client has gone away or the stream is already closed, the container completes the request
+                closed = true;
+                completed = true;
+                subscribers.remove(this);
+                queue.clear();
+            } finally {
+                draining.set(false);
+            }
+            if (!completed && (closed || !queue.isEmpty() || heartbeatDue.get())) {
+                schedule();
+            }
+        }
+
+        private void complete() {
+            if (!completed) {
+                completed = true;
+                emitter.complete();
+            }
+        }
+
+        /**
+         * Stops the stream without waiting for it. The emitter is completed by the sender: {@code complete()}
+         * waits for a send in progress, which may wait for a client that stopped reading, and this is called on
+         * the thread publishing a change while it holds the feed lock.
+         */
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            schedule();
+        }
+    }
+}
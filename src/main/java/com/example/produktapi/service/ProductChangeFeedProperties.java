@@ -0,0 +1,83 @@
+package com.example.produktapi.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("produktapi.changes")
+public class ProductChangeFeedProperties {
+
+    public enum Overflow {
+        /**
+         * Close the stream. The client reconnects with Last-Event-ID and is sent what it missed.
+         */
+        DISCONNECT,
+        /**
+         * Drop the oldest unsent change. The client sees a gap in the event ids.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Changes that may wait for a single subscriber before {@link #overflow} applies.
+     */
+    private int bufferSize = 256;
+
+    private Overflow overflow = Overflow.DISCONNECT;
+
+    /**
+     * Most recent changes kept for subscribers that resume with Last-Event-ID. A subscriber that missed more
+     * is told to reload the catalog instead.
+     */
+    private int history = 10_000;
+
+    /**
+     * How often an idle stream is sent a comment, so that closed connections are noticed.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    /**
+     * How long a stream stays open before the client has to reconnect.
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+
+    public int getHistory() {
+        return history;
+    }
+
+    public void setHistory(int history) {
+        this.history = history;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
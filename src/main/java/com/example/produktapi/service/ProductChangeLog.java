@@ -0,0 +1,177 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.model.ProductChangeEntry;
+import com.example.produktapi.model.ProductChanges;
+import com.example.produktapi.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Pull-based delta sync. Every insert and update gives the product row the next value of
+ * {@code product_change_seq}, and every delete leaves a tombstone with one (see schema.sql), so the changes after
+ * a token are the rows and tombstones with a higher value. A token is {@code <instance>:<sequence>}, encoded like
+ * a cursor. The database is created anew on every start, so a token of an earlier run starts the client over.
+ * <p>
+ * A sequence value is drawn when a row is written but only seen once the write commits, and writes do not
+ * necessarily commit in the order they drew their values. Writes therefore go through {@link #write(Supplier)},
+ * which numbers them as they start, and a sync reads no further than a commit-ordered watermark: the highest
+ * value read once every write that started before the read has completed. A sync never waits for a write and a
+ * token never passes a change that has yet to commit.
+ */
+@Component
+public class ProductChangeLog {
+
+    // tokens from an earlier run of the application are never continued, even though the sequence starts over
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final ProductRepository productRepository;
+
+    // only taken exclusively by withoutWrites, fair so that it is not starved by the writes that keep coming
+    private final ReentrantReadWriteLock writes = new ReentrantReadWriteLock(true);
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> writesInFlight = new ConcurrentSkipListSet<>();
+    /** every change up to its sequence has committed */
+    private final AtomicReference<Watermark> committed = new AtomicReference<>(new Watermark(0, 0));
+    /** a sequence read while writes that started before it were in flight, it is committed once they complete */
+    private final AtomicReference<Watermark> pending = new AtomicReference<>();
+
+    public ProductChangeLog(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Runs a write to the product table. Writes run concurrently with each other, a sync waits for the ones in
+     * flight. A write that joins a transaction of the caller is in flight until that transaction completes.
+     * Outside a transaction the write should publish its {@link ProductChangedEvent} before it returns, so that
+     * the event is handled while the write is still in flight.
+     */
+    public <T> T write(Supplier<T> write) {
+        Lock inFlight = writes.readLock();
+        inFlight.lock();
+        long number = writesStarted.incrementAndGet();
+        writesInFlight.add(number);
+        Runnable completed = () -> {
+            writesInFlight.remove(number);
+            inFlight.unlock();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    completed.run();
+                }
+            });
+            return write.get();
+        }
+        try {
+            return write.get();
+        } finally {
+            completed.run();
+        }
+    }
+
+    /**
+     * Runs a read that no write overlaps. It waits for the writes in flight, and for their change events to be
+     * handled, and holds new writes off until it is done, so state read here plus the events handled after it
+     * count every write exactly once.
+     */
+    public <T> T withoutWrites(Supplier<T> read) {
+        Lock noWritesInFlight = writes.writeLock();
+        noWritesInFlight.lock();
+        try {
+            return read.get();
+        } finally {
+            noWritesInFlight.unlock();
+        }
+    }
+
+    /**
+     * @param token the next token of the previous sync, or {@code null} to start with every product there is
+     */
+    public ProductChanges getChangesSince(String token, Integer limit) {
+
+        int pageSize = ProductService.pageSize(limit);
+        Long sequence = token == null ? Long.valueOf(0) : decode(token);
+        boolean reset = sequence == null;
+        long after = reset ? 0 : sequence;
+
+        long until = committedSequence();
+
+        // one extra change tells whether there is a next page
+        List<ProductChangeEntry> changes = productRepository.findChangePage(after, until, pageSize + 1);
+        if (changes.size() <= pageSize) {
+            return new ProductChanges(changes, encode(Math.max(after, until)), false, reset);
+        }
+        List<ProductChangeEntry> page = changes.subList(0, pageSize);
+        return new ProductChanges(page, encode(page.get(pageSize - 1).getSequence()), true, reset);
+    }
+
+    /**
+     * The last sequence is read without holding writes off. A write that drew a lower value and has yet to commit
+     * started before the read ended, so the value read is safe once no write numbered up to then is in flight.
+     * Until then it waits as the pending watermark and the sync reads up to the last committed one.
+     */
+    private long committedSequence() {
+        Watermark waiting = pending.get();
+        if (waiting != null && completedUpTo(waiting.writesStarted())) {
+            advance(waiting);
+            pending.compareAndSet(waiting, null);
+        }
+        long sequence = productRepository.findLastChangeSequence();
+        Watermark read = new Watermark(sequence, writesStarted.get());
+        if (completedUpTo(read.writesStarted())) {
+            advance(read);
+        } else {
+            pending.compareAndSet(null, read);
+        }
+        return committed.get().sequence();
+    }
+
+    private boolean completedUpTo(long writeNumber) {
+        Long oldest = writesInFlight.ceiling(0L);
+        return oldest == null || oldest > writeNumber;
+    }
+
+    private void advance(Watermark watermark) {
+        committed.accumulateAndGet(watermark, (current, next) -> next.sequence() > current.sequence() ? next : current);
+    }
+
+    /**
+     * @return the sequence, or {@code null} for a token of another instance of the application
+     */
+    private Long decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            long sequence = Long.parseLong(decoded.substring(separator + 1));
+            if (separator < 1 || sequence < 0) {
+                throw new IllegalArgumentException(decoded);
+            }
+            return decoded.substring(0, separator).equals(instance) ? sequence : null;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Ogiltig token: " + token);
+        }
+    }
+
+    private String encode(long sequence) {
+        String raw = instance + ":" + sequence;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A change sequence and how many writes had started when it was read.
+     */
+    private record Watermark(long sequence, long writesStarted) {
+    }
+}
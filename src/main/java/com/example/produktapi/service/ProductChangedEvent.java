@@ -0,0 +1,38 @@
+package com.example.produktapi.service;
+
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+/**
+ * Published by {@link ProductService} for every write. Listeners that keep derived state
+ * (caches, indexes) should use {@code @TransactionalEventListener} so they only see committed changes.
+ * Listeners that tell clients about the change, such as the catalog version behind list entity tags, run
+ * last, so that a client who learns of a change can no longer be served the state before it.
+ */
+public class ProductChangedEvent {
+
+    /**
+     * Order of listeners updating state other caches are filled from, the snapshot and the second-level cache.
+     */
+    public static final int STORE_ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    /**
+     * Order of listeners updating caches and indexes that are filled from the database or the stores above.
+     */
+    public static final int CACHE_ORDER = 0;
+
+    private final List<ProductChange> changes;
+
+    public ProductChangedEvent(List<ProductChange> changes) {
+        this.changes = changes;
+    }
+
+    public ProductChangedEvent(ProductChange change) {
+        this(List.of(change));
+    }
+
+    public List<ProductChange> getChanges() {
+        return changes;
+    }
+}
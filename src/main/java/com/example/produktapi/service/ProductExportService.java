@@ -0,0 +1,74 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole catalog to an output stream one product at a time, so memory use does not grow
+ * with the size of the table.
+ */
+@Service
+public class ProductExportService {
+
+    public enum Format {
+        JSON,
+        NDJSON
+    }
+
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter writer;
+
+    public ProductExportService(ProductRepository productRepository, EntityManager entityManager,
+                                ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.writer = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Transactional(readOnly = true)
+    public long exportProducts(OutputStream out, Format format) throws IOException {
+
+        long count = 0;
+        try (Stream<Product> products = productRepository.streamAll();
+             SequenceWriter sequence = open(out, format)) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                sequence.write(product);
+                // keep the persistence context from holding on to every row read so far
+                entityManager.detach(product);
+                count++;
+            }
+            if (format == Format.NDJSON && count > 0) {
+                // the separator only goes between values, ndjson also ends the last line
+                sequence.flush();
+                out.write('\n');
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    private SequenceWriter open(OutputStream out, Format format) throws IOException {
+        if (format == Format.NDJSON) {
+            return writer.withRootValueSeparator("\n").writeValues(out);
+        }
+        return writer.writeValuesAsArray(out);
+    }
+}
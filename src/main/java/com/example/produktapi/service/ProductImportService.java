@@ -0,0 +1,138 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.ImportItemResult;
+import com.example.produktapi.model.ImportResult;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates many products at once. Input is read and written in chunks: every chunk checks its titles
+ * with one query and is inserted in JDBC batches in its own transaction, so neither memory nor
+ * transaction size depends on how many products are imported.
+ */
+@Service
+public class ProductImportService {
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ProductChangeLog productChangeLog;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public ProductImportService(ProductRepository productRepository, ProductService productService,
+                                ProductChangeLog productChangeLog, PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${produktapi.import.chunk-size:1000}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.productChangeLog = productChangeLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports products until {@code products} is exhausted or returns input it cannot read. Chunks that were
+     * already written stay written in both cases.
+     *
+     * @return one result per product read, in input order
+     */
+    public ImportResult importProducts(Iterator<Product> products) {
+
+        List<ImportItemResult> results = new ArrayList<>();
+        List<Product> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        while (true) {
+            Product product;
+            try {
+                if (!products.hasNext()) {
+                    break;
+                }
+                product = products.next();
+            } catch (RuntimeException e) {
+                importChunk(chunk, index - chunk.size(), results);
+                results.add(ImportItemResult.rejected(index, "Ogiltig produkt: " + e.getMessage()));
+                return new ImportResult(results);
+            }
+            chunk.add(product);
+            index++;
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, index - chunk.size(), results);
+                chunk.clear();
+            }
+        }
+        importChunk(chunk, index - chunk.size(), results);
+        return new ImportResult(results);
+    }
+
+    private void importChunk(List<Product> chunk, int firstIndex, List<ImportItemResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> titles = new HashSet<>();
+        for (Product product : chunk) {
+            if (product.getTitle() != null) {
+                titles.add(product.getTitle());
+            }
+        }
+        Set<String> taken = new HashSet<>(productRepository.findExistingTitles(titles));
+
+        ImportItemResult[] chunkResults = new ImportItemResult[chunk.size()];
+        List<Product> accepted = new ArrayList<>(chunk.size());
+        List<Integer> acceptedPositions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Product product = chunk.get(i);
+            if (product.getTitle() != null && !taken.add(product.getTitle())) {
+                chunkResults[i] = ImportItemResult.rejected(firstIndex + i,
+                        "En produkt med titeln: " + product.getTitle() + " finns redan");
+                continue;
+            }
+            // imports always create, an id in the input would turn the insert into a merge
+            product.setId(null);
+            product.setVersion(null);
+            accepted.add(product);
+            acceptedPositions.add(i);
+        }
+
+        try {
+            List<Product> saved = productChangeLog.write(() -> transactionTemplate.execute(status -> {
+                List<Product> created = productRepository.saveAll(accepted);
+                productRepository.flush();
+                eventPublisher.publishEvent(new ProductChangedEvent(created.stream().map(ProductChange::created).toList()));
+                return created;
+            }));
+            for (int i = 0; i < saved.size(); i++) {
+                int position = acceptedPositions.get(i);
+                chunkResults[position] = ImportItemResult.created(firstIndex + position, saved.get(i).getId());
+            }
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent write took one of the titles, fall back to one product at a time for this chunk
+            for (int i = 0; i < accepted.size(); i++) {
+                int position = acceptedPositions.get(i);
+                Product product = accepted.get(i);
+                product.setId(null);
+                product.setVersion(null);
+                try {
+                    chunkResults[position] = ImportItemResult.created(firstIndex + position,
+                            productService.addProduct(product).getId());
+                } catch (RuntimeException single) {
+                    chunkResults[position] = ImportItemResult.rejected(firstIndex + position, single.getMessage());
+                }
+            }
+        }
+        results.addAll(List.of(chunkResults));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.produktapi.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("produktapi.ingestion")
+public class ProductIngestionProperties {
+
+    /**
+     * Whether {@code POST /products} goes through the write-behind queue instead of a transaction of its own.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Products that may wait for a group commit. Requests beyond that are answered with 429.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Most products written in one transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * How long the outcome of a product is kept for its status URL after it was written.
+     */
+    private Duration statusRetention = Duration.ofMinutes(10);
+
+    /**
+     * Sent in Retry-After when a request is pushed back.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getStatusRetention() {
+        return statusRetention;
+    }
+
+    public void setStatusRetention(Duration statusRetention) {
+        this.statusRetention = statusRetention;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.exception.EntityNotFoundException;
+import com.example.produktapi.exception.ServiceUnavailableException;
+import com.example.produktapi.exception.TooManyRequestsException;
+import com.example.produktapi.model.ImportItemResult;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductIngestion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind for {@code POST /products}. Requests put their product on a bounded queue and return, one writer
+ * thread takes whatever has queued up, at most a batch at a time, and writes it through
+ * {@link ProductImportService}: one query for the titles and one transaction and commit for the whole batch. The
+ * more requests arrive while a batch is written, the larger the next one. A full queue pushes back with 429
+ * instead of growing.
+ */
+@Component
+public class ProductIngestionQueue implements MeterBinder, DisposableBean {
+
+    // the outcomes of at most this many products are kept for their status URLs
+    private static final long MAXIMUM_STATUSES = 100_000;
+
+    private final ProductImportService productImportService;
+    private final ProductIngestionProperties properties;
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong tickets = new AtomicLong();
+
+    // lock-free, the capacity is kept by counting instead
+    private final Queue<Ingestion> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Cache<String, ProductIngestion> statuses;
+    private final Thread writer;
+    private volatile boolean stopping;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder pushedBack = new LongAdder();
+
+    public ProductIngestionQueue(ProductImportService productImportService, ProductIngestionProperties properties) {
+        this.productImportService = productImportService;
+        this.properties = properties;
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getStatusRetention())
+                .maximumSize(MAXIMUM_STATUSES)
+                .build();
+        if (properties.isEnabled()) {
+            writer = new Thread(this::writeBatches, "product-ingestion");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Queues a product for the next group commit.
+     *
+     * @throws TooManyRequestsException     when the queue is full
+     * @throws ServiceUnavailableException when the application is shutting down
+     */
+    public Ingestion submit(Product product) {
+        if (writer == null) {
+            throw new IllegalStateException("produktapi.ingestion.enabled is false");
+        }
+        if (stopping) {
+            throw shuttingDown();
+        }
+        if (queued.incrementAndGet() > properties.getQueueCapacity()) {
+            queued.decrementAndGet();
+            pushedBack.increment();
+            throw new TooManyRequestsException("Kön för nya produkter är full, försök igen om en stund",
+                    properties.getRetryAfter());
+        }
+        Ingestion ingestion = new Ingestion(instance + "-" + tickets.incrementAndGet(), product);
+        statuses.put(ingestion.ticket, ProductIngestion.queued(ingestion.ticket));
+        queue.offer(ingestion);
+        // destroy() may have drained the queue between the check above and the offer, then no one would answer it
+        if (stopping && queue.remove(ingestion)) {
+            queued.decrementAndGet();
+            statuses.invalidate(ingestion.ticket);
+            throw shuttingDown();
+        }
+        LockSupport.unpark(writer);
+        return ingestion;
+    }
+
+    public ProductIngestion getStatus(String ticket) {
+        ProductIngestion status = statuses.getIfPresent(ticket);
+        if (status == null) {
+            throw new EntityNotFoundException("Ingen produkt med ärendet " + ticket + " väntar eller har skrivits nyligen");
+        }
+        return status;
+    }
+
+    private void writeBatches() {
+        List<Ingestion> batch = new ArrayList<>(properties.getBatchSize());
+        while (true) {
+            Ingestion next;
+            while (batch.size() < properties.getBatchSize() && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                if (stopping) {
+                    return;
+                }
+                // submit unparks, also when it does so before this parks
+                LockSupport.park(this);
+                continue;
+            }
+            queued.addAndGet(-batch.size());
+            try {
+                write(batch);
+            } catch (Throwable e) {
+                // an Error too, if the writer died every product after it would wait forever
+                fail(batch, e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<Ingestion> batch) {
+        List<ImportItemResult> results = productImportService.importProducts(
+                batch.stream().map(ingestion -> ingestion.product).iterator()).getItems();
+        batches.increment();
+        for (int i = 0; i < batch.size(); i++) {
+            Ingestion ingestion = batch.get(i);
+            ImportItemResult item = results.get(i);
+            if (item.getStatus() == ImportItemResult.Status.CREATED) {
+                written.increment();
+                statuses.put(ingestion.ticket, ProductIngestion.created(ingestion.ticket, item.getId()));
+                ingestion.result.complete(ingestion.product);
+            } else {
+                statuses.put(ingestion.ticket, ProductIngestion.rejected(ingestion.ticket, item.getMessage()));
+                ingestion.result.completeExceptionally(new BadRequestException(item.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Fails the products of a batch that have not been answered yet.
+     */
+    private void fail(List<Ingestion> batch, Throwable e) {
+        for (Ingestion ingestion : batch) {
+            if (!ingestion.result.isDone()) {
+                statuses.put(ingestion.ticket, ProductIngestion.rejected(ingestion.ticket, e.getMessage()));
+                ingestion.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private ServiceUnavailableException shuttingDown() {
+        return new ServiceUnavailableException("Tjänsten stängs, försök igen senare", properties.getRetryAfter());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("produktapi.ingestion.queued", queued, AtomicInteger::get)
+                .description("Products waiting for a group commit")
+                .register(registry);
+        FunctionCounter.builder("produktapi.ingestion.batches", batches, LongAdder::sum)
+                .description("Group commits")
+                .register(registry);
+        FunctionCounter.builder("produktapi.ingestion.written", written, LongAdder::sum)
+                .description("Products created by group commits")
+                .register(registry);
+        FunctionCounter.builder("produktapi.ingestion.pushed-back", pushedBack, LongAdder::sum)
+                .description("Products refused because the queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Writes what is queued before the database goes away, products that arrive after that are refused.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        stopping = true;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        Ingestion left;
+        while ((left = queue.poll()) != null) {
+            left.result.completeExceptionally(shuttingDown());
+        }
+    }
+
+    /**
+     * A queued product, with the product as it was created once its batch has been committed.
+     */
+    public static class Ingestion {
+
+        private final String ticket;
+        private final Product product;
+        private final CompletableFuture<Product> result = new CompletableFuture<>();
+
+        private Ingestion(String ticket, Product product) {
+            this.ticket = ticket;
+            this.product = product;
+        }
+
+        public String getTicket() {
+            return ticket;
+        }
+
+        public CompletableFuture<Product> getResult() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.ProductPage;
+import com.example.produktapi.model.ProductView;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight in front of the category reads of {@link ProductService}: requests asking for the same thing
+ * while it is being read share that read, cache or no cache, and wait for it without holding a thread. A request
+ * that arrives after a write has committed never joins a read that started before it.
+ */
+@Component
+public class ProductReadCoalescer implements MeterBinder {
+
+    private static final String CATEGORIES_KEY = "categories";
+
+    private final ProductService productService;
+    private final boolean enabled;
+    private final SingleFlight<String, List<String>> categories;
+    private final SingleFlight<CategoryPageKey, ProductPage<?>> categoryPages;
+
+    public ProductReadCoalescer(ProductService productService, SingleFlightProperties properties) {
+        this.productService = productService;
+        this.enabled = properties.isEnabled();
+        this.categories = new SingleFlight<>(properties.getTimeout());
+        this.categoryPages = new SingleFlight<>(properties.getTimeout());
+    }
+
+    public CompletableFuture<List<String>> getAllCategories() {
+        return execute(categories, CATEGORIES_KEY, productService::getAllCategories);
+    }
+
+    public CompletableFuture<ProductPage<?>> getProductPage(String category, ProductView view, String sort,
+                                                            String after, Integer limit) {
+        return execute(categoryPages, new CategoryPageKey(category, view, sort, after, limit),
+                () -> productService.getProductPage(category, view, sort, after, limit));
+    }
+
+    private <K, V> CompletableFuture<V> execute(SingleFlight<K, V> flight, K key, Supplier<V> load) {
+        // a read started for someone else may have gone to a replica that has yet to see this client's write
+        return enabled && !ReadYourWrites.isActive()
+                ? flight.execute(key, load)
+                : CompletableFuture.completedFuture(load.get());
+    }
+
+    @Order(ProductChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        categories.detachAll();
+        categoryPages.detachAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, categories, "categories");
+        bind(registry, categoryPages, "categoryPages");
+    }
+
+    private static void bind(MeterRegistry registry, SingleFlight<?, ?> flight, String name) {
+        FunctionCounter.builder("produktapi.single-flight.loads", flight, SingleFlight::getLoads)
+                .description("Reads that were run, once for every request that joined them")
+                .tag("name", name)
+                .register(registry);
+        FunctionCounter.builder("produktapi.single-flight.joined", flight, SingleFlight::getJoined)
+                .description("Requests that were answered by a read another request ran")
+                .tag("name", name)
+                .register(registry);
+        FunctionCounter.builder("produktapi.single-flight.timeouts", flight, SingleFlight::getTimeouts)
+                .description("Requests that gave up waiting for a read another request ran")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private record CategoryPageKey(String category, ProductView view, String sort, String after, Integer limit) {
+    }
+}
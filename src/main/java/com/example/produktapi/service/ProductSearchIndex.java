@@ -0,0 +1,1185 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product titles and descriptions, ranked with BM25. A title occurrence of a word counts
+ * {@value #TITLE_WEIGHT} times. Terms are kept sorted so a query word also matches every term it is the start
+ * of, a product must match all query words and for each word its best matching term counts.
+ * <p>
+ * The postings of a term are split into segments of products with the same frequency of the term and about
+ * the same length, which bounds the score any product in a segment can get. Queries walk the segments of
+ * their rarest word from the highest bound down, score each new product in full from the forward index, and
+ * stop as soon as no unseen product can make it into the top results. Popular words therefore cost about as
+ * much as rare ones.
+ * <p>
+ * Products are added, replaced and removed one at a time, a write only touches the segments of the terms in
+ * the old and the new text. Reads and writes are guarded by a read-write lock.
+ */
+public final class ProductSearchIndex {
+
+    static final int TITLE_WEIGHT = 3;
+    static final int MAX_QUERY_WORDS = 10;
+
+    private static final Locale SWEDISH = Locale.forLanguageTag("sv-SE");
+    private static final int MAX_TERM_LENGTH = 64;
+    /** the forward index keeps a term's number and its frequency in a product in one int */
+    private static final int FREQUENCY_BITS = 7;
+    private static final int MAX_FREQUENCY = (1 << FREQUENCY_BITS) - 1;
+    private static final int MAX_TERMS = 1 << (Integer.SIZE - FREQUENCY_BITS);
+    private static final int MAX_LENGTH = 46_340;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    /** a word completed from a prefix is worth less than the word itself */
+    private static final float PREFIX_BOOST = 0.5f;
+    private static final int[] BUCKET_STARTS = bucketStarts();
+    /** how many products a query scores in full between checks whether to filter by the other words */
+    private static final int FILTER_CHECK_INTERVAL = 16;
+    /** roughly how many products can be gathered into a filter for the cost of scoring one in full */
+    private static final int GATHER_COST_RATIO = 128;
+    /** about what share of the highest possible score the weakest of the results has when every word is common */
+    private static final float EXPECTED_SHARE = 0.85f;
+    /** how many filters of finished queries are kept for the next ones */
+    private static final int FREE_FILTERS = 16;
+
+    public static long dSegs, dQueue, dGather, dScore, dUpdate, dWalk, dRelease, dRun, dWalked, dScored, dGathered, dLeadPostings; public static int dLead;
+    private final int minPrefixLength;
+    private final int maxPrefixExpansions;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    /** cleared, a query reuses one rather than allocating and zeroing a bit per product */
+    private final BlockingQueue<long[]> freeMembers = new ArrayBlockingQueue<>(FREE_FILTERS);
+    private final BlockingQueue<byte[]> freeBounds = new ArrayBlockingQueue<>(FREE_FILTERS);
+    private final Map<Integer, Integer> documentsById = new HashMap<>();
+    /**
+     * Per document number: the product, and its length in words followed by its distinct terms with their
+     * frequencies, in one array so that scoring a product reads one place in memory.
+     */
+    private Product[] documents = new Product[16];
+    private int[][] documentTerms = new int[16][];
+    private int[] freeDocuments = new int[16];
+    private int freeCount;
+    private int documentCount;
+    private int size;
+    private long totalLength;
+    /** per term number, numbers of removed terms are reused */
+    private Postings[] postingsByNumber = new Postings[16];
+    private int[] freeTerms = new int[16];
+    private int freeTermCount;
+    private int termCount;
+
+    /**
+     * @param minPrefixLength     query words shorter than this only match whole terms
+     * @param maxPrefixExpansions how many terms a single query word may expand to
+     */
+    public ProductSearchIndex(int minPrefixLength, int maxPrefixExpansions) {
+        this.minPrefixLength = minPrefixLength;
+        this.maxPrefixExpansions = maxPrefixExpansions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                put(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void apply(List<ProductChange> changes) {
+        lock.writeLock().lock();
+        try {
+            for (ProductChange change : changes) {
+                if (change.getType() == ProductChange.Type.DELETED) {
+                    remove(change.getId());
+                } else if (change.getAfter() != null) {
+                    put(change.getAfter());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the {@code limit} best matching products, best first
+     */
+    public List<Product> search(String query, int limit) {
+        List<String> words = tokenize(query).stream().distinct().limit(MAX_QUERY_WORDS).toList();
+        lock.readLock().lock();
+        try {
+            if (words.isEmpty() || size == 0 || limit < 1) {
+                return List.of();
+            }
+            Query search = new Query(words.size(), (float) totalLength / size);
+            for (int word = 0; word < words.size(); word++) {
+                if (!search.expand(word, words.get(word))) {
+                    return List.of();
+                }
+            }
+            return search.run(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Product product) {
+        remove(product.getId());
+
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        int length = 0;
+        for (String term : tokenize(product.getTitle())) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+            length += TITLE_WEIGHT;
+        }
+        for (String term : tokenize(product.getDescription())) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        length = Math.min(length, MAX_LENGTH);
+
+        int document = freeCount > 0 ? freeDocuments[--freeCount] : documentCount++;
+        if (document == documents.length) {
+            documents = Arrays.copyOf(documents, document * 2);
+            documentTerms = Arrays.copyOf(documentTerms, document * 2);
+        }
+        int[] termsOfDocument = new int[1 + frequencies.size()];
+        termsOfDocument[0] = length;
+        int bucket = lengthBucket(length);
+        int i = 1;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            int frequency = Math.min(entry.getValue(), MAX_FREQUENCY);
+            Postings postings = terms.get(entry.getKey());
+            if (postings == null) {
+                postings = newPostings(entry.getKey());
+            }
+            postings.add(document, frequency, bucket);
+            termsOfDocument[i++] = postings.number << FREQUENCY_BITS | frequency;
+        }
+        documents[document] = copy(product);
+        documentTerms[document] = termsOfDocument;
+        documentsById.put(product.getId(), document);
+        size++;
+        totalLength += length;
+    }
+
+    private void remove(Integer id) {
+        Integer document = documentsById.remove(id);
+        if (document == null) {
+            return;
+        }
+        int[] termsOfDocument = documentTerms[document];
+        int length = termsOfDocument[0];
+        int bucket = lengthBucket(length);
+        for (int i = 1; i < termsOfDocument.length; i++) {
+            int term = termsOfDocument[i];
+            Postings postings = postingsByNumber[term >>> FREQUENCY_BITS];
+            postings.remove(document, term & MAX_FREQUENCY, bucket);
+            if (postings.size == 0) {
+                terms.remove(postings.term);
+                postingsByNumber[postings.number] = null;
+                if (freeTermCount == freeTerms.length) {
+                    freeTerms = Arrays.copyOf(freeTerms, freeTermCount * 2);
+                }
+                freeTerms[freeTermCount++] = postings.number;
+            }
+        }
+        documents[document] = null;
+        documentTerms[document] = null;
+        totalLength -= length;
+        size--;
+        // document numbers are reused so the arrays stay as large as the catalog, not as its history
+        if (freeCount == freeDocuments.length) {
+            freeDocuments = Arrays.copyOf(freeDocuments, freeCount * 2);
+        }
+        freeDocuments[freeCount++] = document;
+    }
+
+    private Postings newPostings(String term) {
+        int number = freeTermCount > 0 ? freeTerms[--freeTermCount] : termCount++;
+        if (number == MAX_TERMS) {
+            throw new IllegalStateException("Too many distinct words to index");
+        }
+        if (number == postingsByNumber.length) {
+            postingsByNumber = Arrays.copyOf(postingsByNumber, number * 2);
+        }
+        Postings postings = new Postings(term, number);
+        postingsByNumber[number] = postings;
+        terms.put(term, postings);
+        return postings;
+    }
+
+    /**
+     * Lengths in steps of a factor of about 1.04, every length on its own below 24, so all products in a bucket
+     * normalise to nearly the same score and the bound of a segment is close to the score of each product in it.
+     */
+    private static int lengthBucket(int length) {
+        int bucket = Arrays.binarySearch(BUCKET_STARTS, Math.max(1, length));
+        return bucket >= 0 ? bucket : -bucket - 2;
+    }
+
+    private static int minLength(int bucket) {
+        return BUCKET_STARTS[bucket];
+    }
+
+    private static int[] bucketStarts() {
+        int[] starts = new int[1024];
+        int count = 0;
+        for (int step = 0; count == 0 || starts[count - 1] <= MAX_LENGTH; step++) {
+            int start = (int) Math.ceil(Math.pow(2, step / 16.0));
+            if (count == 0 || start > starts[count - 1]) {
+                starts[count++] = start;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * The BM25 weight of a term appearing {@code frequency} times in a product of {@code length} words, it grows
+     * with the frequency and shrinks with the length.
+     */
+    private static float termWeight(int frequency, int length, float averageLength) {
+        return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (size - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits. Å, ä and ö are letters of their own in
+     * Swedish and are kept, other accents are dropped so that "café" and "cafe" are the same word, and the
+     * Danish and Norwegian æ and ø are read as ä and ö.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(SWEDISH);
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(fold(c));
+            } else if (!token.isEmpty()) {
+                if (token.length() <= MAX_TERM_LENGTH) {
+                    tokens.add(token.toString());
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80 || c == 'å' || c == 'ä' || c == 'ö') {
+            return c;
+        }
+        if (c == 'æ') {
+            return 'ä';
+        }
+        if (c == 'ø') {
+            return 'ö';
+        }
+        char base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+        return base < 0x80 ? base : c;
+    }
+
+    private static Product copy(Product source) {
+        Product product = new Product(source.getTitle(), source.getPrice(), source.getCategory(),
+                source.getDescription(), source.getImage());
+        product.setId(source.getId());
+        product.setVersion(source.getVersion());
+        return product;
+    }
+
+    /**
+     * One search, run under the read lock.
+     */
+    private final class Query {
+
+        private final int wordCount;
+        private final float averageLength;
+        private final TermWeights weights;
+        private final List<List<Postings>> matches = new ArrayList<>();
+        private final float[] maxScores;
+        private final long[] postingCounts;
+        private final float[] wordScores;
+        private final WordSegments[] wordSegments;
+        /** only there so that reading ahead is not optimized away */
+        private int touched;
+
+        Query(int wordCount, float averageLength) {
+            this.wordCount = wordCount;
+            this.averageLength = averageLength;
+            this.weights = new TermWeights(wordCount, postingsByNumber.length);
+            this.maxScores = new float[wordCount];
+            this.postingCounts = new long[wordCount];
+            this.wordScores = new float[wordCount];
+            this.wordSegments = new WordSegments[wordCount];
+        }
+
+        /**
+         * @return whether any term matches the word
+         */
+        boolean expand(int word, String text) {
+            List<Postings> matched = new ArrayList<>();
+            Postings exact = terms.get(text);
+            if (exact != null) {
+                add(word, exact, 1f, matched);
+            }
+            int room = maxPrefixExpansions - matched.size();
+            if (text.length() >= minPrefixLength && room > 0) {
+                // the most common completions, ties in alphabetical order, rather than the first ones in the alphabet
+                PriorityQueue<Postings> completions = new PriorityQueue<>(room + 1,
+                        Comparator.comparingInt((Postings postings) -> postings.size)
+                                .thenComparing(postings -> postings.term, Comparator.reverseOrder()));
+                for (Postings postings : terms.subMap(text, false, text + Character.MAX_VALUE, false).values()) {
+                    if (completions.size() < room || postings.size > completions.peek().size) {
+                        completions.offer(postings);
+                        if (completions.size() > room) {
+                            completions.poll();
+                        }
+                    }
+                }
+                for (Postings postings : completions) {
+                    add(word, postings, PREFIX_BOOST, matched);
+                }
+            }
+            matches.add(matched);
+            return !matched.isEmpty();
+        }
+
+        private void add(int word, Postings postings, float boost, List<Postings> matched) {
+            float weight = boost * idf(postings.size);
+            weights.put(postings.number, word, weight);
+            matched.add(postings);
+            postingCounts[word] += postings.size;
+            for (int segment = 0; segment < postings.segmentCount; segment++) {
+                maxScores[word] = Math.max(maxScores[word], bound(weight, postings.keys[segment]));
+            }
+        }
+
+        private float bound(float weight, int segmentKey) {
+            return weight * termWeight(segmentKey >>> 16, minLength(segmentKey & 0xFFFF), averageLength);
+        }
+
+        List<Product> run(int limit) {
+            // candidates come from one word, the other words can only add to what it scores. That is the word with the
+            // fewest products that can get near the expected score of the results, not simply the rarest: a common
+            // word whose best products score far above the rest of it is left after a few of its segments
+            long tRun = System.nanoTime();
+            int lead = 0;
+            if (wordCount > 1) {
+                float expected = EXPECTED_SHARE * (maxScores[0] + otherWords(0));
+                long fewest = Long.MAX_VALUE;
+                for (int word = 0; word < wordCount; word++) {
+                    long products = segments(word).productsAbove(expected - otherWords(word));
+                    if (products < fewest) {
+                        fewest = products;
+                        lead = word;
+                    }
+                }
+            }
+
+            dLead = lead; dLeadPostings = postingCounts[lead];
+            long tq = System.nanoTime(); SegmentQueue leading = new SegmentQueue(lead); dQueue += System.nanoTime() - tq;
+            float otherWords = otherWords(lead);
+            List<Filter> filters = new ArrayList<>(wordCount - 1);
+            for (int word = 0; word < wordCount; word++) {
+                if (word != lead) {
+                    filters.add(new Filter(word, otherWords - maxScores[word]));
+                }
+            }
+            TopHits hits = new TopHits(limit);
+            // a product is in the postings of a term once, only a word matching several terms can reach it twice
+            DocumentSet seen = matches.get(lead).size() > 1 ? new DocumentSet() : null;
+            int scored = 0;
+            int nextCheck = FILTER_CHECK_INTERVAL;
+            int[] batch = new int[FILTER_CHECK_INTERVAL];
+            try {
+                while (!leading.isEmpty()) {
+                    float bound = leading.highestBound();
+                    if (hits.isFull() && hits.weakestScore() > bound + otherWords) {
+                        break;
+                    }
+                    int segment = leading.poll();
+                    int[] documents = leading.segments.postings[segment].documents;
+                    int end = leading.segments.start(segment) + leading.segments.size(segment);
+                    for (int j = leading.segments.start(segment); j < end; ) {
+                        int count = 0; long tk = System.nanoTime(); int j0 = j;
+                        for (; j < end && count < batch.length; j++) {
+                            int document = documents[j];
+                            float highest = highest(filters, document, bound);
+                            if (highest > 0 && !(hits.isFull() && hits.weakestScore() > highest)
+                                    && (seen == null || seen.add(document))) {
+                                batch[count++] = document;
+                            }
+                        }
+                        dWalk += System.nanoTime() - tk; dWalked += j - j0; long ts = System.nanoTime();
+                        // the terms of the products are far apart in memory, reading them all before scoring any lets
+                        // the cache misses overlap instead of waiting for each in turn
+                        int length = 0;
+                        for (int i = 0; i < count; i++) {
+                            length += documentTerms[batch[i]][0];
+                        }
+                        touched += length;
+                        for (int i = 0; i < count; i++) {
+                            float needed = hits.isFull() ? hits.weakestScore() - bound : 0;
+                            float score = score(batch[i]);
+                            for (Filter filter : filters) {
+                                filter.scored(needed);
+                            }
+                            if (score > 0) {
+                                hits.offer(batch[i], score);
+                            }
+                        }
+                        scored += count; dScored += count; dScore += System.nanoTime() - ts;
+                        if (scored >= nextCheck) {
+                            nextCheck = scored + FILTER_CHECK_INTERVAL;
+                            // a check looks at every segment of the other words, which costs about as much as scoring a few
+                            long tu = System.nanoTime();
+                            for (Filter filter : filters) {
+                                filter.update(hits.isFull() ? hits.weakestScore() - bound : 0);
+                            }
+                            dUpdate += System.nanoTime() - tu;
+                        }
+                    }
+                }
+            } finally {
+                long tr = System.nanoTime();
+                for (Filter filter : filters) {
+                    filter.release();
+                }
+                dRelease += System.nanoTime() - tr;
+                dRun += System.nanoTime() - tRun;
+            }
+            return hits.products();
+        }
+
+        /**
+         * @return the highest score the words other than the leading one can add
+         */
+        private float otherWords(int lead) {
+            float otherWords = 0;
+            for (int word = 0; word < wordCount; word++) {
+                if (word != lead) {
+                    otherWords += maxScores[word];
+                }
+            }
+            return otherWords;
+        }
+
+        private WordSegments segments(int word) {
+            if (wordSegments[word] == null) {
+                long t0 = System.nanoTime();
+                wordSegments[word] = new WordSegments(word);
+                dSegs += System.nanoTime() - t0;
+            }
+            return wordSegments[word];
+        }
+
+        /**
+         * @return the highest score a product of a leading segment with the bound can have, 0 when it cannot make it
+         *         into the results
+         */
+        private float highest(List<Filter> filters, int document, float bound) {
+            float highest = bound;
+            for (int i = 0; i < filters.size(); i++) {
+                float word = filters.get(i).bound(document);
+                if (word == 0) {
+                    return 0;
+                }
+                highest += word;
+            }
+            return highest;
+        }
+
+        /**
+         * @return the product's score, or 0 when it does not match every word
+         */
+        private float score(int document) {
+            Arrays.fill(wordScores, 0);
+            int[] termsOfDocument = documentTerms[document];
+            int length = termsOfDocument[0];
+            for (int i = 1; i < termsOfDocument.length; i++) {
+                int term = termsOfDocument[i];
+                int slot = weights.slot(term >>> FREQUENCY_BITS);
+                if (slot < 0) {
+                    continue;
+                }
+                float weight = termWeight(term & MAX_FREQUENCY, length, averageLength);
+                for (int word = 0; word < wordCount; word++) {
+                    wordScores[word] = Math.max(wordScores[word], weights.get(slot, word) * weight);
+                }
+            }
+            float score = 0;
+            for (float wordScore : wordScores) {
+                if (wordScore == 0) {
+                    return 0;
+                }
+                score += wordScore;
+            }
+            return score;
+        }
+
+        /**
+         * The segments of the terms a word matched, each as its term and where its products are in the postings of
+         * the term, with the bound of each. Copied out of the postings, so that going over all of them reads a few
+         * arrays in order.
+         */
+        private final class WordSegments {
+
+            private final Postings[] postings;
+            private final int[] starts;
+            private final int[] sizes;
+            private final float[] bounds;
+
+            WordSegments(int word) {
+                int count = 0;
+                for (Postings matched : matches.get(word)) {
+                    count += matched.segmentCount;
+                }
+                postings = new Postings[count];
+                starts = new int[count];
+                sizes = new int[count];
+                bounds = new float[count];
+                int index = 0;
+                for (Postings matched : matches.get(word)) {
+                    float weight = weights.get(weights.slot(matched.number), word);
+                    for (int segment = 0; segment < matched.segmentCount; segment++) {
+                        postings[index] = matched;
+                        starts[index] = matched.starts[segment];
+                        sizes[index] = matched.sizes[segment];
+                        bounds[index++] = bound(weight, matched.keys[segment]);
+                    }
+                }
+            }
+
+            int start(int index) {
+                return starts[index];
+            }
+
+            int size(int index) {
+                return sizes[index];
+            }
+
+            /**
+             * @return how many products are in the segments with a bound of at least the minimum
+             */
+            long productsAbove(float minimum) {
+                long products = 0;
+                for (int i = 0; i < bounds.length; i++) {
+                    if (bounds[i] >= minimum) {
+                        products += size(i);
+                    }
+                }
+                return products;
+            }
+        }
+
+        /**
+         * The segments of the terms the leading word matched, highest bound first. A heap rather than a sorted
+         * array, most queries stop after the first few of thousands of segments.
+         */
+        private final class SegmentQueue {
+
+            private final WordSegments segments;
+            /** bound and index in one long, bounds are positive and their bits sort like their values */
+            private final long[] heap;
+            private int size;
+
+            SegmentQueue(int word) {
+                segments = segments(word);
+                heap = new long[segments.bounds.length];
+                for (int i = 0; i < heap.length; i++) {
+                    heap[i] = (long) Float.floatToIntBits(segments.bounds[i]) << 32 | i;
+                }
+                size = heap.length;
+                for (int i = size / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+            }
+
+            boolean isEmpty() {
+                return size == 0;
+            }
+
+            float highestBound() {
+                return segments.bounds[(int) heap[0]];
+            }
+
+            /**
+             * @return the index of the segment in {@link #segments}
+             */
+            int poll() {
+                int segment = (int) heap[0];
+                heap[0] = heap[--size];
+                siftDown(0);
+                return segment;
+            }
+
+            private void siftDown(int index) {
+                while (true) {
+                    int highest = index;
+                    for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                        if (heap[child] > heap[highest]) {
+                            highest = child;
+                        }
+                    }
+                    if (highest == index) {
+                        return;
+                    }
+                    long entry = heap[index];
+                    heap[index] = heap[highest];
+                    heap[highest] = entry;
+                    index = highest;
+                }
+            }
+        }
+
+        /**
+         * The products that can still make it into the results as far as one of the other query words is concerned:
+         * those in a segment of the word with a bound of at least what the product needs from the word. Scoring a
+         * product in full from the forward index costs far more than looking it up here, but the lookup needs the
+         * products gathered first, so that is only done once as many products have been scored in vain, products
+         * the filter would have left out, as gathering them costs. At first only whether a product is in is kept.
+         * When as many more have been scored in vain, each product is gathered again with the highest bound of its
+         * segments, which is then held against what the product needs as it comes, so there is no third time.
+         */
+        private final class Filter {
+
+            private final int word;
+            /** the highest score the words other than this one and the leading one can add */
+            private final float otherWords;
+            /** what one step of a product's bound is worth, 15 steps are at least the word's highest score */
+            private final float step;
+            private WordSegments segments;
+            /** one bit per document number, set when the product is in */
+            private long[] members;
+            /** four bits per document number, the product's bound in steps, 0 when it is left out */
+            private byte[] bounds;
+            /** products scored since the last gathering that the filter would have left out */
+            private int scoredInVain;
+            /** what a product needed from the word when the products to gather were last counted */
+            private float minimum;
+            /** fewer as the results get better, so only counted again once twice as many were scored in vain */
+            private long count = Long.MAX_VALUE;
+            private int countedInVain;
+
+            Filter(int word, float otherWords) {
+                this.word = word;
+                this.otherWords = otherWords;
+                this.step = maxScores[word] / 14;
+            }
+
+            /**
+             * @return the most the word can add to the product's score, 0 when the product is left out
+             */
+            float bound(int document) {
+                if (bounds != null) {
+                    return (bounds[document >>> 1] >>> (document << 2 & 4) & 0xF) * step;
+                }
+                return members == null || (members[document >>> 6] & 1L << document) != 0 ? maxScores[word] : 0;
+            }
+
+            /**
+             * Called for every product scored in full, with {@link #wordScores} still holding what it scored.
+             *
+             * @param needed what a product needs to score with this word and the others to make it into the results
+             */
+            void scored(float needed) {
+                if (wordScores[word] == 0 || wordScores[word] < needed - otherWords) {
+                    scoredInVain++;
+                }
+            }
+
+            /**
+             * @param needed what a product needs to score with this word and the others to make it into the results
+             */
+            void update(float needed) {
+                if (bounds != null) {
+                    return;
+                }
+                if (scoredInVain > 2 * countedInVain || scoredInVain * GATHER_COST_RATIO >= count) {
+                    if (segments == null) {
+                        segments = segments(word);
+                    }
+                    minimum = needed - otherWords;
+                    count = segments.productsAbove(minimum);
+                    countedInVain = scoredInVain;
+                }
+                if (scoredInVain * GATHER_COST_RATIO >= count) {
+                    long tg = System.nanoTime(); dGathered += count;
+                    if (members == null) {
+                        gatherMembers();
+                    } else {
+                        gatherBounds();
+                    }
+                    dGather += System.nanoTime() - tg;
+                    scoredInVain = 0;
+                    countedInVain = 0;
+                }
+            }
+
+            private void gatherMembers() {
+                int length = (documentCount + 63) >>> 6;
+                members = freeMembers.poll();
+                if (members == null || members.length < length) {
+                    members = new long[length];
+                }
+                for (int i = 0; i < segments.bounds.length; i++) {
+                    if (segments.bounds[i] >= minimum) {
+                        int[] documents = segments.postings[i].documents;
+                        int end = segments.start(i) + segments.size(i);
+                        for (int j = segments.start(i); j < end; j++) {
+                            int document = documents[j];
+                            members[document >>> 6] |= 1L << document;
+                        }
+                    }
+                }
+            }
+
+            private void gatherBounds() {
+                int length = (documentCount + 1) >>> 1;
+                bounds = freeBounds.poll();
+                if (bounds == null || bounds.length < length) {
+                    bounds = new byte[length];
+                }
+                for (int i = 0; i < segments.bounds.length; i++) {
+                    if (segments.bounds[i] >= minimum) {
+                        // rounded up, and at least one step so that the product is in
+                        int steps = Math.min(15, (int) (segments.bounds[i] / step) + 1);
+                        int[] documents = segments.postings[i].documents;
+                        int end = segments.start(i) + segments.size(i);
+                        for (int j = segments.start(i); j < end; j++) {
+                            int document = documents[j];
+                            int shift = document << 2 & 4;
+                            int pair = bounds[document >>> 1];
+                            if ((pair >>> shift & 0xF) < steps) {
+                                bounds[document >>> 1] = (byte) (pair & ~(0xF << shift) | steps << shift);
+                            }
+                        }
+                    }
+                }
+                release(members, freeMembers);
+                members = null;
+            }
+
+            void release() {
+                release(members, freeMembers);
+                members = null;
+                if (bounds != null) {
+                    Arrays.fill(bounds, (byte) 0);
+                    freeBounds.offer(bounds);
+                    bounds = null;
+                }
+            }
+
+            private void release(long[] members, BlockingQueue<long[]> free) {
+                if (members != null) {
+                    Arrays.fill(members, 0);
+                    free.offer(members);
+                }
+            }
+        }
+    }
+
+    /**
+     * The weight of every term a query matched for each query word, 0 where the term does not match the word, in
+     * an open addressing table by term id. Looked up for every term of every product a query scores.
+     */
+    private static final class TermWeights {
+
+        private final int wordCount;
+        /** a bit per term id that is in the table, most terms of a product are not and need no probing */
+        private final long[] matched;
+        /** term id + 1, 0 for a free slot */
+        private int[] keys = new int[16];
+        private float[] values;
+        private int count;
+
+        TermWeights(int wordCount, int termIds) {
+            this.wordCount = wordCount;
+            this.matched = new long[(termIds + 63) >>> 6];
+            this.values = new float[keys.length * wordCount];
+        }
+
+        /**
+         * @return the slot of the term, or -1 when the query did not match it
+         */
+        int slot(int term) {
+            if ((matched[term >>> 6] & 1L << term) == 0) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            int slot = (term * 0x9E3779B9 >>> 8) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == term + 1) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        float get(int slot, int word) {
+            return values[slot * wordCount + word];
+        }
+
+        void put(int term, int word, float weight) {
+            int slot = slot(term);
+            if (slot < 0) {
+                if (2 * (count + 1) > keys.length) {
+                    grow();
+                }
+                int mask = keys.length - 1;
+                slot = (term * 0x9E3779B9 >>> 8) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = term + 1;
+                matched[term >>> 6] |= 1L << term;
+                count++;
+            }
+            values[slot * wordCount + word] = weight;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new float[keys.length * wordCount];
+            int mask = keys.length - 1;
+            for (int old = 0; old < oldKeys.length; old++) {
+                if (oldKeys[old] != 0) {
+                    int slot = ((oldKeys[old] - 1) * 0x9E3779B9 >>> 8) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[old];
+                    System.arraycopy(oldValues, old * wordCount, values, slot * wordCount, wordCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * The best hits so far in a min-heap, the weakest on top.
+     */
+    private final class TopHits {
+
+        private final int[] heap;
+        private final float[] scores;
+        private int count;
+
+        TopHits(int limit) {
+            heap = new int[limit];
+            scores = new float[limit];
+        }
+
+        boolean isFull() {
+            return count == heap.length;
+        }
+
+        float weakestScore() {
+            return scores[0];
+        }
+
+        void offer(int document, float score) {
+            if (count < heap.length) {
+                heap[count] = document;
+                scores[count] = score;
+                siftUp(count++);
+            } else if (ranksBefore(document, score, heap[0], scores[0])) {
+                heap[0] = document;
+                scores[0] = score;
+                siftDown(count);
+            }
+        }
+
+        List<Product> products() {
+            Product[] best = new Product[count];
+            for (int i = count - 1; i >= 0; i--) {
+                best[i] = copy(documents[heap[0]]);
+                heap[0] = heap[i];
+                scores[0] = scores[i];
+                siftDown(i);
+            }
+            return Arrays.asList(best);
+        }
+
+        /**
+         * Higher scores first, equal scores by ascending product id.
+         */
+        private boolean ranksBefore(int document, float score, int other, float otherScore) {
+            if (score != otherScore) {
+                return score > otherScore;
+            }
+            return documents[document].getId() < documents[other].getId();
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!ranksBefore(heap[parent], scores[parent], heap[index], scores[index])) {
+                    break;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int size) {
+            int index = 0;
+            while (true) {
+                int weakest = index;
+                for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                    if (ranksBefore(heap[weakest], scores[weakest], heap[child], scores[child])) {
+                        weakest = child;
+                    }
+                }
+                if (weakest == index) {
+                    return;
+                }
+                swap(weakest, index);
+                index = weakest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int document = heap[a];
+            heap[a] = heap[b];
+            heap[b] = document;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+
+    /**
+     * The products containing one term, in segments by frequency of the term and length bucket, the products of
+     * a segment in no particular order. All segments of a term share one array of products and their frequencies,
+     * buckets and sizes are kept in arrays of their own, so a query reading the segments of a term reads a few
+     * blocks of memory rather than an object and an array per segment.
+     */
+    private static final class Postings {
+
+        private final String term;
+        private final int number;
+        /** per segment: its frequency and length bucket in one int, where its products start, and its room */
+        private int[] keys = new int[2];
+        private int[] starts = new int[2];
+        private int[] sizes = new int[2];
+        private int[] capacities = new int[2];
+        private int segmentCount;
+        private int[] documents = new int[4];
+        /** the end of the room of the segments in {@link #documents}, and how much of it is left by moved segments */
+        private int used;
+        private int unused;
+        private int size;
+
+        Postings(String term, int number) {
+            this.term = term;
+            this.number = number;
+        }
+
+        void add(int document, int frequency, int lengthBucket) {
+            int segment = segment(frequency, lengthBucket);
+            if (segment < 0) {
+                segment = newSegment(segmentKey(frequency, lengthBucket));
+            } else if (sizes[segment] == capacities[segment]) {
+                grow(segment);
+            }
+            documents[starts[segment] + sizes[segment]++] = document;
+            size++;
+        }
+
+        void remove(int document, int frequency, int lengthBucket) {
+            int segment = segment(frequency, lengthBucket);
+            if (segment < 0) {
+                return;
+            }
+            int start = starts[segment];
+            int end = start + sizes[segment];
+            for (int i = start; i < end; i++) {
+                if (documents[i] == document) {
+                    // order does not matter, the last entry takes the free place
+                    documents[i] = documents[--end];
+                    sizes[segment]--;
+                    size--;
+                    if (sizes[segment] == 0) {
+                        removeSegment(segment);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private int segment(int frequency, int lengthBucket) {
+            int key = segmentKey(frequency, lengthBucket);
+            for (int segment = 0; segment < segmentCount; segment++) {
+                if (keys[segment] == key) {
+                    return segment;
+                }
+            }
+            return -1;
+        }
+
+        private int newSegment(int key) {
+            if (segmentCount == keys.length) {
+                keys = Arrays.copyOf(keys, segmentCount * 2);
+                starts = Arrays.copyOf(starts, segmentCount * 2);
+                sizes = Arrays.copyOf(sizes, segmentCount * 2);
+                capacities = Arrays.copyOf(capacities, segmentCount * 2);
+            }
+            int start = reserve(2);
+            int segment = segmentCount++;
+            keys[segment] = key;
+            starts[segment] = start;
+            sizes[segment] = 0;
+            capacities[segment] = 2;
+            return segment;
+        }
+
+        private void removeSegment(int segment) {
+            unused += capacities[segment];
+            int last = --segmentCount;
+            keys[segment] = keys[last];
+            starts[segment] = starts[last];
+            sizes[segment] = sizes[last];
+            capacities[segment] = capacities[last];
+        }
+
+        /**
+         * Doubles the room of a full segment. The last segment grows where it is, any other moves to the end.
+         */
+        private void grow(int segment) {
+            int capacity = capacities[segment];
+            if (starts[segment] + capacity == used) {
+                if (used + capacity > documents.length) {
+                    documents = Arrays.copyOf(documents, Math.max(used + capacity, documents.length * 2));
+                }
+                used += capacity;
+            } else {
+                int start = reserve(capacity * 2);
+                System.arraycopy(documents, starts[segment], documents, start, sizes[segment]);
+                starts[segment] = start;
+                unused += capacity;
+            }
+            capacities[segment] = capacity * 2;
+        }
+
+        /**
+         * @return where the room starts, at the end of the room of the other segments
+         */
+        private int reserve(int room) {
+            if (used + room > documents.length) {
+                if (unused > used / 2) {
+                    compact();
+                }
+                if (used + room > documents.length) {
+                    documents = Arrays.copyOf(documents, Math.max(used + room, documents.length * 2));
+                }
+            }
+            int start = used;
+            used += room;
+            return start;
+        }
+
+        /**
+         * Closes the gaps moved segments left behind, the segments keep their room.
+         */
+        private void compact() {
+            int[] compacted = new int[documents.length];
+            int next = 0;
+            for (int segment = 0; segment < segmentCount; segment++) {
+                System.arraycopy(documents, starts[segment], compacted, next, sizes[segment]);
+                starts[segment] = next;
+                next += capacities[segment];
+            }
+            documents = compacted;
+            used = next;
+            unused = 0;
+        }
+    }
+
+    private static int segmentKey(int frequency, int lengthBucket) {
+        return frequency << 16 | lengthBucket;
+    }
+
+    /**
+     * Open addressing set of document numbers, growing as needed.
+     */
+    private static final class DocumentSet {
+
+        private static final int EMPTY = -1;
+
+        private int[] slots = new int[64];
+        private int count;
+
+        DocumentSet() {
+            Arrays.fill(slots, EMPTY);
+        }
+
+        boolean add(int document) {
+            if (2 * (count + 1) > slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int slot = (document * 0x9E3779B9 >>> 8) & mask;
+            while (slots[slot] != EMPTY) {
+                if (slots[slot] == document) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = document;
+            count++;
+            return true;
+        }
+
+        private void grow() {
+            int[] old = slots;
+            slots = new int[old.length * 2];
+            Arrays.fill(slots, EMPTY);
+            count = 0;
+            for (int document : old) {
+                if (document != EMPTY) {
+                    add(document);
+                }
+            }
+        }
+    }
+}
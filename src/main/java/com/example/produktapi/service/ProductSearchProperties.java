@@ -0,0 +1,33 @@
+package com.example.produktapi.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("produktapi.search")
+public class ProductSearchProperties {
+
+    /**
+     * Query words shorter than this only match whole words, longer ones also match words they are the start of.
+     */
+    private int minPrefixLength = 2;
+
+    /**
+     * Maximum number of indexed words a single query word may match as a prefix.
+     */
+    private int maxPrefixExpansions = 50;
+
+    public int getMinPrefixLength() {
+        return minPrefixLength;
+    }
+
+    public void setMinPrefixLength(int minPrefixLength) {
+        this.minPrefixLength = minPrefixLength;
+    }
+
+    public int getMaxPrefixExpansions() {
+        return maxPrefixExpansions;
+    }
+
+    public void setMaxPrefixExpansions(int maxPrefixExpansions) {
+        this.maxPrefixExpansions = maxPrefixExpansions;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Full-text search over product titles and descriptions. The {@link ProductSearchIndex} is built once the
+ * application has started and then kept up to date from the change events of every committed write.
+ */
+@Service
+public class ProductSearchService {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex index;
+    // not synchronized: the lock is held across the JDBC read, which must not pin a virtual thread
+    private final Lock lock = new ReentrantLock();
+    private boolean loaded;
+
+    public ProductSearchService(ProductRepository productRepository, ProductSearchProperties properties) {
+        this.productRepository = productRepository;
+        this.index = new ProductSearchIndex(properties.getMinPrefixLength(), properties.getMaxPrefixExpansions());
+    }
+
+    public List<Product> search(String query, Integer limit) {
+
+        int maxResults = limit == null ? DEFAULT_LIMIT : limit;
+        if (maxResults < 1 || maxResults > MAX_LIMIT) {
+            throw new BadRequestException("limit måste vara mellan 1 och " + MAX_LIMIT);
+        }
+        if (query == null || ProductSearchIndex.tokenize(query).isEmpty()) {
+            throw new BadRequestException("Sökningen måste innehålla minst ett ord");
+        }
+        return index.search(query, maxResults);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.lock();
+        try {
+            index.addAll(productRepository.findAll());
+            loaded = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Order(ProductChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        lock.lock();
+        try {
+            // before the first load there is nothing to update, the load itself will see the change
+            if (loaded) {
+                index.apply(event.getChanges());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,68 +1,418 @@
 package com.example.produktapi.service;
 
 import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.exception.ConflictException;
 import com.example.produktapi.exception.EntityNotFoundException;
+import com.example.produktapi.model.CategoryStats;
+import com.example.produktapi.model.FilteredProductPage;
 import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductField;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductLookup;
+import com.example.produktapi.model.ProductPage;
+import com.example.produktapi.model.ProductSort;
+import com.example.produktapi.model.ProductSummary;
+import com.example.produktapi.model.ProductView;
 import com.example.produktapi.repository.ProductRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_LOOKUP_IDS = 10_000;
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private static final String UNIQUE_TITLE_CONSTRAINT = "uk_product_title";
+
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final CatalogSnapshots catalogSnapshots;
+    private final CategoryStatistics categoryStatistics;
+    private final ProductChangeLog productChangeLog;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ProductCache productCache,
+                          CatalogSnapshots catalogSnapshots, CategoryStatistics categoryStatistics,
+                          ProductChangeLog productChangeLog, ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.catalogSnapshots = catalogSnapshots;
+        this.categoryStatistics = categoryStatistics;
+        this.productChangeLog = productChangeLog;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Product> getAllProducts() {
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        if (snapshot != null) {
+            return snapshot.findAll();
+        }
         return productRepository.findAll();
     }
 
     public List<String> getAllCategories() {
-        return productRepository.findAllCategories();
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        if (snapshot != null) {
+            return snapshot.findAllCategories();
+        }
+        return productCache.getCategories(productRepository::findAllCategories);
     }
 
     public List<Product> getProductsByCategory(String category) {
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        if (snapshot != null) {
+            return snapshot.findByCategory(category);
+        }
         return productRepository.findByCategory(category);
     }
 
+    public ProductPage<Product> getProductPage(String category, String sort, String after, Integer limit) {
+        return getProductPage(ProductFilter.category(category), sort, after, limit);
+    }
+
+    private ProductPage<Product> getProductPage(ProductFilter filter, String sort, String after, Integer limit) {
+
+        // only plain category pages are cached, and the snapshot is already in memory, caching its pages
+        // would only duplicate it
+        String category = filter.singleCategory();
+        if (category == null || catalogSnapshots.current() != null) {
+            return loadProductPage(filter, sort, after, limit);
+        }
+        return productCache.getCategoryPage(category, sort, after, limit,
+                () -> loadProductPage(filter, sort, after, limit));
+    }
+
+    /**
+     * A page of the products matching the filter, with the number of products per category within the price
+     * range so that clients can show how many hits picking another category would give.
+     */
+    public FilteredProductPage<Product> getFilteredProductPage(ProductFilter filter, String sort, String after,
+                                                               Integer limit) {
+        checkPriceRange(filter);
+        return withCategoryCounts(getProductPage(filter, sort, after, limit), filter);
+    }
+
+    /**
+     * Same as {@link #getFilteredProductPage(ProductFilter, String, String, Integer)} with the products in the
+     * given view.
+     */
+    public FilteredProductPage<?> getFilteredProductPage(ProductFilter filter, ProductView view, String sort,
+                                                         String after, Integer limit) {
+        checkPriceRange(filter);
+        return withCategoryCounts(getProductPage(filter, view, sort, after, limit), filter);
+    }
+
+    private static void checkPriceRange(ProductFilter filter) {
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new BadRequestException("minPrice får inte vara större än maxPrice");
+        }
+    }
+
+    private <T> FilteredProductPage<T> withCategoryCounts(ProductPage<T> page, ProductFilter filter) {
+        return new FilteredProductPage<>(page,
+                categoryStatistics.countByCategory(filter.getMinPrice(), filter.getMaxPrice()));
+    }
+
+    /**
+     * A page of products in the given view. Only the columns the view needs are read and nothing else is
+     * hydrated or serialized. These pages are not cached, without the description they are cheap to read again.
+     *
+     * @param view how much of each product to return, {@code null} for whole products
+     */
+    public ProductPage<?> getProductPage(String category, ProductView view, String sort, String after,
+                                         Integer limit) {
+        return getProductPage(ProductFilter.category(category), view, sort, after, limit);
+    }
+
+    private ProductPage<?> getProductPage(ProductFilter filter, ProductView view, String sort, String after,
+                                          Integer limit) {
+        if (view == null) {
+            return getProductPage(filter, sort, after, limit);
+        }
+        if (catalogSnapshots.current() != null) {
+            // the snapshot already holds whole products, the view only saves serializing the rest
+            return project(loadProductPage(filter, sort, after, limit), view);
+        }
+
+        int pageSize = pageSize(limit);
+        ProductSort productSort = productSort(sort);
+        ProductCursor cursor = cursor(after, productSort);
+        if (view.isSummary()) {
+            List<ProductSummary> summaries = productRepository.findSummaryPage(filter, productSort, cursor, pageSize + 1);
+            return toPage(summaries, pageSize,
+                    summary -> new ProductCursor(productSort, summary.getId(), productSort.valueOf(summary)));
+        }
+        List<Map<String, Object>> rows = productRepository.findFieldsPage(filter, productSort, cursor, pageSize + 1,
+                view.getFields());
+        ProductPage<Map<String, Object>> page = toPage(rows, pageSize, row -> new ProductCursor(productSort,
+                (Integer) row.get(ProductField.ID.getProperty()), row.get(productSort.getProperty())));
+        // the id and the sort property are always read for the cursor, drop them unless they were asked for
+        Set<String> requested = view.getFields().stream().map(ProductField::getProperty).collect(Collectors.toSet());
+        for (Map<String, Object> row : page.getItems()) {
+            row.keySet().retainAll(requested);
+        }
+        return page;
+    }
+
+    private static ProductPage<?> project(ProductPage<Product> page, ProductView view) {
+        if (view.isSummary()) {
+            return new ProductPage<>(page.getItems().stream().map(ProductSummary::of).toList(), page.getNextCursor());
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(page.getItems().size());
+        for (Product product : page.getItems()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (ProductField field : view.getFields()) {
+                row.put(field.getProperty(), field.valueOf(product));
+            }
+            rows.add(row);
+        }
+        return new ProductPage<>(rows, page.getNextCursor());
+    }
+
+    public List<CategoryStats> getCategoryStats() {
+        return categoryStatistics.getStats();
+    }
+
+    private ProductPage<Product> loadProductPage(ProductFilter filter, String sort, String after, Integer limit) {
+
+        int pageSize = pageSize(limit);
+        ProductSort productSort = productSort(sort);
+        ProductCursor cursor = cursor(after, productSort);
+
+        // one extra row tells whether there is a next page without a count query
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        List<Product> products = snapshot != null
+                ? snapshot.findPage(filter, productSort, cursor, pageSize + 1)
+                : productRepository.findPage(filter, productSort, cursor, pageSize + 1);
+        return toPage(products, pageSize, product -> ProductCursor.after(product, productSort));
+    }
+
+    static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit måste vara mellan 1 och " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    private static ProductSort productSort(String sort) {
+        return sort == null ? ProductSort.ID : ProductSort.fromParameter(sort);
+    }
+
+    private static ProductCursor cursor(String after, ProductSort sort) {
+        return after == null ? null : ProductCursor.decode(after, sort);
+    }
+
+    /**
+     * @param rows up to one row more than the page holds, the extra row only tells that there is a next page
+     */
+    private static <T> ProductPage<T> toPage(List<T> rows, int pageSize, Function<T, ProductCursor> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new ProductPage<>(rows, null);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        return new ProductPage<>(page, cursorOf.apply(page.get(pageSize - 1)).encode());
+    }
+
     public Product getProductById(Integer id) {
 
-        Optional<Product> product = productRepository.findById(id);
-        if (product.isEmpty()) {
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        Product product = snapshot != null
+                ? snapshot.findById(id)
+                : productCache.getProduct(id, key -> productRepository.findById(key).orElse(null));
+        if (product == null) {
             throw new EntityNotFoundException(id);
         }
-        return product.get();
+        return product;
+    }
+
+    /**
+     * Current version of a product, read without loading the product itself when possible.
+     *
+     * @return the version, or {@code null} when the product does not exist
+     */
+    public Integer getProductVersion(Integer id) {
+
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        if (snapshot != null) {
+            return snapshot.findVersionById(id);
+        }
+        Product cached = productCache.peekProduct(id);
+        if (cached != null) {
+            return cached.getVersion();
+        }
+        return productRepository.findVersionById(id).orElse(null);
+    }
+
+    /**
+     * Looks up many products at once, with one IN query per chunk of ids that are not cached.
+     *
+     * @return the products in the order of {@code ids}, without duplicates, and the ids that do not exist
+     */
+    public ProductLookup getProductsByIds(List<Integer> ids) {
+
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new BadRequestException("Högst " + MAX_LOOKUP_IDS + " id:n kan hämtas åt gången");
+        }
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+
+        Map<Integer, Product> found;
+        CatalogSnapshot snapshot = catalogSnapshots.current();
+        if (snapshot != null) {
+            found = new HashMap<>();
+            for (Integer id : distinctIds) {
+                Product product = snapshot.findById(id);
+                if (product != null) {
+                    found.put(id, product);
+                }
+            }
+        } else {
+            found = productCache.getProducts(distinctIds, this::loadProducts);
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new ProductLookup(products, missingIds);
+    }
+
+    private Map<Integer, Product> loadProducts(Set<? extends Integer> ids) {
+        Map<Integer, Product> products = new HashMap<>(ids.size());
+        List<Integer> chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+        Iterator<? extends Integer> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == LOOKUP_CHUNK_SIZE || !iterator.hasNext()) {
+                for (Product product : productRepository.findAllById(chunk)) {
+                    products.put(product.getId(), product);
+                }
+                chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+            }
+        }
+        return products;
     }
 
     public Product addProduct(Product product) {
 
-        Optional<Product> p = productRepository.findByTitle(product.getTitle());
-        if (p.isPresent()) {
-            throw new BadRequestException("En produkt med titeln: "+ product.getTitle() + " finns redan");
+        try {
+            // the unique constraint on title rejects duplicates, no need to look the title up first
+            return productChangeLog.write(() -> {
+                Product savedProduct = productRepository.save(product);
+                eventPublisher.publishEvent(new ProductChangedEvent(ProductChange.created(savedProduct)));
+                return savedProduct;
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateTitle(e)) {
+                throw new BadRequestException("En produkt med titeln: "+ product.getTitle() + " finns redan");
+            }
+            throw e;
         }
-        return productRepository.save(product);
     }
 
     public Product updateProduct(Product updatedProduct, Integer id) {
+        return updateProduct(updatedProduct, id, null);
+    }
 
-        Optional<Product> product = productRepository.findById(id);
-        if (product.isEmpty()) {
-             throw new EntityNotFoundException(id);
+    /**
+     * Overwrites the product with the given id in one statement. The id in the body is ignored.
+     *
+     * @param expectedVersion version the client last saw, from If-Match; when {@code null} the version in the
+     *                        body is used, and when that is missing too the update is unconditional
+     * @throws ConflictException when the product exists but has another version
+     */
+    public Product updateProduct(Product updatedProduct, Integer id, Integer expectedVersion) {
+
+        Integer version = expectedVersion != null ? expectedVersion : updatedProduct.getVersion();
+        Optional<Product> saved;
+        try {
+            saved = productChangeLog.write(() -> {
+                Optional<Product> previous = version == null
+                        ? productRepository.updateReturningById(id, updatedProduct)
+                        : productRepository.updateReturningByIdAndVersion(id, version, updatedProduct);
+                return previous.map(before -> {
+                    // the statement returns the row as it was, the new row is the request with the bumped version
+                    Product after = new Product(updatedProduct.getTitle(), updatedProduct.getPrice(),
+                            updatedProduct.getCategory(), updatedProduct.getDescription(), updatedProduct.getImage());
+                    after.setId(id);
+                    after.setVersion(before.getVersion() + 1);
+                    eventPublisher.publishEvent(new ProductChangedEvent(ProductChange.updated(before, after)));
+                    return after;
+                });
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateTitle(e)) {
+                throw new BadRequestException("En produkt med titeln: "+ updatedProduct.getTitle() + " finns redan");
+            }
+            throw e;
         }
-        return productRepository.save(updatedProduct);
+        return saved.orElseThrow(() -> notFoundOrConflict(id, version));
     }
 
     public void deleteProduct(Integer id) {
+        deleteProduct(id, null);
+    }
+
+    /**
+     * Deletes the product in one statement.
+     *
+     * @param expectedVersion version the client last saw, or {@code null} to delete whatever is stored
+     * @throws ConflictException when the product exists but has another version
+     */
+    public void deleteProduct(Integer id, Integer expectedVersion) {
 
-        Optional product = productRepository.findById(id);
+        // the delete leaves a tombstone for delta sync in the same statement
+        Optional<Product> product = productChangeLog.write(() -> {
+            Optional<Product> deleted = expectedVersion == null
+                    ? productRepository.deleteReturningById(id)
+                    : productRepository.deleteReturningByIdAndVersion(id, expectedVersion);
+            deleted.ifPresent(before -> eventPublisher.publishEvent(
+                    new ProductChangedEvent(ProductChange.deleted(id, before))));
+            return deleted;
+        });
         if (product.isEmpty()) {
-            throw new EntityNotFoundException(id);
+            throw notFoundOrConflict(id, expectedVersion);
         }
-        productRepository.deleteById(id);
+    }
+
+    /**
+     * Explains why a write matched no row. Only runs on that failure path, so successful writes stay one statement.
+     */
+    private RuntimeException notFoundOrConflict(Integer id, Integer version) {
+        if (version != null && productRepository.existsById(id)) {
+            return new ConflictException(id);
+        }
+        return new EntityNotFoundException(id);
+    }
+
+    static boolean isDuplicateTitle(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && violation.getConstraintName() != null
+                && violation.getConstraintName().toLowerCase().contains(UNIQUE_TITLE_CONSTRAINT);
     }
 }
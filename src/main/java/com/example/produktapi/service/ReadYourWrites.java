@@ -0,0 +1,29 @@
+package com.example.produktapi.service;
+
+/**
+ * Marks the current thread as working for a client that has just written and must read its own write. With read
+ * replicas its reads go to the primary, and past the caches and shared reads, which may hold what a replica
+ * returned before the write reached it.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+
+    /**
+     * Must be followed by {@link #end()} on the same thread.
+     */
+    public static void begin() {
+        ACTIVE.set(Boolean.TRUE);
+    }
+
+    public static void end() {
+        ACTIVE.remove();
+    }
+}
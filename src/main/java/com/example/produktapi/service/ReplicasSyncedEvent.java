@@ -0,0 +1,23 @@
+package com.example.produktapi.service;
+
+import java.util.Collection;
+
+/**
+ * Published when changes have been copied to every read replica. A read that went to a replica before a change
+ * reached it may have left the old product in a cache after the change itself invalidated it.
+ */
+public class ReplicasSyncedEvent {
+
+    private final Collection<Integer> ids;
+
+    public ReplicasSyncedEvent(Collection<Integer> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Products written, created or deleted by the changes.
+     */
+    public Collection<Integer> getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.produktapi.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers with the same key share one load: the first caller runs it on its own thread, and the
+ * callers that arrive while it runs are handed its result, or its exception, instead of running their own. They
+ * wait on a future, not on a thread. A caller that has waited longer than the timeout gets a
+ * {@link TimeoutException}, and later callers start a new load rather than join the one that is taking too long.
+ */
+public class SingleFlight<K, V> {
+
+    private final Duration timeout;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the result of {@code load}, already complete for the caller that ran it
+     */
+    public CompletableFuture<V> execute(K key, Supplier<V> load) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            joined.increment();
+            // a copy per caller, so that one caller's timeout does not fail the others
+            return running.copy().orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((value, failure) -> {
+                        if (failure instanceof TimeoutException) {
+                            timeouts.increment();
+                            inFlight.remove(key, running);
+                        }
+                    });
+        }
+        loads.increment();
+        try {
+            flight.complete(load.get());
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+        return flight;
+    }
+
+    /**
+     * Lets the loads that are running finish for the callers that joined them, later callers start new ones.
+     */
+    public void detachAll() {
+        inFlight.clear();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getJoined() {
+        return joined.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.produktapi.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("produktapi.single-flight")
+public class SingleFlightProperties {
+
+    /**
+     * Whether concurrent identical category reads share one load.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How long a request waits for a load another request started before it is answered with 503.
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -1,20 +1,23 @@
-INSERT INTO Product(title,price,description,category,image) VALUES ('Fjallraven - Foldsack No. 1 Backpack, Fits 15 Laptops',109.95,'Fin väska me plats för dator','men''s clothing','https://fakestoreapi.com/img/81fPKd-2AYL._AC_SL1500_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Mens Casual Premium Slim Fit T-Shirts',22.3,'Vilken härlig t-shirt, slim fit o casual i ett!','men''s clothing','https://fakestoreapi.com/img/71-3HjGNDUL._AC_SY879._SX._UX._SY._UY_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Mens Cotton Jacket',55.99,'Bomullsjacka, vad finns det mer att säga?!','men''s clothing','https://fakestoreapi.com/img/71li-ujtlUL._AC_UX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Mens Casual Slim Fit',15.99,'Mer casual än såhär blir det inte!','men''s clothing','https://fakestoreapi.com/img/71YXzeOuslL._AC_UY879_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('John Hardy Women''s Legends Naga Gold & Silver Dragon Station Chain Bracelet',695,'Silver drakens återkomst. Ett måste om man vill ha den!','jewelery','https://fakestoreapi.com/img/71pWzhdJNwL._AC_UL640_QL65_ML3_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('SolGold Petite Micropave',168,'Denna blir man glad av.','jewelery','https://fakestoreapi.com/img/61sbMiUnoGL._AC_UL640_QL65_ML3_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('White Gold Plated Princess',9.99,'Prinsessans bästa vän. Köp för att få den i din ägo','jewelery','https://fakestoreapi.com/img/71YAIFU48IL._AC_UL640_QL65_ML3_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Pierced Owl Rose Gold Plated Stainless Steel Double',10.99,'Något med en uggla, och i guld och lite dubbel stål','jewelery','https://fakestoreapi.com/img/51UDEzMJVpL._AC_UL640_QL65_ML3_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('WD 2TB Elements Portable External Hard Drive - USB 3.0',64,'USB 3. Bara att lagra på.','electronics','https://fakestoreapi.com/img/61IBBVJvSDL._AC_SY879_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('SanDisk SSD PLUS 1TB Internal SSD - SATA III 6 Gb/s',109,'Den här kan vara bra att ha också.','electronics','https://fakestoreapi.com/img/61U7T1koQqL._AC_SX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Silicon Power 256GB SSD 3D NAND A55 SLC Cache Performance Boost SATA III 2.5',109,'Silicon Power säger väl sig självt. Måste vara görbra tror jag.','electronics','https://fakestoreapi.com/img/71kWymZ+c+L._AC_SX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('WD 4TB Gaming Drive Works with Playstation 4 Portable External Hard Drive',114,'Är du en gamer? Ja men dåså, köp denna','electronics','https://fakestoreapi.com/img/61mtL65D4cL._AC_SX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Acer SB220Q bi 21.5 inches Full HD (1920 x 1080) IPS Ultra-Thin',599,'Full HD, fan va coolt. Den ska vi ha!','electronics','https://fakestoreapi.com/img/81QpkIctqPL._AC_SX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Samsung 49-Inch CHG90 144Hz Curved Gaming Monitor (LC49HG90DMNXZA) – Super Ultraw Screen QLED',999.99,'En lite böjd skär Men den funkar ändå!','electronics','https://fakestoreapi.com/img/81Zt42ioCgL._AC_SX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('BIYLACLESEN Women''s 3-in-1 Snowboard Jacket Winter Coats',56.99,'Är du cool och åker snowboard istället för skr? Då kan denna vara bra. att ha .','women''s clothing','https://fakestoreapi.com/img/51Y5NI-I5jL._AC_UX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Lock and Love Women''s Removable Hooded Faux Leather Moto Biker Jacket',29.95,'100% av nåt material. Extra bra','women''s clothing','https://fakestoreapi.com/img/81XH0e8fefL._AC_UY879_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Rain Jacket Women Windbreaker Striped Climbing Raincoats',39.99,'Lättviktsjacka och som andas .','women''s clothing','https://fakestoreapi.com/img/71HblAHs5xL._AC_UY879_-2.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('MBJ Women''s SolShort Sleeve Boat Neck V',9.85,'Snygg och bara att sätta på sig om man har köpt rätt storlek','women''s clothing','https://fakestoreapi.com/img/71z3kpMAYsL._AC_UY879_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('Opna Women''s Short Sleeve Moisture',7.95,'Kort i ärmarna så om du vill ha långärmat ska du inte köpa denna.','women''s clothing','https://fakestoreapi.com/img/51eg55uWmdL._AC_UX679_.jpg');
-INSERT INTO Product(title,price,description,category,image) VALUES ('DANVOUY Womens T Shirt Casual Cotton Short',12.99,'Mest bomull men lite spandex också. Väldigt casual.','women''s clothing','https://fakestoreapi.com/img/61pHAEJ4NML._AC_UX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (1,'Fjallraven - Foldsack No. 1 Backpack, Fits 15 Laptops',109.95,'Fin väska me plats för dator','men''s clothing','https://fakestoreapi.com/img/81fPKd-2AYL._AC_SL1500_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (2,'Mens Casual Premium Slim Fit T-Shirts',22.3,'Vilken härlig t-shirt, slim fit o casual i ett!','men''s clothing','https://fakestoreapi.com/img/71-3HjGNDUL._AC_SY879._SX._UX._SY._UY_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (3,'Mens Cotton Jacket',55.99,'Bomullsjacka, vad finns det mer att säga?!','men''s clothing','https://fakestoreapi.com/img/71li-ujtlUL._AC_UX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (4,'Mens Casual Slim Fit',15.99,'Mer casual än såhär blir det inte!','men''s clothing','https://fakestoreapi.com/img/71YXzeOuslL._AC_UY879_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (5,'John Hardy Women''s Legends Naga Gold & Silver Dragon Station Chain Bracelet',695,'Silver drakens återkomst. Ett måste om man vill ha den!','jewelery','https://fakestoreapi.com/img/71pWzhdJNwL._AC_UL640_QL65_ML3_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (6,'SolGold Petite Micropave',168,'Denna blir man glad av.','jewelery','https://fakestoreapi.com/img/61sbMiUnoGL._AC_UL640_QL65_ML3_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (7,'White Gold Plated Princess',9.99,'Prinsessans bästa vän. Köp för att få den i din ägo','jewelery','https://fakestoreapi.com/img/71YAIFU48IL._AC_UL640_QL65_ML3_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (8,'Pierced Owl Rose Gold Plated Stainless Steel Double',10.99,'Något med en uggla, och i guld och lite dubbel stål','jewelery','https://fakestoreapi.com/img/51UDEzMJVpL._AC_UL640_QL65_ML3_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (9,'WD 2TB Elements Portable External Hard Drive - USB 3.0',64,'USB 3. Bara att lagra på.','electronics','https://fakestoreapi.com/img/61IBBVJvSDL._AC_SY879_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (10,'SanDisk SSD PLUS 1TB Internal SSD - SATA III 6 Gb/s',109,'Den här kan vara bra att ha också.','electronics','https://fakestoreapi.com/img/61U7T1koQqL._AC_SX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (11,'Silicon Power 256GB SSD 3D NAND A55 SLC Cache Performance Boost SATA III 2.5',109,'Silicon Power säger väl sig självt. Måste vara görbra tror jag.','electronics','https://fakestoreapi.com/img/71kWymZ+c+L._AC_SX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (12,'WD 4TB Gaming Drive Works with Playstation 4 Portable External Hard Drive',114,'Är du en gamer? Ja men dåså, köp denna','electronics','https://fakestoreapi.com/img/61mtL65D4cL._AC_SX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (13,'Acer SB220Q bi 21.5 inches Full HD (1920 x 1080) IPS Ultra-Thin',599,'Full HD, fan va coolt. Den ska vi ha!','electronics','https://fakestoreapi.com/img/81QpkIctqPL._AC_SX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (14,'Samsung 49-Inch CHG90 144Hz Curved Gaming Monitor (LC49HG90DMNXZA) – Super Ultraw Screen QLED',999.99,'En lite böjd skär Men den funkar ändå!','electronics','https://fakestoreapi.com/img/81Zt42ioCgL._AC_SX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (15,'BIYLACLESEN Women''s 3-in-1 Snowboard Jacket Winter Coats',56.99,'Är du cool och åker snowboard istället för skr? Då kan denna vara bra. att ha .','women''s clothing','https://fakestoreapi.com/img/51Y5NI-I5jL._AC_UX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (16,'Lock and Love Women''s Removable Hooded Faux Leather Moto Biker Jacket',29.95,'100% av nåt material. Extra bra','women''s clothing','https://fakestoreapi.com/img/81XH0e8fefL._AC_UY879_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (17,'Rain Jacket Women Windbreaker Striped Climbing Raincoats',39.99,'Lättviktsjacka och som andas .','women''s clothing','https://fakestoreapi.com/img/71HblAHs5xL._AC_UY879_-2.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (18,'MBJ Women''s SolShort Sleeve Boat Neck V',9.85,'Snygg och bara att sätta på sig om man har köpt rätt storlek','women''s clothing','https://fakestoreapi.com/img/71z3kpMAYsL._AC_UY879_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (19,'Opna Women''s Short Sleeve Moisture',7.95,'Kort i ärmarna så om du vill ha långärmat ska du inte köpa denna.','women''s clothing','https://fakestoreapi.com/img/51eg55uWmdL._AC_UX679_.jpg');
+INSERT INTO Product(id,title,price,description,category,image) VALUES (20,'DANVOUY Womens T Shirt Casual Cotton Short',12.99,'Mest bomull men lite spandex också. Väldigt casual.','women''s clothing','https://fakestoreapi.com/img/61pHAEJ4NML._AC_UX679_.jpg');
+
+-- ids above are fixed, hand out the following ones from the sequence
+ALTER SEQUENCE product_seq RESTART WITH 21;
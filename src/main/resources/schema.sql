@@ -0,0 +1,40 @@
+DROP TABLE IF EXISTS product;
+DROP TABLE IF EXISTS product_tombstone;
+DROP SEQUENCE IF EXISTS product_seq;
+DROP SEQUENCE IF EXISTS product_change_seq;
+
+-- each value reserves a block of 50 ids (Hibernate pooled-lo optimizer), so inserts can be batched
+CREATE SEQUENCE product_seq START WITH 1 INCREMENT BY 50;
+
+-- orders every insert, update and delete for delta sync, see ProductChangeLog
+CREATE SEQUENCE product_change_seq START WITH 1;
+
+CREATE TABLE product (
+    id          INTEGER DEFAULT NEXT VALUE FOR product_seq PRIMARY KEY,
+    title       VARCHAR(255),
+    price       DOUBLE PRECISION,
+    category    VARCHAR(255),
+    description VARCHAR(255),
+    image       VARCHAR(255),
+    version     INTEGER DEFAULT 0 NOT NULL,
+    -- invisible, so SELECT * and the entity mapping do not see it
+    change_seq  BIGINT INVISIBLE DEFAULT NEXT VALUE FOR product_change_seq
+                ON UPDATE NEXT VALUE FOR product_change_seq NOT NULL,
+    -- the last write of the row for delta sync, whatever its version
+    change_type VARCHAR(7) INVISIBLE DEFAULT 'CREATED' ON UPDATE 'UPDATED' NOT NULL,
+    CONSTRAINT uk_product_title UNIQUE (title)
+);
+
+CREATE INDEX idx_product_category ON product (category);
+CREATE INDEX idx_product_change_seq ON product (change_seq);
+
+-- one row per deleted product, written by a trigger in the same statement as the delete
+CREATE TABLE product_tombstone (
+    product_id  INTEGER PRIMARY KEY,
+    change_seq  BIGINT NOT NULL
+);
+
+CREATE INDEX idx_product_tombstone_change_seq ON product_tombstone (change_seq);
+
+CREATE TRIGGER product_delete_tombstone AFTER DELETE ON product FOR EACH ROW
+    CALL 'com.example.produktapi.repository.ProductTombstoneTrigger';
@@ -0,0 +1,144 @@
+package com.example.produktapi.benchmark;
+
+import com.example.produktapi.ProduktapiApplication;
+import com.example.produktapi.service.ProductChangeFeed;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@value #SUBSCRIBERS} clients on {@code /products/changes/stream} while {@value #UPDATES} products are updated
+ * one after the other: how long each change takes from the start of the update request to every subscriber,
+ * and how many threads the server needs for it. Clients read the stream with an asynchronous line subscriber,
+ * so neither side has a thread per stream. Run with {@code mvn test -Pbenchmark -Dtest=ChangeStreamBenchmark},
+ * add {@code -DvirtualThreads=true} to also serve the requests on virtual threads. Changes are always sent from
+ * virtual threads.
+ */
+class ChangeStreamBenchmark {
+
+    private static final int SUBSCRIBERS = 5_000;
+    private static final int CONNECT_BATCH = 250;
+    private static final int UPDATES = 100;
+
+    private static final Pattern SEQUENCE = Pattern.compile("^data:\\{\"sequence\":(\\d+),");
+
+    @Test
+    void thousandsOfSubscribers() throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(ProduktapiApplication.class)
+                        .run("--server.port=0",
+                                "--server.tomcat.max-connections=" + (SUBSCRIBERS + 100),
+                                "--logging.level.root=WARN",
+                                "--produktapi.virtual-threads.enabled="
+                                        + Boolean.getBoolean("virtualThreads"));
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            String base = "http://localhost:" + context.getWebServer().getPort();
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            AtomicLongArray sentAt = new AtomicLongArray(UPDATES + 1);
+            Latencies latencies = new Latencies("change delivery", SUBSCRIBERS * UPDATES);
+            AtomicLong delivered = new AtomicLong();
+            for (int connected = 0; connected < SUBSCRIBERS; connected += CONNECT_BATCH) {
+                for (int i = 0; i < CONNECT_BATCH; i++) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/products/changes/stream")).build();
+                    http.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(
+                            new DeliverySubscriber(sentAt, latencies, delivered)));
+                }
+                // the response completes when the stream ends, wait for the subscriptions instead
+                long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+                while (context.getBean(ProductChangeFeed.class).getSubscriberCount() < connected + CONNECT_BATCH
+                        && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+            int subscribed = context.getBean(ProductChangeFeed.class).getSubscriberCount();
+            int threadsSubscribed = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            long start = System.nanoTime();
+            for (int update = 1; update <= UPDATES; update++) {
+                sentAt.set(update, System.nanoTime());
+                String body = "{\"title\":\"Produkt uppdaterad " + update + "\",\"price\":" + update
+                        + ",\"category\":\"electronics\",\"description\":\"bra att ha\",\"image\":\"url\"}";
+                HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/products/1"))
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(body))
+                        .build(), HttpResponse.BodyHandlers.discarding());
+                assertEquals(200, response.statusCode());
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+            while (delivered.get() < (long) subscribed * UPDATES && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d subscribers, %d updates: %d of %d events delivered in %.1f s (%.0f events/s)%n",
+                    subscribed, UPDATES, delivered.get(), (long) subscribed * UPDATES, seconds,
+                    delivered.get() / seconds);
+            System.out.printf("platform threads: %d before subscribing, %d with every stream open%n",
+                    threadsBefore, threadsSubscribed);
+            System.out.println(latencies.summary());
+
+            assertEquals(SUBSCRIBERS, subscribed);
+            assertEquals((long) SUBSCRIBERS * UPDATES, delivered.get());
+            // the connector pool grows to its maximum while the streams are opened, but no further
+            assertTrue(threadsSubscribed - threadsBefore < SUBSCRIBERS / 10);
+        }
+    }
+
+    private static final class DeliverySubscriber implements Flow.Subscriber<String> {
+
+        private final AtomicLongArray sentAt;
+        private final Latencies latencies;
+        private final AtomicLong delivered;
+
+        private DeliverySubscriber(AtomicLongArray sentAt, Latencies latencies, AtomicLong delivered) {
+            this.sentAt = sentAt;
+            this.latencies = latencies;
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            Matcher matcher = SEQUENCE.matcher(line);
+            if (matcher.find()) {
+                int sequence = Integer.parseInt(matcher.group(1));
+                latencies.record(System.nanoTime() - sentAt.get(sequence));
+                delivered.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
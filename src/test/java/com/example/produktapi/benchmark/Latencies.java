@@ -0,0 +1,65 @@
+package com.example.produktapi.benchmark;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Collects per-operation latencies for the benchmarks in this package and summarises them as percentiles.
+ */
+final class Latencies {
+
+    private final String name;
+    private final long[] samples;
+    private int count;
+
+    Latencies(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Runs {@code operation} for a warm-up round that is thrown away and then {@code iterations} measured times.
+     * Every call gets a distinct index, warm-up calls come after the measured ones.
+     */
+    static Latencies measure(String name, int iterations, IntConsumer operation) {
+        for (int i = iterations; i < iterations + Math.min(iterations, 200); i++) {
+            operation.accept(i);
+        }
+        Latencies latencies = new Latencies(name, iterations);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.accept(i);
+            latencies.record(System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    synchronized void record(long nanos) {
+        if (count < samples.length) {
+            samples[count++] = nanos;
+        }
+    }
+
+    synchronized double percentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1000.0;
+    }
+
+    synchronized double meanMicros() {
+        return count == 0 ? 0 : Arrays.stream(samples, 0, count).average().orElse(0) / 1000.0;
+    }
+
+    int count() {
+        return count;
+    }
+
+    String summary() {
+        return String.format("%-40s n=%7d mean=%10.1fus p50=%10.1fus p99=%10.1fus max=%10.1fus",
+                name, count, meanMicros(), percentileMicros(50), percentileMicros(99), percentileMicros(100));
+    }
+}
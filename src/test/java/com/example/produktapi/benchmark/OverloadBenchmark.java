@@ -0,0 +1,156 @@
+package com.example.produktapi.benchmark;
+
+import com.example.produktapi.ProduktapiApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Offers {@value #OVERLOAD}x the measured capacity of {@code GET /products/{id}} for {@value #SECONDS} s, without
+ * and with {@code produktapi.concurrency-limit.enabled=true}. Requests are sent at a fixed rate whether or not
+ * earlier ones have been answered, like independent clients do. Every statement is delayed by
+ * {@value #STATEMENT_DELAY_MILLIS} ms and the pool has {@value #POOL_SIZE} connections, so the database is the
+ * bottleneck rather than the CPU the clients share with the server, and the caches are off so that every request
+ * reaches it.
+ * Run with {@code mvn test -Pbenchmark -Dtest=OverloadBenchmark}.
+ */
+class OverloadBenchmark {
+
+    private static final int OVERLOAD = 5;
+    private static final int SECONDS = 10;
+    private static final long STATEMENT_DELAY_MILLIS = 25;
+    private static final int POOL_SIZE = 2;
+    private static final int CAPACITY_CLIENTS = 16;
+
+    @Test
+    void tailLatencyAtFiveTimesCapacity() throws Exception {
+
+        Result unlimited = run(false);
+        Result limited = run(true);
+
+        System.out.println(OVERLOAD + "x capacity for " + SECONDS + " s, " + STATEMENT_DELAY_MILLIS
+                + " ms per statement, " + POOL_SIZE + " connections:");
+        System.out.println(unlimited);
+        System.out.println(limited);
+
+        assertEquals(0, limited.failures);
+        // what is let through is answered about as fast as at capacity, the rest is refused at once
+        assertTrue(limited.answered.percentileMicros(99) < 1_000_000);
+        assertTrue(limited.refused.percentileMicros(99) < 100_000);
+    }
+
+    private Result run(boolean limited) throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(ProduktapiApplication.class)
+                        .initializers(applicationContext -> applicationContext.getBeanFactory()
+                                .addBeanPostProcessor(new SlowStatements(STATEMENT_DELAY_MILLIS)))
+                        .run("--server.port=0",
+                                "--produktapi.cache.enabled=false",
+                                "--produktapi.second-level-cache.enabled=false",
+                                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                                "--server.tomcat.max-connections=20000",
+                                "--produktapi.concurrency-limit.enabled=" + limited,
+                                "--logging.level.root=WARN");
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            String base = "http://localhost:" + context.getWebServer().getPort();
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+
+            // warm-up, not measured
+            for (int i = 0; i < 300; i++) {
+                http.send(request(base, i), HttpResponse.BodyHandlers.discarding());
+            }
+            double capacity = capacity(http, base, clients);
+            double rate = capacity * OVERLOAD;
+            int requests = (int) (rate * SECONDS);
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+
+            String label = limited ? "limited" : "unlimited";
+            Latencies answered = new Latencies(label + ", 200", requests);
+            Latencies refused = new Latencies(label + ", 503", requests);
+            AtomicLong failures = new AtomicLong();
+            List<CompletableFuture<?>> responses = new ArrayList<>(requests);
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                long sendAt = start + i * interval;
+                LockSupport.parkNanos(sendAt - System.nanoTime());
+                responses.add(http.sendAsync(request(base, i), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, failure) -> {
+                            // from when the request was due, so that a sender falling behind is not hidden
+                            long latency = System.nanoTime() - sendAt;
+                            if (failure == null && response.statusCode() == 200) {
+                                answered.record(latency);
+                            } else if (failure == null && response.statusCode() == 503) {
+                                refused.record(latency);
+                            } else {
+                                failures.incrementAndGet();
+                            }
+                        }));
+            }
+            CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+                    .handle((ignored, failure) -> null)
+                    .get(5, TimeUnit.MINUTES);
+            return new Result(capacity, rate, answered, refused, failures.get());
+        }
+    }
+
+    /**
+     * Requests per second that {@value #CAPACITY_CLIENTS} clients sending one request after the other get
+     * answered in {@value #SECONDS} s.
+     */
+    private static double capacity(HttpClient http, String base, ExecutorService clients) throws Exception {
+        AtomicLong answered = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        List<Future<?>> running = new ArrayList<>();
+        for (int c = 0; c < CAPACITY_CLIENTS; c++) {
+            int client = c;
+            running.add(clients.submit(() -> {
+                for (int i = client; System.nanoTime() < end; i += CAPACITY_CLIENTS) {
+                    if (http.send(request(base, i), HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        answered.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : running) {
+            future.get();
+        }
+        return answered.get() / (double) SECONDS;
+    }
+
+    private static HttpRequest request(String base, int i) {
+        return HttpRequest.newBuilder(URI.create(base + "/products/" + (i % 20 + 1)))
+                .timeout(Duration.ofMinutes(2))
+                .build();
+    }
+
+    private record Result(double capacity, double rate, Latencies answered, Latencies refused, long failures) {
+
+        @Override
+        public String toString() {
+            return String.format("capacity=%.0f req/s offered=%.0f req/s failures=%d%n%s%n%s",
+                    capacity, rate, failures, answered.summary(), refused.summary());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.produktapi.benchmark;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Insert and lookup latency on a 100k row catalog, first with the indexes from schema.sql and then with
+ * them dropped. Run with {@code mvn test -Pbenchmark}.
+ */
+@DataJpaTest(showSql = false)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductLookupBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int CATEGORIES = 1_000;
+    private static final int LOOKUPS = 2_000;
+    private static final int INSERTS = 2_000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO product(title, price, category, description, image) " +
+                "SELECT 'Produkt ' || x, x * 0.5, 'kategori ' || MOD(x, ?), 'En bra produkt att ha', 'url' " +
+                "FROM SYSTEM_RANGE(1, ?)", CATEGORIES, ROWS);
+    }
+
+    @Test
+    void insertAndLookupLatencyWithAndWithoutIndexes() {
+
+        List<Latencies> indexed = run("indexed", "a", true);
+
+        jdbcTemplate.execute("ALTER TABLE product DROP CONSTRAINT uk_product_title");
+        jdbcTemplate.execute("DROP INDEX idx_product_category");
+        List<Latencies> unindexed = run("no index", "b", false);
+
+        System.out.println("Product lookups at " + ROWS + " rows:");
+        indexed.forEach(latencies -> System.out.println(latencies.summary()));
+        unindexed.forEach(latencies -> System.out.println(latencies.summary()));
+
+        assertTrue(indexed.get(0).percentileMicros(50) < unindexed.get(0).percentileMicros(50));
+        assertTrue(indexed.get(1).percentileMicros(50) < unindexed.get(1).percentileMicros(50));
+    }
+
+    /**
+     * @param uniqueConstraint whether inserts can rely on the constraint or have to look the title up first,
+     *                         as addProduct did before
+     */
+    private List<Latencies> run(String label, String titlePrefix, boolean uniqueConstraint) {
+        Random random = new Random(42);
+        List<Latencies> results = new ArrayList<>();
+        results.add(Latencies.measure("findByTitle (" + label + ")", LOOKUPS,
+                i -> productRepository.findByTitle("Produkt " + (1 + random.nextInt(ROWS)))));
+        results.add(Latencies.measure("findByCategory (" + label + ")", LOOKUPS,
+                i -> productRepository.findByCategory("kategori " + random.nextInt(CATEGORIES))));
+        results.add(Latencies.measure("insert (" + label + ")", INSERTS, i -> {
+            Product product = new Product("Ny " + titlePrefix + i, 10.0, "kategori 1", "ny", "url");
+            if (!uniqueConstraint) {
+                productRepository.findByTitle(product.getTitle());
+            }
+            productRepository.save(product);
+        }));
+        return results;
+    }
+}
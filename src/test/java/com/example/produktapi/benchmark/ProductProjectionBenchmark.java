@@ -0,0 +1,106 @@
+package com.example.produktapi.benchmark;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Response size, allocation and latency of a {@value #PAGE_SIZE} product category page on a {@value #ROWS} row
+ * catalog, for whole products, {@code ?view=summary} and {@code ?fields=id,title,price}. Every product has a
+ * description of 250 characters, close to the column limit. The product caches are off so that every request reads
+ * the database. Run with {@code mvn test -Pbenchmark -Dtest=ProductProjectionBenchmark}.
+ */
+@SpringBootTest(properties = {"produktapi.cache.enabled=false", "produktapi.second-level-cache.enabled=false",
+        "logging.level.root=WARN"})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductProjectionBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int CATEGORIES = 1_000;
+    private static final int PAGE_SIZE = ROWS / CATEGORIES;
+    private static final int REQUESTS = 2_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO product(title, price, category, description, image) " +
+                "SELECT 'Produkt ' || x, x * 0.5, 'kategori ' || MOD(x, ?), REPEAT('En bra produkt att ha. ', 11), " +
+                "'https://example.com/bilder/' || x || '.jpg' FROM SYSTEM_RANGE(1, ?)", CATEGORIES, ROWS);
+    }
+
+    @Test
+    void wholeProductsAgainstSummaryAndFields() {
+
+        List<Result> results = new ArrayList<>();
+        results.add(run("whole products", ""));
+        results.add(run("view=summary", "&view=summary"));
+        results.add(run("fields=id,title,price", "&fields=id,title,price"));
+
+        System.out.println("Category pages of " + PAGE_SIZE + " at " + ROWS + " rows:");
+        results.forEach(System.out::println);
+
+        Result whole = results.get(0);
+        assertTrue(results.get(1).bytes < whole.bytes / 2);
+        assertTrue(results.get(1).allocatedBytes < whole.allocatedBytes);
+        assertTrue(results.get(2).bytes < results.get(1).bytes);
+    }
+
+    private Result run(String name, String query) {
+        long[] bytes = new long[1];
+        long[] allocated = new long[1];
+        long thread = Thread.currentThread().getId();
+        Latencies latencies = Latencies.measure(name, REQUESTS, i -> {
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+            MvcResult result = perform("/products/categories/{category}?limit=" + PAGE_SIZE + query,
+                    "kategori " + i % CATEGORIES);
+            if (i < REQUESTS) {
+                allocated[0] += THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+                bytes[0] += result.getResponse().getContentLengthLong() > 0
+                        ? result.getResponse().getContentLengthLong()
+                        : result.getResponse().getContentAsByteArray().length;
+            }
+        });
+        return new Result(latencies, bytes[0] / REQUESTS, allocated[0] / REQUESTS);
+    }
+
+    private MvcResult perform(String uri, String category) {
+        try {
+            MvcResult result = mockMvc.perform(get(uri, category)).andReturn();
+            assertEquals(200, result.getResponse().getStatus());
+            return result;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Result(Latencies latencies, long bytes, long allocatedBytes) {
+
+        @Override
+        public String toString() {
+            return String.format("%s bytes/response=%8d allocated/request=%10d",
+                    latencies.summary(), bytes, allocatedBytes);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.produktapi.benchmark;
+
+import com.example.produktapi.ProduktapiApplication;
+import com.example.produktapi.config.ReactiveReadServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The reactive read API against the servlet API on a {@value #ROWS} row catalog, with the product caches off
+ * so that both read the database: streaming the whole catalog as NDJSON, and {@value #CLIENTS} concurrent
+ * clients reading one category each. Run with {@code mvn test -Pbenchmark -Dtest=ReactiveReadBenchmark}.
+ */
+class ReactiveReadBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int CATEGORIES = 1_000;
+    private static final int FULL_READS = 10;
+    private static final int CLIENTS = 500;
+    private static final int REQUESTS_PER_CLIENT = 10;
+
+    @Test
+    void servletAndReactiveReads() throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(ProduktapiApplication.class)
+                        .run("--server.port=0",
+                                "--produktapi.reactive.enabled=true",
+                                "--produktapi.reactive.port=0",
+                                "--produktapi.cache.enabled=false",
+                                "--produktapi.second-level-cache.enabled=false",
+                                "--logging.level.root=WARN");
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            context.getBean(JdbcTemplate.class).update("INSERT INTO product(title, price, category, description, image) " +
+                    "SELECT 'Produkt ' || x, x * 0.5, 'kategori ' || MOD(x, ?), 'En bra produkt att ha', 'url' " +
+                    "FROM SYSTEM_RANGE(1, ?)", CATEGORIES, ROWS);
+
+            String servlet = "http://localhost:" + context.getWebServer().getPort();
+            String reactive = "http://localhost:" + context.getBean(ReactiveReadServer.class).getPort();
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+
+            List<Latencies> results = new ArrayList<>();
+            results.add(Latencies.measure("full catalog, servlet export", FULL_READS,
+                    i -> assertTrue(drain(http, servlet + "/products/export") > ROWS)));
+            results.add(Latencies.measure("full catalog, reactive ndjson", FULL_READS,
+                    i -> assertTrue(drain(http, reactive + "/products") > ROWS)));
+            results.add(Latencies.measure("full catalog, reactive json array", FULL_READS,
+                    i -> assertTrue(drain(http, reactive + "/products", "application/json") > ROWS)));
+            // a category has ROWS / CATEGORIES products, one servlet page holds them all
+            results.add(concurrent("category, servlet", http, clients,
+                    client -> servlet + "/products/categories/kategori%20" + client % CATEGORIES + "?limit=100"));
+            results.add(concurrent("category, reactive", http, clients,
+                    client -> reactive + "/products/categories/kategori%20" + client % CATEGORIES));
+
+            System.out.println("Reads at " + ROWS + " rows:");
+            results.forEach(latencies -> System.out.println(latencies.summary()));
+        }
+    }
+
+    private static Latencies concurrent(String name, HttpClient http, ExecutorService clients,
+                                        IntFunction<String> uri) throws Exception {
+        Latencies latencies = new Latencies(name, CLIENTS * REQUESTS_PER_CLIENT);
+        AtomicLong failures = new AtomicLong();
+        List<Future<?>> running = new ArrayList<>(CLIENTS);
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            int client = c;
+            running.add(clients.submit(() -> {
+                for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                    long requestStart = System.nanoTime();
+                    if (drain(http, uri.apply(client * REQUESTS_PER_CLIENT + r)) < 0) {
+                        failures.incrementAndGet();
+                    }
+                    latencies.record(System.nanoTime() - requestStart);
+                }
+            }));
+        }
+        for (Future<?> future : running) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %.0f req/s, %d failures%n", name, latencies.count() / seconds, failures.get());
+        assertEquals(0, failures.get());
+        return latencies;
+    }
+
+    /**
+     * @return the number of bytes in the response body, -1 for a status other than 200
+     */
+    private static long drain(HttpClient http, String uri) {
+        return drain(http, uri, "application/x-ndjson, application/json");
+    }
+
+    private static long drain(HttpClient http, String uri, String accept) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Accept", accept)
+                .timeout(Duration.ofSeconds(120))
+                .build();
+        try {
+            HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                long bytes = 0;
+                byte[] buffer = new byte[16 * 1024];
+                for (int read; (read = body.read(buffer)) != -1; ) {
+                    bytes += read;
+                }
+                return response.statusCode() == 200 ? bytes : -1;
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.produktapi.benchmark;
+
+import com.example.produktapi.ProduktapiApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read throughput of {@code GET /products/{id}} from {@value #CLIENTS} clients for {@value #SECONDS} s, with the
+ * primary alone and with 1 to {@value #MAX_REPLICAS} read replicas. Every statement is delayed by
+ * {@value #STATEMENT_DELAY_MILLIS} ms and every database has a pool of {@value #POOL_SIZE} connections, so the
+ * connections are the bottleneck, and the caches are off so that every request reaches a database.
+ * Run with {@code mvn test -Pbenchmark -Dtest=ReplicaReadBenchmark}.
+ */
+class ReplicaReadBenchmark {
+
+    private static final int MAX_REPLICAS = 3;
+    private static final int CLIENTS = 32;
+    private static final int SECONDS = 10;
+    private static final long STATEMENT_DELAY_MILLIS = 20;
+    private static final int POOL_SIZE = 2;
+
+    @Test
+    void readThroughputAsReplicasAreAdded() throws Exception {
+
+        List<Result> results = new ArrayList<>();
+        for (int replicas = 0; replicas <= MAX_REPLICAS; replicas++) {
+            results.add(run(replicas));
+        }
+
+        System.out.println("GET /products/{id}, " + CLIENTS + " clients, " + STATEMENT_DELAY_MILLIS
+                + " ms per statement, " + POOL_SIZE + " connections per database:");
+        results.forEach(System.out::println);
+
+        for (Result result : results) {
+            assertEquals(0, result.failures);
+        }
+        // reads leave the primary for the replicas, each replica adds a pool's worth of reads
+        assertTrue(results.get(MAX_REPLICAS).throughput() > 2 * results.get(1).throughput());
+    }
+
+    private Result run(int replicas) throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(ProduktapiApplication.class)
+                        .initializers(applicationContext -> applicationContext.getBeanFactory()
+                                .addBeanPostProcessor(new SlowStatements(STATEMENT_DELAY_MILLIS)))
+                        .run("--server.port=0",
+                                "--produktapi.cache.enabled=false",
+                                "--produktapi.second-level-cache.enabled=false",
+                                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                                "--produktapi.replicas.enabled=" + (replicas > 0),
+                                "--produktapi.replicas.count=" + Math.max(replicas, 1),
+                                "--logging.level.root=WARN");
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            String base = "http://localhost:" + context.getWebServer().getPort();
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+
+            // warm-up, not measured
+            for (int i = 0; i < 100; i++) {
+                http.send(request(base, i), HttpResponse.BodyHandlers.discarding());
+            }
+
+            Latencies latencies = new Latencies(replicas + " replicas", 100_000);
+            AtomicLong failures = new AtomicLong();
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+            List<Future<?>> running = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                running.add(clients.submit(() -> {
+                    for (int i = client; System.nanoTime() < end; i += CLIENTS) {
+                        long start = System.nanoTime();
+                        int status = http.send(request(base, i), HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) {
+                            latencies.record(System.nanoTime() - start);
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : running) {
+                future.get();
+            }
+            return new Result(latencies, failures.get());
+        }
+    }
+
+    private static HttpRequest request(String base, int i) {
+        return HttpRequest.newBuilder(URI.create(base + "/products/" + (i % 20 + 1)))
+                .timeout(Duration.ofMinutes(1))
+                .build();
+    }
+
+    private record Result(Latencies latencies, long failures) {
+
+        double throughput() {
+            return latencies.count() / (double) SECONDS;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f req/s failures=%d%n%s", throughput(), failures, latencies.summary());
+        }
+    }
+}
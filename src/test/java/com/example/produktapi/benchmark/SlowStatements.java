@@ -0,0 +1,61 @@
+package com.example.produktapi.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Wraps the data source of the application so that every statement execution sleeps before it reaches H2, to
+ * stand in for a database over the network. With read replicas that is the routing data source, so that reads
+ * from a replica sleep on the replica's connection.
+ */
+class SlowStatements implements BeanPostProcessor {
+
+    private final long delayMillis;
+
+    SlowStatements(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && beanName.equals("dataSource")) {
+            return delegate(DataSource.class, dataSource);
+        }
+        return bean;
+    }
+
+    private Object delegate(Class<?> type, Object target) {
+        return Proxy.newProxyInstance(SlowStatements.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        Thread.sleep(delayMillis);
+                    }
+                    Object result = invoke(method, target, args);
+                    if (result instanceof PreparedStatement) {
+                        return delegate(PreparedStatement.class, result);
+                    }
+                    if (result instanceof Statement) {
+                        return delegate(Statement.class, result);
+                    }
+                    if (result instanceof Connection) {
+                        return delegate(Connection.class, result);
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
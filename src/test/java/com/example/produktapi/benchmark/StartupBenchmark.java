@@ -0,0 +1,118 @@
+package com.example.produktapi.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application {@value #RUNS} times in every mode that has been built and measures the time from
+ * starting the process to the first successful {@code GET /products}, and the resident set size right after it.
+ * Build the modes with {@code mvn package -Pfast-startup} (and {@code mvn -Pnative native:compile} for the native
+ * image) before running {@code mvn test -Pbenchmark -Dtest=StartupBenchmark}. Modes that were not built are
+ * skipped.
+ */
+class StartupBenchmark {
+
+    private static final int RUNS = 5;
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path EXECUTABLE_JAR = TARGET.resolve("Produktapi-0.0.1-SNAPSHOT-exec.jar");
+    private static final Path UNPACKED_JAR = TARGET.resolve("fast-startup/Produktapi-0.0.1-SNAPSHOT-unpacked.jar");
+    private static final Path CDS_ARCHIVE = TARGET.resolve("fast-startup/Produktapi.jsa");
+    private static final Path NATIVE_IMAGE = TARGET.resolve("Produktapi");
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    @Test
+    void timeToFirstProductList() throws Exception {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String aot = "-Dspring.aot.enabled=true";
+        String cds = "-XX:SharedArchiveFile=" + CDS_ARCHIVE;
+
+        measure("executable jar", EXECUTABLE_JAR, java, "-jar", EXECUTABLE_JAR.toString());
+        measure("unpacked", UNPACKED_JAR, java, "-jar", UNPACKED_JAR.toString());
+        measure("unpacked + CDS", CDS_ARCHIVE, java, cds, "-jar", UNPACKED_JAR.toString());
+        measure("unpacked + AOT", UNPACKED_JAR, java, aot, "-jar", UNPACKED_JAR.toString());
+        measure("unpacked + AOT + CDS", CDS_ARCHIVE, java, aot, cds, "-jar", UNPACKED_JAR.toString());
+        measure("native image", NATIVE_IMAGE, NATIVE_IMAGE.toString());
+    }
+
+    private void measure(String mode, Path required, String... command) throws Exception {
+        if (!Files.exists(required)) {
+            System.out.printf("%-22s skipped, %s has not been built%n", mode, required);
+            return;
+        }
+        long[] startupMillis = new long[RUNS];
+        long[] rssKilobytes = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            int port = freePort();
+            List<String> arguments = new ArrayList<>(List.of(command));
+            arguments.add("--server.port=" + port);
+            ProcessBuilder builder = new ProcessBuilder(arguments).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+            long start = System.nanoTime();
+            Process process = builder.start();
+            try {
+                awaitProductList(process, port);
+                startupMillis[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                rssKilobytes[run] = residentSetKilobytes(process.pid());
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+        Arrays.sort(startupMillis);
+        Arrays.sort(rssKilobytes);
+        System.out.printf("%-22s first GET /products after p50=%5d ms min=%5d ms, RSS p50=%4d MB%n",
+                mode, startupMillis[RUNS / 2], startupMillis[0], rssKilobytes[RUNS / 2] / 1024);
+    }
+
+    private void awaitProductList(Process process, int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/products")).build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline) {
+            assertTrue(process.isAlive(), "the application exited before it answered");
+            try {
+                if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException notListeningYet) {
+                // connection refused until the web server has started
+            }
+            Thread.sleep(5);
+        }
+        fail("no successful GET /products within 60 s");
+    }
+
+    private static long residentSetKilobytes(long pid) throws IOException {
+        for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.produktapi.benchmark;
+
+import com.example.produktapi.ProduktapiApplication;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput and tail latency of a mixed read load from {@value #CLIENTS} concurrent clients, first with
+ * Tomcat's platform thread pool and then with {@code produktapi.virtual-threads.enabled=true}. Every statement
+ * sent to H2 is delayed by {@value #STATEMENT_DELAY_MILLIS} ms to stand in for a database over the network.
+ * The product caches and single-flight are off, so that every request takes a connection and runs its statement.
+ * Virtual threads, with the connection pool sized for them, must serve more requests per second at a lower
+ * 99th percentile than the platform threads, and must never be pinned to their carrier on the way.
+ * Run with {@code mvn test -Pbenchmark -Dtest=VirtualThreadLoadBenchmark}.
+ */
+class VirtualThreadLoadBenchmark {
+
+    private static final int CLIENTS = 2_000;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final long STATEMENT_DELAY_MILLIS = 50;
+
+    // every request reaches JDBC, the caches and single-flight are off for the runs
+    private static final String[] PATHS = {
+            "/products/",                       // by id, one of the first PRODUCTS
+            "/products?limit=10",               // keyset query
+            "/products/categories/electronics"  // category query
+    };
+    private static final int PRODUCTS = 20;
+
+    @Test
+    void platformAndVirtualThreadsUnderConcurrentLoad() throws Exception {
+
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.println("Mixed reads, " + CLIENTS + " clients x " + REQUESTS_PER_CLIENT + " requests, "
+                + STATEMENT_DELAY_MILLIS + " ms per statement:");
+        System.out.println(platform);
+        System.out.println(virtual);
+
+        assertEquals(0, platform.failures);
+        assertEquals(0, virtual.failures);
+        assertTrue(virtual.requestsPerSecond > platform.requestsPerSecond, virtual + " vs " + platform);
+        assertTrue(virtual.latencies.percentileMicros(99) < platform.latencies.percentileMicros(99),
+                virtual + " vs " + platform);
+        assertEquals(0, virtual.pinnedEvents, virtual.toString());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(ProduktapiApplication.class)
+                        .initializers(applicationContext -> applicationContext.getBeanFactory()
+                                .addBeanPostProcessor(new SlowStatements(STATEMENT_DELAY_MILLIS)))
+                        .run("--server.port=0",
+                                "--produktapi.virtual-threads.enabled=" + virtualThreads,
+                                "--produktapi.cache.enabled=false",
+                                "--produktapi.second-level-cache.enabled=false",
+                                "--produktapi.single-flight.enabled=false",
+                                "--logging.level.root=WARN");
+             RecordingStream pinning = new RecordingStream();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            AtomicInteger pinnedEvents = new AtomicInteger();
+            pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO);
+            pinning.onEvent("jdk.VirtualThreadPinned", event -> pinnedEvents.incrementAndGet());
+            pinning.startAsync();
+
+            String base = "http://localhost:" + context.getWebServer().getPort();
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+
+            // warm-up, not measured
+            for (int i = 0; i < 300; i++) {
+                send(http, base + path(i));
+            }
+
+            String label = virtualThreads ? "virtual threads" : "platform threads";
+            Latencies latencies = new Latencies(label, CLIENTS * REQUESTS_PER_CLIENT);
+            AtomicLong failures = new AtomicLong();
+            List<Future<?>> running = new ArrayList<>(CLIENTS);
+            long start = System.nanoTime();
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                running.add(clients.submit(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        long requestStart = System.nanoTime();
+                        try {
+                            if (send(http, base + path(client + r)) != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies.record(System.nanoTime() - requestStart);
+                    }
+                }));
+            }
+            for (Future<?> future : running) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pinning.stop();
+            return new Result(latencies, latencies.count() / seconds, failures.get(), pinnedEvents.get());
+        }
+    }
+
+    private static String path(int request) {
+        String path = PATHS[request % PATHS.length];
+        return path.endsWith("/") ? path + (request / PATHS.length % PRODUCTS + 1) : path;
+    }
+
+    private static int send(HttpClient http, String uri) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(60)).build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private record Result(Latencies latencies, double requestsPerSecond, long failures, int pinnedEvents) {
+
+        @Override
+        public String toString() {
+            return String.format("%s throughput=%8.0f req/s failures=%d pinned=%d",
+                    latencies.summary(), requestsPerSecond, failures, pinnedEvents);
+        }
+    }
+}
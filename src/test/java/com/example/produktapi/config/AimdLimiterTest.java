@@ -0,0 +1,96 @@
+package com.example.produktapi.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdLimiterTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    private final AimdLimiter underTest = new AimdLimiter(limit(4, 1, 8));
+
+    @Test
+    void whenTheLimitIsReached_thenFurtherRequestsAreRefusedAndCounted() {
+
+        // given
+        for (int i = 0; i < 4; i++) {
+            assertTrue(underTest.tryAcquire());
+        }
+
+        // when
+        boolean acquired = underTest.tryAcquire();
+
+        // then
+        assertFalse(acquired);
+        assertEquals(4, underTest.getInFlight());
+        assertEquals(1, underTest.getRejected());
+    }
+
+    @Test
+    void whenRequestsUsingTheLimitFinishWithinTheTarget_thenTheLimitGrowsUpToTheMaximum() {
+
+        // when
+        for (int i = 0; i < 200; i++) {
+            fillAndRelease(FAST, false);
+        }
+
+        // then
+        assertEquals(8, underTest.getLimit());
+        assertEquals(0, underTest.getInFlight());
+    }
+
+    @Test
+    void whenRequestsAreSlowOrFail_thenTheLimitIsCutButNotBelowTheMinimum() {
+
+        // given
+        underTest.tryAcquire();
+        underTest.release(SLOW, false);
+        int afterOneSlowRequest = underTest.getLimit();
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            underTest.tryAcquire();
+            underTest.release(FAST, true);
+        }
+
+        // then
+        assertEquals(3, afterOneSlowRequest);
+        assertEquals(1, underTest.getLimit());
+    }
+
+    @Test
+    void whenTheLimitIsNotUsed_thenItDoesNotGrow() {
+
+        // when
+        for (int i = 0; i < 200; i++) {
+            underTest.tryAcquire();
+            underTest.release(FAST, false);
+        }
+
+        // then
+        assertEquals(4, underTest.getLimit());
+    }
+
+    private void fillAndRelease(long latency, boolean failed) {
+        int acquired = 0;
+        while (underTest.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            underTest.release(latency, failed);
+        }
+    }
+
+    private static ConcurrencyLimitProperties.Limit limit(int initial, int min, int max) {
+        ConcurrencyLimitProperties.Limit limit = new ConcurrencyLimitProperties.Limit();
+        limit.setInitialLimit(initial);
+        limit.setMinLimit(min);
+        limit.setMaxLimit(max);
+        limit.setTargetLatency(Duration.ofMillis(100));
+        return limit;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.produktapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "produktapi.replicas.enabled=true",
+        "produktapi.replicas.count=2",
+        // the replicas only catch up when the test syncs them
+        "produktapi.replicas.sync-interval=1h",
+        "produktapi.replicas.stickiness=1m",
+        // every read reaches a database
+        "produktapi.cache.enabled=false",
+        "produktapi.second-level-cache.enabled=false"})
+class ReplicaRoutingTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LocalReplicas localReplicas;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void whenProductsAreRead_thenTheReplicasTakeTurnsAndThePrimaryIsLeftAlone() throws Exception {
+
+        // given
+        double primaryBefore = connections("primary");
+        double firstBefore = connections("replica-1");
+        double secondBefore = connections("replica-2");
+
+        // when
+        for (int id = 1; id <= 4; id++) {
+            assertEquals(200, send("GET", "/products/" + id, null, null).statusCode());
+        }
+        HttpResponse<String> category = send("GET", "/products/categories/electronics", null, null);
+
+        // then
+        assertEquals(200, category.statusCode());
+        assertTrue(category.body().contains("\"electronics\""));
+        assertEquals(0, connections("primary") - primaryBefore);
+        double first = connections("replica-1") - firstBefore;
+        double second = connections("replica-2") - secondBefore;
+        assertTrue(first + second >= 5);
+        assertTrue(Math.abs(first - second) <= 1);
+    }
+
+    @Test
+    void whenAClientReadsItsOwnWriteBeforeTheReplicasHaveIt_thenItReadsFromThePrimaryAndOthersCatchUpAfterTheSync()
+            throws Exception {
+
+        // given
+        HttpResponse<String> created = send("POST", "/products",
+                "{\"title\":\"Replikerad\",\"price\":10.0,\"category\":\"electronics\",\"description\":\"ny\","
+                        + "\"image\":\"url\"}", null);
+        assertEquals(201, created.statusCode());
+        Matcher id = Pattern.compile("\"id\":(\\d+)").matcher(created.body());
+        assertTrue(id.find());
+        String location = "/products/" + id.group(1);
+        String cookie = created.headers().firstValue("Set-Cookie").orElseThrow().split(";", 2)[0];
+
+        // when
+        HttpResponse<String> writer = send("GET", location, null, cookie);
+        HttpResponse<String> otherBeforeSync = send("GET", location, null, null);
+        localReplicas.sync();
+        HttpResponse<String> otherAfterSync = send("GET", location, null, null);
+
+        // then
+        assertEquals(200, writer.statusCode());
+        assertTrue(writer.body().contains("Replikerad"));
+        assertEquals(404, otherBeforeSync.statusCode());
+        assertEquals(200, otherAfterSync.statusCode());
+        assertTrue(otherAfterSync.body().contains("Replikerad"));
+    }
+
+    @Test
+    void whenAListWasReadFromAReplicaBeforeItHadAWrite_thenItsTagNoLongerMatchesAfterTheSync() throws Exception {
+
+        // given
+        assertEquals(201, send("POST", "/products",
+                "{\"title\":\"Eftersläpande\",\"price\":10.0,\"category\":\"electronics\",\"description\":\"ny\","
+                        + "\"image\":\"url\"}", null).statusCode());
+        HttpResponse<String> beforeSync = send("GET", "/products/categories/electronics", null, null);
+        String tag = beforeSync.headers().firstValue("ETag").orElseThrow();
+
+        // when
+        localReplicas.sync();
+        HttpResponse<String> afterSync = send("GET", "/products/categories/electronics", null, null,
+                "If-None-Match", tag);
+
+        // then
+        assertFalse(beforeSync.body().contains("Eftersläpande"));
+        assertEquals(200, afterSync.statusCode());
+        assertTrue(afterSync.body().contains("Eftersläpande"));
+    }
+
+    private HttpResponse<String> send(String method, String path, String body, String cookie, String... headers)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (cookie != null) {
+            request.header("Cookie", cookie);
+        }
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private double connections(String name) {
+        return meterRegistry.get("produktapi.datasource.connections").tag("name", name).functionCounter().count();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "produktapi.cache.enabled=false",
+        // fewer threads than requests, the requests that wait for the shared read must not hold one each
+        "server.tomcat.threads.max=4"})
+class CategoryReadCoalescingTest {
+
+    private static final int REQUESTS = 50;
+
+    @LocalServerPort
+    private int port;
+
+    @SpyBean
+    private ProductService productService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void whenManyClientsAskForTheSameCategoryAtOnce_thenOneQueryAnswersAllOfThem() throws Exception {
+
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        willAnswer(invocation -> {
+            assertTrue(release.await(30, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).given(productService).getProductPage(eq("electronics"), any(), any(), any(), any());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long queriesBefore = statistics.getPrepareStatementCount();
+        double joinedBefore = joined();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/products/categories/electronics?limit=3")).build();
+
+        // when
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(http.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (joined() - joinedBefore < REQUESTS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        double joinedWhileReading = joined() - joinedBefore;
+        release.countDown();
+
+        // then
+        assertEquals(REQUESTS - 1, joinedWhileReading);
+        String body = responses.get(0).get(30, TimeUnit.SECONDS).body();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get(30, TimeUnit.SECONDS).statusCode());
+            assertEquals(body, response.get().body());
+        }
+        assertTrue(body.contains("\"electronics\""));
+        verify(productService, times(1)).getProductPage(eq("electronics"), any(), any(), any(), any());
+        assertEquals(1, statistics.getPrepareStatementCount() - queriesBefore);
+    }
+
+    private double joined() {
+        return meterRegistry.get("produktapi.single-flight.joined").tag("name", "categoryPages")
+                .functionCounter().count();
+    }
+}
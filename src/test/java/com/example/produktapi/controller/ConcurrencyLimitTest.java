@@ -0,0 +1,128 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.service.ProductExportService;
+import com.example.produktapi.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "produktapi.concurrency-limit.enabled=true",
+        "produktapi.concurrency-limit.read.initial-limit=2",
+        "produktapi.concurrency-limit.read.min-limit=2",
+        "produktapi.concurrency-limit.read.target-latency=30s"})
+class ConcurrencyLimitTest {
+
+    @LocalServerPort
+    private int port;
+
+    @SpyBean
+    private ProductService productService;
+
+    @SpyBean
+    private ProductExportService productExportService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void whenAsManyReadsAsTheLimitAreInFlight_thenTheNextIsRefusedAtOnceAndWritesAreNotAffected() throws Exception {
+
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch reading = new CountDownLatch(2);
+        willAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(release.await(30, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).given(productService).getProductById(any());
+        List<CompletableFuture<HttpResponse<String>>> inFlight = List.of(send("GET", "/products/1"), send("GET", "/products/2"));
+        assertTrue(reading.await(30, TimeUnit.SECONDS));
+
+        // when
+        HttpResponse<String> refused = send("GET", "/products/3").get(30, TimeUnit.SECONDS);
+        HttpResponse<String> write = send("DELETE", "/products/999999").get(30, TimeUnit.SECONDS);
+        double inFlightWhileRefused = gauge("produktapi.concurrency.in-flight");
+        release.countDown();
+
+        // then
+        assertEquals(503, refused.statusCode());
+        assertEquals("1", refused.headers().firstValue("Retry-After").orElseThrow());
+        assertEquals(404, write.statusCode());
+        for (CompletableFuture<HttpResponse<String>> response : inFlight) {
+            assertEquals(200, response.get(30, TimeUnit.SECONDS).statusCode());
+        }
+        assertEquals(2, inFlightWhileRefused);
+        assertEquals(1, meterRegistry.get("produktapi.concurrency.rejected").tag("name", "read")
+                .functionCounter().count());
+        // places are given back after the response has been written, which the client may see first
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (gauge("produktapi.concurrency.in-flight") > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, gauge("produktapi.concurrency.in-flight"));
+    }
+
+    @Test
+    void whenMoreExportsThanTheReadLimitAreInFlight_thenPointReadsStillGetTheWholeLimit() throws Exception {
+
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch exporting = new CountDownLatch(3);
+        willAnswer(invocation -> {
+            exporting.countDown();
+            assertTrue(release.await(30, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).given(productExportService).exportProducts(any(), any());
+        List<CompletableFuture<HttpResponse<String>>> exports = List.of(
+                send("GET", "/products/export"), send("GET", "/products/export"), send("GET", "/products/export"));
+        assertTrue(exporting.await(30, TimeUnit.SECONDS));
+        double rejectedBefore = meterRegistry.get("produktapi.concurrency.rejected").tag("name", "read")
+                .functionCounter().count();
+
+        // when
+        double inFlightWhileExporting = gauge("produktapi.concurrency.in-flight");
+        HttpResponse<String> first = send("GET", "/products/1").get(30, TimeUnit.SECONDS);
+        HttpResponse<String> second = send("GET", "/products/2").get(30, TimeUnit.SECONDS);
+        release.countDown();
+
+        // then
+        assertEquals(0, inFlightWhileExporting);
+        assertEquals(200, first.statusCode());
+        assertEquals(200, second.statusCode());
+        for (CompletableFuture<HttpResponse<String>> response : exports) {
+            assertEquals(200, response.get(30, TimeUnit.SECONDS).statusCode());
+        }
+        assertEquals(2, gauge("produktapi.concurrency.limit"));
+        assertEquals(rejectedBefore, meterRegistry.get("produktapi.concurrency.rejected").tag("name", "read")
+                .functionCounter().count());
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String method, String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("name", "read").gauge().value();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.config.MessageFormatConfiguration;
+import com.example.produktapi.config.ProductProtobufHttpMessageConverter;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ContentNegotiationTest {
+
+    private final ProductProtobufHttpMessageConverter protobuf =
+            new ProductProtobufHttpMessageConverter(new SimpleMeterRegistry());
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void whenTheClientAcceptsAnything_thenJsonIsReturned() {
+
+        // when
+        ResponseEntity<String> response = exchange("/products/1", MediaType.ALL, null);
+
+        // then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+    }
+
+    @Test
+    void whenTheClientAcceptsCborOrSmile_thenTheProductIsReturnedInThatFormat() throws Exception {
+
+        // given
+        Product stored = productRepository.findById(1).orElseThrow();
+
+        // when
+        byte[] cbor = restTemplate.exchange("/products/1", HttpMethod.GET,
+                new HttpEntity<>(headers(MediaType.APPLICATION_CBOR, null)), byte[].class).getBody();
+        byte[] smile = restTemplate.exchange("/products/1", HttpMethod.GET,
+                new HttpEntity<>(headers(MessageFormatConfiguration.APPLICATION_SMILE, null)), byte[].class).getBody();
+
+        // then
+        assertEquals(stored.getTitle(), new ObjectMapper(new CBORFactory()).readValue(cbor, Product.class).getTitle());
+        assertEquals(stored.getTitle(), new ObjectMapper(new SmileFactory()).readValue(smile, Product.class).getTitle());
+    }
+
+    @Test
+    void whenAProductIsPostedAsProtobuf_thenItIsStoredAndSearchReturnsItAsProtobuf() throws Exception {
+
+        // given
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        protobuf.writeTo(new Product("Protobuflampa", 12.5, "lampor", "lyser", "url"), body);
+        HttpHeaders headers = headers(ProductProtobufHttpMessageConverter.APPLICATION_PROTOBUF, null);
+        headers.setContentType(ProductProtobufHttpMessageConverter.APPLICATION_PROTOBUF);
+
+        // when
+        ResponseEntity<byte[]> created = restTemplate.exchange("/products", HttpMethod.POST,
+                new HttpEntity<>(body.toByteArray(), headers), byte[].class);
+        ResponseEntity<byte[]> found = restTemplate.exchange("/products/search?q=protobuflampa", HttpMethod.GET,
+                new HttpEntity<>(headers(ProductProtobufHttpMessageConverter.APPLICATION_PROTOBUF, null)), byte[].class);
+
+        // then
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        Product product = protobuf.readProduct(new ByteArrayInputStream(created.getBody()));
+        assertNotNull(product.getId());
+        assertEquals(12.5, product.getPrice());
+        List<Product> products = protobuf.readProducts(new ByteArrayInputStream(found.getBody()));
+        assertEquals(List.of(product.getId()), products.stream().map(Product::getId).toList());
+        productRepository.deleteById(product.getId());
+    }
+
+    @Test
+    void whenTheClientAcceptsGzip_thenOnlyResponsesAboveTheThresholdAreCompressed() {
+
+        // when
+        ResponseEntity<String> product = exchange("/products/1", MediaType.APPLICATION_JSON, "gzip");
+        ResponseEntity<String> page = exchange("/products?limit=100", MediaType.APPLICATION_JSON, "gzip");
+
+        // then
+        assertNull(product.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(product.getHeaders().getContentLength() > 0);
+        assertEquals("gzip", page.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private ResponseEntity<String> exchange(String uri, MediaType accept, String acceptEncoding) {
+        return restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers(accept, acceptEncoding)), String.class);
+    }
+
+    private static HttpHeaders headers(MediaType accept, String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        if (acceptEncoding != null) {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return headers;
+    }
+}
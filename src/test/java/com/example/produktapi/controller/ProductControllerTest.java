@@ -0,0 +1,199 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductPage;
+import com.example.produktapi.service.CatalogVersion;
+import com.example.produktapi.service.ProductChange;
+import com.example.produktapi.service.ProductChangedEvent;
+import com.example.produktapi.service.ProductExportService;
+import com.example.produktapi.service.ProductImportService;
+import com.example.produktapi.service.ProductIngestionQueue;
+import com.example.produktapi.service.ProductReadCoalescer;
+import com.example.produktapi.service.ProductSearchService;
+import com.example.produktapi.service.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.mockito.BDDMockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProductController.class)
+@Import({CatalogVersion.class, SimpleMeterRegistry.class})
+class ProductControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @MockBean
+    private ProductService productService;
+
+    @MockBean
+    private ProductExportService productExportService;
+
+    @MockBean
+    private ProductImportService productImportService;
+
+    @MockBean
+    private ProductSearchService productSearchService;
+
+    @MockBean
+    private ProductReadCoalescer productReadCoalescer;
+
+    @MockBean
+    private ProductIngestionQueue productIngestionQueue;
+
+    @Test
+    void whenTheCatalogIsUnchangedSinceTheClientsETag_thenListsAnswer304WithoutReadingProducts() throws Exception {
+
+        // given
+        String etag = catalogVersion.getETag();
+
+        // when
+        mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, etag))
+
+                // then
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void whenTheCatalogChangedSinceTheClientsETag_thenTheListIsReturnedWithANewETag() throws Exception {
+
+        // given
+        String etag = catalogVersion.getETag();
+        catalogVersion.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(1, 0))));
+        given(productService.getProductPage(null, null, null, null, null)).willReturn(new ProductPage<>(List.of(), null));
+
+        // when
+        mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, etag))
+
+                // then
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, catalogVersion.getETag()))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void whenBothFieldsAndViewAreGiven_thenAnswer400WithoutReadingProducts() throws Exception {
+
+        // when
+        mockMvc.perform(get("/products").param("fields", "id,title").param("view", "summary"))
+
+                // then
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Ange antingen fields eller view"));
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void whenTheProductVersionMatchesTheClientsETag_thenTheProductIsNotLoaded() throws Exception {
+
+        // given
+        given(productService.getProductVersion(1)).willReturn(3);
+
+        // when
+        mockMvc.perform(get("/products/1").header(HttpHeaders.IF_NONE_MATCH, productETag(1, 3)))
+
+                // then
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(productService, never()).getProductById(any());
+    }
+
+    @Test
+    void whenAProductIsRequestedWithoutETag_thenItsVersionIsReturnedAsETag() throws Exception {
+
+        // given
+        given(productService.getProductVersion(1)).willReturn(4);
+        given(productService.getProductById(1)).willReturn(product(1, 4));
+
+        // when
+        mockMvc.perform(get("/products/1"))
+
+                // then
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, productETag(1, 4)))
+                .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void whenTheProductChangesAfterItsVersionWasRead_thenTheETagComesFromTheProductThatIsSent() throws Exception {
+
+        // given
+        given(productService.getProductVersion(1)).willReturn(4);
+        given(productService.getProductById(1)).willReturn(product(1, 5));
+
+        // when
+        mockMvc.perform(get("/products/1").header(HttpHeaders.IF_NONE_MATCH, productETag(1, 3)))
+
+                // then
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.ETAG, productETag(1, 5)))
+                .andExpect(jsonPath("$.version").value(5));
+    }
+
+    @Test
+    void whenIfMatchHasTheTagOfAnotherProduct_thenTheDeleteIsRejected() throws Exception {
+
+        // when
+        mockMvc.perform(delete("/products/1").header(HttpHeaders.IF_MATCH, productETag(2, 3)))
+
+                // then
+                .andExpect(status().isConflict());
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void whenTheClientPrefersAnAsyncResponse_thenTheQueuedProductIsAcceptedWithItsStatusUrl() throws Exception {
+
+        // given
+        ProductIngestionQueue.Ingestion ingestion = mock(ProductIngestionQueue.Ingestion.class);
+        given(ingestion.getTicket()).willReturn("abc-1");
+        given(productIngestionQueue.isEnabled()).willReturn(true);
+        given(productIngestionQueue.submit(any())).willReturn(ingestion);
+
+        // when
+        MvcResult result = mockMvc.perform(post("/products")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Ny\",\"price\":1.0,\"category\":\"electronics\"}"))
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/products/ingestions/abc-1"))
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+        verify(productService, never()).addProduct(any());
+    }
+
+    private String productETag(Integer id, Integer version) {
+        return "\"" + catalogVersion.getInstance() + "-" + id + "-" + version + "\"";
+    }
+
+    private static Product product(Integer id, Integer version) {
+        Product product = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        product.setId(id);
+        product.setVersion(version);
+        return product;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.produktapi.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
+class PrometheusEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void whenProductsHaveBeenRead_thenTheScrapeContainsRequestQueryPoolHibernateCacheAndErrorMetrics() {
+
+        // given
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/products/1", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/products?limit=5", String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/products/999999", String.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity("/products?limit=0", String.class).getStatusCode());
+
+        // when
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        // then
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String metrics = scrape.getBody();
+        assertNotNull(metrics);
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{") && metrics.contains("uri=\"/products/{id}\""));
+        assertTrue(metrics.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(metrics.contains("method=\"findById\""));
+        assertTrue(metrics.contains("http_server_serialization_seconds_bucket{"));
+        assertTrue(metrics.contains("http_server_response_size_bytes_bucket{"));
+        assertTrue(metrics.contains("hikaricp_connections_active"));
+        assertTrue(metrics.contains("hibernate_query_executions_total"));
+        assertTrue(metrics.contains("hibernate_entities_loads_total"));
+        assertTrue(metrics.contains("hibernate_flushes_total"));
+        assertTrue(metrics.contains("cache_gets_total{cache=\"products\""));
+        assertTrue(metrics.contains("produktapi_errors_total{exception=\"EntityNotFoundException\",status=\"404\""));
+        assertTrue(metrics.contains("produktapi_errors_total{exception=\"BadRequestException\",status=\"400\""));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.produktapi.controller;
+
+import com.example.produktapi.config.ReactiveReadServer;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import com.example.produktapi.repository.ReactiveProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"produktapi.reactive.enabled=true", "produktapi.reactive.port=0"})
+class ReactiveProductHandlerTest {
+
+    @Autowired
+    private ReactiveReadServer reactiveReadServer;
+
+    @Autowired
+    private ReactiveProductRepository reactiveProductRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToServer().baseUrl("http://localhost:" + reactiveReadServer.getPort()).build();
+    }
+
+    @Test
+    void whenAllProductsAreStreamedAsNdjson_thenEveryProductArrivesInIdOrder() {
+
+        // given
+        List<Product> stored = productRepository.findAll();
+
+        // when
+        List<Product> streamed = webTestClient.get().uri("/products")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .returnResult(Product.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // then
+        assertNotNull(streamed);
+        assertEquals(stored.size(), streamed.size());
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue(streamed.get(i - 1).getId() < streamed.get(i).getId());
+        }
+    }
+
+    @Test
+    void whenAProductIsSavedThroughJpa_thenTheReactiveApiReadsIt() {
+
+        // given
+        Product saved = productRepository.save(new Product("Reaktiv lampa", 99.0, "lampor", "lyser", "url"));
+
+        // when / then
+        webTestClient.get().uri("/products/{id}", saved.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Reaktiv lampa")
+                .jsonPath("$.version").isEqualTo(saved.getVersion());
+        webTestClient.get().uri("/products/categories/{category}", "lampor")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1);
+
+        productRepository.deleteById(saved.getId());
+    }
+
+    @Test
+    void whenAProductDoesNotExist_thenAnswer404WithTheSameMessageAsTheServletApi() {
+
+        webTestClient.get().uri("/products/{id}", 999_999)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Produkt med id 999999 hittades inte");
+    }
+
+    @Test
+    void whenTheSubscriberRequestsOneRowAtATime_thenRowsArriveOnlyAsRequested() {
+
+        StepVerifier.create(reactiveProductRepository.findAll(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(1)
+                .expectNextMatches(product -> product.getId() != null)
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+    }
+}
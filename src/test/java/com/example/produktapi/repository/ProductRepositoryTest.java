@@ -1,10 +1,21 @@
 package com.example.produktapi.repository;
 
 import com.example.produktapi.model.Product;
+import org.hibernate.exception.ConstraintViolationException;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductField;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductSort;
+import com.example.produktapi.model.ProductSummary;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
@@ -128,4 +139,118 @@ class ProductRepositoryTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void whenPagingThroughAllProductsSortedByPrice_thenEveryProductIsReturnedOnceInPriceOrder() {
+
+        // given
+        underTest.save(new Product("Samma pris 1", 10.0, "electronics", "bra att ha", "url"));
+        underTest.save(new Product("Samma pris 2", 10.0, "electronics", "bra att ha", "url"));
+        List<Product> expected = new ArrayList<>(underTest.findAll());
+        expected.sort(Comparator.comparing(Product::getPrice).thenComparing(Product::getId));
+
+        // when
+        List<Product> paged = new ArrayList<>();
+        ProductCursor cursor = null;
+        List<Product> page;
+        do {
+            page = underTest.findPage(ProductFilter.all(), ProductSort.PRICE, cursor, 3);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                cursor = ProductCursor.after(page.get(page.size() - 1), ProductSort.PRICE);
+            }
+        } while (page.size() == 3);
+
+        // then
+        assertEquals(expected.stream().map(Product::getId).toList(), paged.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    void whenFindPageIsCalledWithACategoryAndCursor_thenOnlyLaterProductsInThatCategoryAreReturned() {
+
+        // given
+        String category = "electronics";
+        Product first = underTest.save(new Product("En Dator", 25000.0, category, "bra att ha", "url"));
+        Product second = underTest.save(new Product("En Skärm", 2500.0, category, "bra att ha", "url"));
+
+        // when
+        List<Product> page = underTest.findPage(ProductFilter.category(category), ProductSort.ID,
+                ProductCursor.after(first, ProductSort.ID), 100);
+
+        // then
+        assertTrue(page.stream().allMatch(p -> category.equals(p.getCategory())));
+        assertTrue(page.stream().allMatch(p -> p.getId() > first.getId()));
+        assertTrue(page.stream().anyMatch(p -> p.getId().equals(second.getId())));
+    }
+
+    @Test
+    void whenFindPageIsCalledWithSeveralCategoriesAndAPriceRange_thenOnlyMatchingProductsAreReturned() {
+
+        // given
+        ProductFilter filter = new ProductFilter(List.of("electronics", "jewelery"), 10.0, 700.0);
+
+        // when
+        List<Product> page = underTest.findPage(filter, ProductSort.PRICE, null, 100);
+
+        // then
+        List<Product> expected = underTest.findAll().stream()
+                .filter(p -> filter.getCategories().contains(p.getCategory()))
+                .filter(p -> filter.matchesPrice(p.getPrice()))
+                .sorted(Comparator.comparing(Product::getPrice).thenComparing(Product::getId))
+                .toList();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.stream().map(Product::getId).toList(), page.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    void whenASummaryPageIsReadAfterACursor_thenItHoldsTheSameProductsAsTheFullPage() {
+
+        // given
+        List<Product> first = underTest.findPage(ProductFilter.all(), ProductSort.TITLE, null, 3);
+        ProductCursor cursor = ProductCursor.after(first.get(2), ProductSort.TITLE);
+
+        // when
+        List<ProductSummary> summaries = underTest.findSummaryPage(ProductFilter.all(), ProductSort.TITLE, cursor, 5);
+
+        // then
+        List<Product> expected = underTest.findPage(ProductFilter.all(), ProductSort.TITLE, cursor, 5);
+        assertEquals(expected.stream().map(Product::getId).toList(),
+                summaries.stream().map(ProductSummary::getId).toList());
+        assertEquals(expected.get(0).getTitle(), summaries.get(0).getTitle());
+        assertEquals(expected.get(0).getImage(), summaries.get(0).getImage());
+    }
+
+    @Test
+    void whenAFieldsPageIsRead_thenEachRowHoldsTheFieldsTheIdAndTheSortPropertyOnly() {
+
+        // given
+        ProductFilter filter = ProductFilter.category("electronics");
+
+        // when
+        List<Map<String, Object>> rows = underTest.findFieldsPage(filter, ProductSort.PRICE, null, 100,
+                EnumSet.of(ProductField.TITLE));
+
+        // then
+        List<Product> expected = underTest.findPage(filter, ProductSort.PRICE, null, 100);
+        assertFalse(rows.isEmpty());
+        assertEquals(expected.stream().map(Product::getId).toList(), rows.stream().map(row -> row.get("id")).toList());
+        assertEquals(List.of("id", "title", "price"), List.copyOf(rows.get(0).keySet()));
+        assertEquals(expected.get(0).getPrice(), rows.get(0).get("price"));
+    }
+
+    @Test
+    void whenSavingAProductWithAnExistingTitle_thenTheUniqueTitleConstraintIsViolated() {
+
+        // given
+        String title = "En dator";
+        underTest.save(new Product(title, 25000.0, "electronics", "bra att ha", "url"));
+
+        // when
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class,
+                () -> underTest.saveAndFlush(new Product(title, 100.0, "electronics", "en till", "url")));
+
+        // then
+        ConstraintViolationException cause = assertInstanceOf(ConstraintViolationException.class, exception.getCause());
+        assertTrue(cause.getConstraintName().toLowerCase().contains("uk_product_title"));
+    }
+
+}
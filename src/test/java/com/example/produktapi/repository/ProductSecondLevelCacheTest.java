@@ -0,0 +1,209 @@
+package com.example.produktapi.repository;
+
+import com.example.produktapi.config.SecondLevelCacheConfiguration;
+import com.example.produktapi.config.SecondLevelCacheProperties;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.service.CatalogSnapshots;
+import com.example.produktapi.service.CategoryStatistics;
+import com.example.produktapi.service.ProductCache;
+import com.example.produktapi.service.ProductCacheProperties;
+import com.example.produktapi.service.ProductChangeLog;
+import com.example.produktapi.service.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the JDBC statements repeated reads send with Hibernate's second-level cache on and off. Every
+ * repository call runs in a transaction and persistence context of its own, like reads of separate requests.
+ */
+class ProductSecondLevelCacheTest {
+
+    @Nested
+    @TestPropertySource(properties = "produktapi.second-level-cache.enabled=true")
+    class WithTheCache extends StatementCounts {
+
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        @Override
+        int statementsForTheSameReadTwice() {
+            return 1;
+        }
+
+        @Test
+        void whenAProductIsUpdatedThroughTheService_thenItAndTheCategoriesItLeftAndJoinedAreReadAgain() {
+
+            // given
+            productRepository.findById(5).orElseThrow();
+            assertTrue(ids(productRepository.findByCategory("jewelery")).contains(5));
+            assertFalse(ids(productRepository.findByCategory("women's clothing")).contains(5));
+            Product update = new Product("Flyttat armband", 700.0, "women's clothing", "nu för damer", "url");
+
+            // when
+            productService.updateProduct(update, 5);
+
+            // then
+            statistics.clear();
+            assertEquals("Flyttat armband", productRepository.findById(5).orElseThrow().getTitle());
+            assertFalse(ids(productRepository.findByCategory("jewelery")).contains(5));
+            assertTrue(ids(productRepository.findByCategory("women's clothing")).contains(5));
+            assertEquals(3, statistics.getPrepareStatementCount());
+        }
+
+        @Test
+        void whenAReadThatBeganBeforeAnUpdateLoadsTheOldRowAfterIt_thenNeitherTheRowNorItsCategoryIsCached() {
+
+            // given
+            TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+            snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            Product update = new Product("Flyttad ring", 700.0, "women's clothing", "nu för damer", "url");
+
+            // when
+            Product readDuringTheUpdate = snapshot.execute(status -> {
+                // from its first statement on the transaction sees the catalog as it was then
+                productRepository.findAllCategoryPrices();
+                CompletableFuture.runAsync(() -> productService.updateProduct(update, 7)).join();
+                assertTrue(ids(productRepository.findByCategory("jewelery")).contains(7));
+                return productRepository.findById(7).orElseThrow();
+            });
+
+            // then
+            assertNotEquals("Flyttad ring", readDuringTheUpdate.getTitle());
+            assertEquals("Flyttad ring", productRepository.findById(7).orElseThrow().getTitle());
+            assertFalse(ids(productRepository.findByCategory("jewelery")).contains(7));
+        }
+
+        @Test
+        void whenAProductIsDeletedThroughTheService_thenItIsGoneFromTheCacheAndItsCategory() {
+
+            // given
+            productRepository.findById(6).orElseThrow();
+            assertTrue(ids(productRepository.findByCategory("jewelery")).contains(6));
+
+            // when
+            productService.deleteProduct(6);
+
+            // then
+            assertTrue(productRepository.findById(6).isEmpty());
+            assertFalse(ids(productRepository.findByCategory("jewelery")).contains(6));
+        }
+
+        @Test
+        void whenAProductIsAddedThroughTheService_thenItIsCachedAndItsCategoryIsReadAgain() {
+
+            // given
+            productRepository.findByCategory("electronics");
+            Product created = productService.addProduct(
+                    new Product("Ny skärm", 1999.0, "electronics", "skarp", "url"));
+
+            // when
+            statistics.clear();
+            Product found = productRepository.findById(created.getId()).orElseThrow();
+            List<Product> electronics = productRepository.findByCategory("electronics");
+
+            // then
+            assertEquals("Ny skärm", found.getTitle());
+            assertTrue(ids(electronics).contains(created.getId()));
+            assertEquals(1, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "produktapi.second-level-cache.enabled=false")
+    class WithoutTheCache extends StatementCounts {
+
+        @Override
+        int statementsForTheSameReadTwice() {
+            return 2;
+        }
+    }
+
+    @DataJpaTest(showSql = false)
+    @Import({SecondLevelCacheConfiguration.class, ProductService.class, ProductCache.class, CatalogSnapshots.class,
+            CategoryStatistics.class, ProductChangeLog.class})
+    @EnableConfigurationProperties({SecondLevelCacheProperties.class, ProductCacheProperties.class})
+    @TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    abstract static class StatementCounts {
+
+        @Autowired
+        ProductRepository productRepository;
+
+        @Autowired
+        ProductService productService;
+
+        @Autowired
+        private EntityManagerFactory entityManagerFactory;
+
+        Statistics statistics;
+
+        abstract int statementsForTheSameReadTwice();
+
+        @BeforeEach
+        void startCold() {
+            SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+            sessionFactory.getCache().evictAllRegions();
+            statistics = sessionFactory.getStatistics();
+            statistics.clear();
+        }
+
+        @Test
+        void whenAProductIsFoundByIdTwice_thenTheSecondTimeCostsNoStatementWithTheCache() {
+
+            // when
+            Product first = productRepository.findById(1).orElseThrow();
+            Product second = productRepository.findById(1).orElseThrow();
+
+            // then
+            assertEquals(first.getTitle(), second.getTitle());
+            assertEquals(statementsForTheSameReadTwice(), statistics.getPrepareStatementCount());
+        }
+
+        @Test
+        void whenACategoryIsReadTwice_thenTheSecondTimeCostsNoStatementWithTheCache() {
+
+            // when
+            List<Product> first = productRepository.findByCategory("electronics");
+            List<Product> second = productRepository.findByCategory("electronics");
+
+            // then
+            assertEquals(ids(first), ids(second));
+            assertEquals(statementsForTheSameReadTwice(), statistics.getPrepareStatementCount());
+        }
+
+        @Test
+        void whenTheCategoriesAreListedTwice_thenTheSecondTimeCostsNoStatementWithTheCache() {
+
+            // when
+            List<String> first = productRepository.findAllCategories();
+            List<String> second = productRepository.findAllCategories();
+
+            // then
+            assertEquals(first, second);
+            assertEquals(statementsForTheSameReadTwice(), statistics.getPrepareStatementCount());
+        }
+
+        static List<Integer> ids(List<Product> products) {
+            return products.stream().map(Product::getId).toList();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductSort;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    private final CatalogSnapshot underTest = CatalogSnapshot.of(List.of(
+            product(3, "Skärm", 2500.0, "electronics"),
+            product(1, "Dator", 25000.0, "electronics"),
+            product(2, "Ring", 695.0, "jewelery"),
+            product(4, "Halsband", null, "jewelery"),
+            product(5, "Armband", 695.0, "jewelery")));
+
+    @Test
+    void whenFindByIdIsCalled_thenAFreshCopyOfTheStoredProductIsReturned() {
+
+        // when
+        Product product = underTest.findById(2);
+
+        // then
+        assertEquals("Ring", product.getTitle());
+        assertEquals(695.0, product.getPrice());
+        assertEquals("jewelery", product.getCategory());
+        assertNotSame(product, underTest.findById(2));
+        assertNull(underTest.findById(42));
+    }
+
+    @Test
+    void whenPagingByPriceWithinACategory_thenNullsComeFirstAndTiesAreOrderedById() {
+
+        // given
+        List<Integer> ids = new ArrayList<>();
+        ProductCursor cursor = null;
+        List<Product> page;
+
+        // when
+        do {
+            page = underTest.findPage(ProductFilter.category("jewelery"), ProductSort.PRICE, cursor, 1);
+            page.forEach(product -> ids.add(product.getId()));
+            if (!page.isEmpty()) {
+                cursor = ProductCursor.after(page.get(0), ProductSort.PRICE);
+            }
+        } while (!page.isEmpty());
+
+        // then
+        assertEquals(List.of(4, 2, 5), ids);
+    }
+
+    @Test
+    void whenPagingWithSeveralCategoriesAndAPriceRange_thenRowsOutsideTheFilterAreSkipped() {
+
+        // given
+        ProductFilter filter = new ProductFilter(List.of("electronics", "jewelery"), 600.0, 3000.0);
+
+        // when
+        List<Product> first = underTest.findPage(filter, ProductSort.PRICE, null, 2);
+        List<Product> rest = underTest.findPage(filter, ProductSort.PRICE,
+                ProductCursor.after(first.get(1), ProductSort.PRICE), 2);
+
+        // then
+        assertEquals(List.of(2, 5), first.stream().map(Product::getId).toList());
+        assertEquals(List.of(3), rest.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    void whenFindAllCategoriesIsCalled_thenEveryCategoryIsReturnedOnce() {
+
+        // then
+        assertEquals(List.of("electronics", "jewelery"), underTest.findAllCategories());
+        assertEquals(List.of(1, 3), underTest.findByCategory("electronics").stream().map(Product::getId).toList());
+    }
+
+    @Test
+    void whenChangesAreApplied_thenANewSnapshotReflectsThemAndTheOldOneIsUnchanged() {
+
+        // given
+        Product moved = product(1, "Dator", 20000.0, "computers");
+
+        // when
+        CatalogSnapshot next = underTest.apply(List.of(
+                ProductChange.updated(underTest.findById(1), moved),
+                ProductChange.deleted(3, null),
+                ProductChange.created(product(6, "Klocka", 1500.0, "jewelery"))));
+
+        // then
+        assertEquals(5, underTest.size());
+        assertEquals(25000.0, underTest.findById(1).getPrice());
+        assertEquals(5, next.size());
+        assertEquals("computers", next.findById(1).getCategory());
+        assertNull(next.findById(3));
+        assertEquals(List.of("computers", "jewelery"), next.findAllCategories());
+        assertTrue(next.findByCategory("electronics").isEmpty());
+    }
+
+    @Test
+    void whenManyChangesAreApplied_thenTheSnapshotMatchesOneBuiltFromScratch() {
+
+        // given
+        Random random = new Random(42);
+        String[] categories = {"electronics", "jewelery", "computers", "books", null};
+        Map<Integer, Product> rows = new HashMap<>();
+        for (int id = 1; id <= 200; id++) {
+            rows.put(id, product(id, "Titel " + random.nextInt(50), random.nextInt(10) == 0 ? null
+                    : (double) random.nextInt(1000), categories[random.nextInt(categories.length)]));
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.of(rows.values());
+
+        // when
+        for (int round = 0; round < 50; round++) {
+            List<ProductChange> changes = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(5); i++) {
+                int id = 1 + random.nextInt(250);
+                Product after = product(id, "Titel " + random.nextInt(50), (double) random.nextInt(1000),
+                        categories[random.nextInt(categories.length)]);
+                if (!rows.containsKey(id)) {
+                    changes.add(ProductChange.created(after));
+                    rows.put(id, after);
+                } else if (random.nextBoolean()) {
+                    changes.add(ProductChange.deleted(id, rows.remove(id)));
+                } else {
+                    changes.add(ProductChange.updated(rows.put(id, after), after));
+                }
+            }
+            snapshot = snapshot.apply(changes);
+        }
+
+        // then
+        CatalogSnapshot rebuilt = CatalogSnapshot.of(rows.values());
+        assertEquals(rebuilt.findAllCategories(), snapshot.findAllCategories());
+        for (ProductSort sort : ProductSort.values()) {
+            assertEquals(ids(rebuilt.findPage(ProductFilter.all(), sort, null, 1000)),
+                    ids(snapshot.findPage(ProductFilter.all(), sort, null, 1000)));
+            for (String category : rebuilt.findAllCategories()) {
+                assertEquals(ids(rebuilt.findPage(ProductFilter.category(category), sort, null, 1000)),
+                        ids(snapshot.findPage(ProductFilter.category(category), sort, null, 1000)));
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    private static Product product(Integer id, String title, Double price, String category) {
+        Product product = new Product(title, price, category, "bra att ha", "url");
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.CategoryStats;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.CategoryPrice;
+import com.example.produktapi.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryStatisticsTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private CategoryStatistics underTest;
+
+    @BeforeEach
+    void load() {
+        given(productRepository.findAllCategoryPrices()).willReturn(List.of(
+                row("electronics", 25000.0),
+                row("electronics", 2500.0),
+                row("jewelery", 695.0),
+                row("jewelery", 168.0),
+                row("jewelery", null)));
+        underTest = new CategoryStatistics(productRepository, new ProductChangeLog(productRepository));
+        underTest.load();
+    }
+
+    @Test
+    void whenStatsAreRequested_thenEveryCategoryHasItsCountAndPriceAggregates() {
+
+        // when
+        List<CategoryStats> stats = underTest.getStats();
+
+        // then
+        assertEquals(List.of("electronics", "jewelery"), stats.stream().map(CategoryStats::getCategory).toList());
+        CategoryStats jewelery = stats.get(1);
+        assertEquals(3, jewelery.getCount());
+        assertEquals(168.0, jewelery.getMinPrice());
+        assertEquals(695.0, jewelery.getMaxPrice());
+        assertEquals(431.5, jewelery.getAveragePrice());
+    }
+
+    @Test
+    void whenCountingWithinAPriceRange_thenBoundsAreInclusiveAndProductsWithoutPriceAreLeftOut() {
+
+        // then
+        assertEquals(Map.of("electronics", 2, "jewelery", 3), underTest.countByCategory(null, null));
+        assertEquals(Map.of("electronics", 1, "jewelery", 2), underTest.countByCategory(168.0, 2500.0));
+        assertEquals(Map.of("electronics", 2), underTest.countByCategory(1000.0, null));
+    }
+
+    @Test
+    void whenProductsChange_thenTheStatsFollowWithoutReadingTheTableAgain() {
+
+        // given
+        Product before = product(3, "jewelery", 695.0);
+        Product after = product(3, "electronics", 100.0);
+        Product created = product(6, "books", 10.0);
+
+        // when
+        underTest.onProductsChanged(new ProductChangedEvent(List.of(
+                ProductChange.updated(before, after),
+                ProductChange.created(created),
+                ProductChange.deleted(4, product(4, "jewelery", 168.0)))));
+
+        // then
+        verify(productRepository, times(1)).findAllCategoryPrices();
+        assertEquals(Map.of("books", 1, "electronics", 3, "jewelery", 1), underTest.countByCategory(null, null));
+        CategoryStats electronics = underTest.getStats().get(1);
+        assertEquals(100.0, electronics.getMinPrice());
+        assertEquals(25000.0, electronics.getMaxPrice());
+        assertEquals(9200.0, electronics.getAveragePrice());
+        CategoryStats jewelery = underTest.getStats().get(2);
+        assertEquals(1, jewelery.getCount());
+        assertNull(jewelery.getMinPrice());
+    }
+
+    @Test
+    void whenAWriteIsInFlightDuringTheLoad_thenTheLoadWaitsAndCountsItOnce() throws Exception {
+
+        // given
+        ProductChangeLog productChangeLog = new ProductChangeLog(productRepository);
+        CategoryStatistics statistics = new CategoryStatistics(productRepository, productChangeLog);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> productChangeLog.write(() -> {
+            writing.countDown();
+            await(committed);
+            statistics.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(6, "books", 10.0))));
+            return null;
+        }));
+        writing.await();
+        given(productRepository.findAllCategoryPrices()).willReturn(List.of(row("books", 10.0)));
+
+        // when
+        CompletableFuture<Void> load = CompletableFuture.runAsync(statistics::load);
+
+        // then
+        assertThrows(TimeoutException.class, () -> load.get(200, TimeUnit.MILLISECONDS));
+        committed.countDown();
+        write.get(5, TimeUnit.SECONDS);
+        load.get(5, TimeUnit.SECONDS);
+        assertEquals(Map.of("books", 1), statistics.countByCategory(null, null));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Product product(int id, String category, Double price) {
+        Product product = new Product("Produkt " + id, price, category, "bra", "url");
+        product.setId(id);
+        return product;
+    }
+
+    private static CategoryPrice row(String category, Double price) {
+        return new CategoryPrice() {
+            @Override
+            public String getCategory() {
+                return category;
+            }
+
+            @Override
+            public Double getPrice() {
+                return price;
+            }
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCacheTest {
+
+    private final ProductCache underTest = new ProductCache(new ProductCacheProperties());
+
+    @Test
+    void whenAProductIsReadTwice_thenItIsLoadedOnceAndCountedAsOneMissAndOneHit() {
+
+        // given
+        AtomicInteger loads = new AtomicInteger();
+        Product product = product(1, "electronics");
+
+        // when
+        underTest.getProduct(1, id -> { loads.incrementAndGet(); return product; });
+        Product cached = underTest.getProduct(1, id -> { loads.incrementAndGet(); return product; });
+
+        // then
+        assertEquals(product, cached);
+        assertEquals(1, loads.get());
+        assertEquals(1L, underTest.getStats().get("products").get("hits"));
+        assertEquals(1L, underTest.getStats().get("products").get("misses"));
+    }
+
+    @Test
+    void whenAProductIsMovedToAnotherCategory_thenBothCategoriesAndTheProductAreInvalidatedButNotOtherCategories() {
+
+        // given
+        Product before = product(1, "electronics");
+        Product after = product(1, "jewelery");
+        underTest.getProduct(1, id -> before);
+        underTest.getCategoryPage("electronics", null, null, null, this::emptyPage);
+        underTest.getCategoryPage("jewelery", null, null, null, this::emptyPage);
+        underTest.getCategoryPage("men's clothing", null, null, null, this::emptyPage);
+
+        // when
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.updated(before, after)));
+
+        // then
+        AtomicInteger loads = new AtomicInteger();
+        underTest.getProduct(1, id -> { loads.incrementAndGet(); return after; });
+        underTest.getCategoryPage("electronics", null, null, null, () -> { loads.incrementAndGet(); return emptyPage(); });
+        underTest.getCategoryPage("jewelery", null, null, null, () -> { loads.incrementAndGet(); return emptyPage(); });
+        underTest.getCategoryPage("men's clothing", null, null, null, () -> { loads.incrementAndGet(); return emptyPage(); });
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void whenAProductIsCreatedInAKnownCategory_thenTheCategoryListIsKept() {
+
+        // given
+        AtomicInteger loads = new AtomicInteger();
+        underTest.getCategories(() -> { loads.incrementAndGet(); return List.of("electronics"); });
+
+        // when
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(2, "electronics"))));
+        underTest.getCategories(() -> { loads.incrementAndGet(); return List.of("electronics"); });
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(3, "jewelery"))));
+        underTest.getCategories(() -> { loads.incrementAndGet(); return List.of("electronics", "jewelery"); });
+
+        // then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void whenReplicasHaveCaughtUp_thenWhatWasReadFromThemBeforeIsLoadedAgain() {
+
+        // given
+        Product stale = product(1, "electronics");
+        underTest.getProduct(1, id -> stale);
+        underTest.getProduct(2, id -> product(2, "electronics"));
+
+        // when
+        underTest.onReplicasSynced(new ReplicasSyncedEvent(List.of(1)));
+
+        // then
+        AtomicInteger loads = new AtomicInteger();
+        underTest.getProduct(1, id -> { loads.incrementAndGet(); return product(1, "jewelery"); });
+        underTest.getProduct(2, id -> { loads.incrementAndGet(); return product(2, "electronics"); });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void whenAClientReadsItsOwnWrite_thenTheCacheIsPassedBy() {
+
+        // given
+        underTest.getProduct(1, id -> product(1, "electronics"));
+        AtomicInteger loads = new AtomicInteger();
+
+        // when
+        ReadYourWrites.begin();
+        try {
+            underTest.getProduct(1, id -> { loads.incrementAndGet(); return product(1, "jewelery"); });
+        } finally {
+            ReadYourWrites.end();
+        }
+
+        // then
+        assertEquals(1, loads.get());
+        assertEquals("electronics", underTest.peekProduct(1).getCategory());
+    }
+
+    @Test
+    void whenTheCacheIsFull_thenEntriesAreEvicted() {
+
+        // given
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.setMaximumSize(10);
+        properties.setTimeToLive(Duration.ofMinutes(1));
+        ProductCache cache = new ProductCache(properties);
+
+        // when
+        for (int id = 0; id < 1000; id++) {
+            cache.getProduct(id, key -> product(key, "electronics"));
+        }
+        cache.getProduct(0, key -> product(key, "electronics"));
+
+        // then
+        assertTrue(cache.getStats().get("products").get("evictions").longValue() > 0);
+    }
+
+    private Product product(Integer id, String category) {
+        Product product = new Product("Computor", 35.0, category, "Description of item", "URL");
+        product.setId(id);
+        return product;
+    }
+
+    private ProductPage<Product> emptyPage() {
+        return new ProductPage<>(List.of(), null);
+    }
+}
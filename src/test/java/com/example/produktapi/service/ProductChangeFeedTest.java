@@ -0,0 +1,267 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductChangeFeedTest {
+
+    private final List<Runnable> pendingSends = new ArrayList<>();
+    private ProductChangeFeed underTest;
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void whenAChangeIsCommitted_thenEverySubscriberIsSentItAsAnEventNamedAfterTheChange() {
+
+        // given
+        underTest = feed(new ProductChangeFeedProperties(), Runnable::run);
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        underTest.subscribe(first, null);
+        underTest.subscribe(second, null);
+
+        // when
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(7))));
+
+        // then
+        assertEquals(1, first.events.size());
+        assertTrue(first.events.get(0).contains("event:created"));
+        assertTrue(first.events.get(0).contains("\"id\":7"));
+        assertEquals(first.events, second.events);
+    }
+
+    @Test
+    void whenASubscriberResumesWithLastEventId_thenOnlyTheChangesAfterItAreSent() {
+
+        // given
+        underTest = feed(new ProductChangeFeedProperties(), Runnable::run);
+        RecordingEmitter before = new RecordingEmitter();
+        underTest.subscribe(before, null);
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(1))));
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(2))));
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.deleted(1, product(1))));
+        String lastEventId = before.eventId(0);
+
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        underTest.subscribe(resumed, lastEventId);
+
+        // then
+        assertEquals(before.events.subList(1, 3), resumed.events);
+    }
+
+    @Test
+    void whenTheMissedChangesAreNoLongerKept_thenTheSubscriberIsToldToReload() {
+
+        // given
+        ProductChangeFeedProperties properties = new ProductChangeFeedProperties();
+        properties.setHistory(2);
+        underTest = feed(properties, Runnable::run);
+        RecordingEmitter before = new RecordingEmitter();
+        underTest.subscribe(before, null);
+        for (int id = 1; id <= 4; id++) {
+            underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(id))));
+        }
+
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        underTest.subscribe(resumed, before.eventId(0));
+        RecordingEmitter restarted = new RecordingEmitter();
+        underTest.subscribe(restarted, "annan-instans-3");
+
+        // then
+        assertEquals(1, resumed.events.size());
+        assertTrue(resumed.events.get(0).contains("event:" + ProductChangeFeed.RESET_EVENT));
+        assertTrue(restarted.events.get(0).contains("event:" + ProductChangeFeed.RESET_EVENT));
+    }
+
+    @Test
+    void whenASubscriberFallsBehindByMoreThanTheBuffer_thenItIsDisconnectedAndTheOthersKeepTheirChanges() {
+
+        // given
+        ProductChangeFeedProperties properties = new ProductChangeFeedProperties();
+        properties.setBufferSize(2);
+        // sends only run when the test says so, like a sender stuck on a slow client
+        underTest = feed(properties, pendingSends::add);
+        RecordingEmitter slow = new RecordingEmitter();
+        underTest.subscribe(slow, null);
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(1))));
+        RecordingEmitter fast = new RecordingEmitter();
+        underTest.subscribe(fast, null);
+
+        // when
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(2))));
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(3))));
+        pendingSends.forEach(Runnable::run);
+
+        // then
+        assertTrue(slow.completed);
+        assertEquals(1, underTest.getSubscriberCount());
+        assertEquals(2, fast.events.size());
+    }
+
+    @Test
+    void whenASubscriberIsDisconnectedWhileItsSendIsBlocked_thenPublishingDoesNotWaitForTheSend() throws Exception {
+
+        // given
+        ProductChangeFeedProperties properties = new ProductChangeFeedProperties();
+        properties.setBufferSize(1);
+        underTest = feed(properties, Executors.newCachedThreadPool());
+        BlockingEmitter stalled = new BlockingEmitter();
+        underTest.subscribe(stalled, null);
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(1))));
+        assertTrue(stalled.sending.await(10, TimeUnit.SECONDS));
+        underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(2))));
+
+        // when
+        CompletableFuture<Void> publishing = CompletableFuture.runAsync(
+                () -> underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(3)))));
+
+        // then
+        publishing.get(10, TimeUnit.SECONDS);
+        assertEquals(0, underTest.getSubscriberCount());
+        assertFalse(stalled.completed);
+        stalled.release.countDown();
+        // the sender completes the stream once its send has returned
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!stalled.completed && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(stalled.completed);
+        assertEquals(1, stalled.sent);
+    }
+
+    @Test
+    void whenTheOverflowPolicyIsDropOldest_thenASlowSubscriberKeepsTheNewestChanges() {
+
+        // given
+        ProductChangeFeedProperties properties = new ProductChangeFeedProperties();
+        properties.setBufferSize(2);
+        properties.setOverflow(ProductChangeFeedProperties.Overflow.DROP_OLDEST);
+        underTest = feed(properties, pendingSends::add);
+        RecordingEmitter slow = new RecordingEmitter();
+        underTest.subscribe(slow, null);
+
+        // when
+        for (int id = 1; id <= 5; id++) {
+            underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(id))));
+        }
+        pendingSends.forEach(Runnable::run);
+
+        // then
+        assertFalse(slow.completed);
+        assertEquals(2, slow.events.size());
+        assertTrue(slow.events.get(0).contains("\"id\":4"));
+        assertTrue(slow.events.get(1).contains("\"id\":5"));
+    }
+
+    @Test
+    void whenAHeartbeatIsDueWhileTheBufferFillsUp_thenItTakesNoChangesPlace() {
+
+        // given
+        ProductChangeFeedProperties properties = new ProductChangeFeedProperties();
+        properties.setBufferSize(2);
+        properties.setOverflow(ProductChangeFeedProperties.Overflow.DROP_OLDEST);
+        underTest = feed(properties, pendingSends::add);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        RecordingEmitter slow = new RecordingEmitter();
+        underTest.subscribe(slow, null);
+
+        // when
+        underTest.heartbeat();
+        for (int id = 1; id <= 3; id++) {
+            underTest.onProductsChanged(new ProductChangedEvent(ProductChange.created(product(id))));
+        }
+        pendingSends.forEach(Runnable::run);
+
+        // then
+        assertEquals(1.0, registry.get("produktapi.changes.overflows").functionCounter().count());
+        assertEquals(3, slow.events.size());
+        assertTrue(slow.events.get(0).contains("\"id\":2"));
+        assertTrue(slow.events.get(1).contains("\"id\":3"));
+        assertEquals(":\n\n", slow.events.get(2));
+    }
+
+    private static ProductChangeFeed feed(ProductChangeFeedProperties properties, Executor senders) {
+        return new ProductChangeFeed(properties, new ObjectMapper(), senders);
+    }
+
+    private static Product product(Integer id) {
+        Product product = new Product("Produkt " + id, 10.0, "electronics", "bra att ha", "url");
+        product.setId(id);
+        product.setVersion(0);
+        return product;
+    }
+
+    /**
+     * A client that stops reading: the first send blocks until the test releases it, holding the emitter's monitor
+     * like a real send blocked on a full socket does.
+     */
+    private static class BlockingEmitter extends SseEmitter {
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int sent;
+        private volatile boolean completed;
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                assertTrue(release.await(30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            sent++;
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+
+    /**
+     * Keeps the text of every event instead of writing it to a response.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        String eventId(int index) {
+            String event = events.get(index);
+            return event.substring(event.indexOf("id:") + 3, event.indexOf('\n', event.indexOf("id:")));
+        }
+    }
+}
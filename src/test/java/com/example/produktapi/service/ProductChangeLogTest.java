@@ -0,0 +1,169 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductChangeEntry;
+import com.example.produktapi.model.ProductChanges;
+import com.example.produktapi.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@Import({ProductService.class, ProductCache.class, CatalogSnapshots.class, CategoryStatistics.class,
+        ProductChangeLog.class})
+@EnableConfigurationProperties(ProductCacheProperties.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductChangeLogTest {
+
+    @Autowired
+    private ProductChangeLog underTest;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void whenProductsAreWrittenAfterAToken_thenOnlyTheyAreReturnedWithATombstoneForTheDeletedOne() {
+
+        // given
+        String token = latestToken();
+        Product created = productService.addProduct(new Product("Synkad", 1.0, "electronics", "ny", "url"));
+        Product deleted = productService.addProduct(new Product("Synkad och borttagen", 1.0, "electronics", "ny", "url"));
+        productService.updateProduct(new Product("Uppdaterad", 2.0, "jewelery", "ändrad", "url"), 4);
+        productService.deleteProduct(deleted.getId());
+
+        // when
+        ProductChanges changes = underTest.getChangesSince(token, null);
+
+        // then
+        List<ProductChangeEntry> entries = changes.getChanges();
+        assertEquals(List.of(created.getId(), 4, deleted.getId()), entries.stream().map(ProductChangeEntry::getId).toList());
+        assertEquals(List.of("CREATED", "UPDATED", "DELETED"), entries.stream().map(ProductChangeEntry::getType).toList());
+        assertEquals("Uppdaterad", entries.get(1).getProduct().getTitle());
+        assertNull(entries.get(2).getProduct());
+        assertFalse(changes.isMore());
+        assertTrue(underTest.getChangesSince(changes.getNextToken(), null).getChanges().isEmpty());
+    }
+
+    @Test
+    void whenThereAreMoreChangesThanTheLimit_thenTheyArePagedInChangeOrder() {
+
+        // given
+        String token = latestToken();
+        for (int i = 0; i < 5; i++) {
+            productService.addProduct(new Product("Sida " + i, 1.0, "electronics", "ny", "url"));
+        }
+
+        // when
+        ProductChanges first = underTest.getChangesSince(token, 3);
+        ProductChanges second = underTest.getChangesSince(first.getNextToken(), 3);
+
+        // then
+        assertTrue(first.isMore());
+        assertFalse(second.isMore());
+        assertEquals(List.of("Sida 0", "Sida 1", "Sida 2", "Sida 3", "Sida 4"),
+                List.of(first, second).stream().flatMap(page -> page.getChanges().stream())
+                        .map(change -> change.getProduct().getTitle()).toList());
+    }
+
+    @Test
+    void whenTheTokenIsFromAnotherRun_thenEveryProductIsReturnedAsAReset() {
+
+        // given
+        String token = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("annan-instans:3".getBytes(StandardCharsets.UTF_8));
+
+        // when
+        ProductChanges changes = underTest.getChangesSince(token, ProductService.MAX_PAGE_SIZE);
+
+        // then
+        assertTrue(changes.isReset());
+        assertEquals(productRepository.count(),
+                changes.getChanges().stream().filter(change -> change.getProduct() != null).count());
+    }
+
+    @Test
+    void whenAWriteIsStillInFlight_thenASyncDoesNotWaitForItAndStopsBeforeTheWritesAfterIt() throws Exception {
+
+        // given
+        String token = latestToken();
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    productService.updateProduct(new Product("Pågående", 3.0, "jewelery", "ändrad", "url"), 5);
+                    written.countDown();
+                    await(commit);
+                }));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        Product later = productService.addProduct(new Product("Skriven efter", 1.0, "electronics", "ny", "url"));
+
+        // when
+        ProductChanges duringWrite = CompletableFuture.supplyAsync(() -> underTest.getChangesSince(token, null))
+                .get(5, TimeUnit.SECONDS);
+        commit.countDown();
+        write.get(10, TimeUnit.SECONDS);
+        ProductChanges afterWrite = underTest.getChangesSince(duringWrite.getNextToken(), null);
+
+        // then
+        assertTrue(duringWrite.getChanges().isEmpty());
+        assertEquals(List.of(5, later.getId()), afterWrite.getChanges().stream()
+                .map(ProductChangeEntry::getId).toList());
+    }
+
+    @Test
+    void whenARowIsInsertedWithAVersionOtherThanTheFirst_thenItIsStillSyncedAsCreated() {
+
+        // given
+        String token = latestToken();
+        jdbcTemplate.update("INSERT INTO product (title, price, category, description, image, version) " +
+                "VALUES ('Inläst med version', 1.0, 'electronics', 'ny', 'url', 3)");
+
+        // when
+        ProductChanges changes = underTest.getChangesSince(token, null);
+
+        // then
+        assertEquals(List.of("CREATED"), changes.getChanges().stream().map(ProductChangeEntry::getType).toList());
+        assertEquals(3, changes.getChanges().get(0).getProduct().getVersion());
+    }
+
+    private String latestToken() {
+        ProductChanges changes = underTest.getChangesSince(null, ProductService.MAX_PAGE_SIZE);
+        while (changes.isMore()) {
+            changes = underTest.getChangesSince(changes.getNextToken(), ProductService.MAX_PAGE_SIZE);
+        }
+        return changes.getNextToken();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
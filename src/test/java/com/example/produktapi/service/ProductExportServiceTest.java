@@ -0,0 +1,115 @@
+package com.example.produktapi.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs in its own surefire execution with a small heap (see pom.xml), against a file based H2 database
+ * so that the table itself does not live on the heap. The export is several times larger than the heap,
+ * so it can only pass if products are streamed rather than collected.
+ */
+@Tag("constant-memory")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/export-test/db;CACHE_SIZE=8192;LAZY_QUERY_EXECUTION=1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.sql.init.mode=always"
+})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(ProductExportService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductExportServiceTest {
+
+    private static final int ROWS = 500_000;
+
+    @Autowired
+    private ProductExportService underTest;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seedLargeCatalog() {
+        jdbcTemplate.update("INSERT INTO product(title, price, category, description, image) " +
+                "SELECT 'Produkt ' || x, x * 0.5, 'kategori ' || MOD(x, 10), REPEAT('En bra produkt att ha. ', 10), 'url' " +
+                "FROM SYSTEM_RANGE(1, ?)", ROWS);
+    }
+
+    @Test
+    void whenExportingATableLargerThanTheHeapAsNdjson_thenEveryProductIsWrittenOnItsOwnLine() throws IOException {
+
+        // given
+        Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product", Integer.class);
+        CountingOutputStream out = new CountingOutputStream();
+
+        // when
+        long exported = underTest.exportProducts(out, ProductExportService.Format.NDJSON);
+
+        // then
+        assertEquals(total.longValue(), exported);
+        assertEquals(total.longValue(), out.lines);
+        assertEquals('{', out.first);
+        assertEquals('\n', out.last);
+        assertTrue(out.bytes > Runtime.getRuntime().maxMemory(),
+                "export should be larger than the heap to prove it is streamed");
+    }
+
+    @Test
+    void whenExportingATableLargerThanTheHeapAsJson_thenAJsonArrayIsWritten() throws IOException {
+
+        // given
+        CountingOutputStream out = new CountingOutputStream();
+
+        // when
+        long exported = underTest.exportProducts(out, ProductExportService.Format.JSON);
+
+        // then
+        assertTrue(exported >= ROWS);
+        assertEquals('[', out.first);
+        assertEquals(']', out.last);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long bytes;
+        long lines;
+        int first = -1;
+        int last = -1;
+
+        @Override
+        public void write(int b) {
+            if (first == -1) {
+                first = b;
+            }
+            last = b;
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.ImportItemResult;
+import com.example.produktapi.model.ImportResult;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@Import({ProductImportService.class, ProductService.class, ProductCache.class, CatalogSnapshots.class, CategoryStatistics.class,
+        ProductChangeLog.class})
+@EnableConfigurationProperties(ProductCacheProperties.class)
+@TestPropertySource(properties = {
+        "produktapi.import.chunk-size=500",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService underTest;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void whenImportingProductsWithDuplicateTitles_thenDuplicatesAreRejectedAndTheRestCreatedInInputOrder() {
+
+        // given
+        List<Product> products = List.of(
+                product("Import 1"),
+                product("Mens Cotton Jacket"),
+                product("Import 2"),
+                product("Import 1"),
+                product("Import 3"));
+
+        // when
+        ImportResult result = underTest.importProducts(products.iterator());
+
+        // then
+        assertEquals(3, result.getCreated());
+        assertEquals(2, result.getRejected());
+        assertEquals(List.of(ImportItemResult.Status.CREATED, ImportItemResult.Status.REJECTED,
+                        ImportItemResult.Status.CREATED, ImportItemResult.Status.REJECTED, ImportItemResult.Status.CREATED),
+                result.getItems().stream().map(ImportItemResult::getStatus).toList());
+        assertEquals(List.of(0, 1, 2, 3, 4), result.getItems().stream().map(ImportItemResult::getIndex).toList());
+        Integer id = result.getItems().get(2).getId();
+        assertEquals("Import 2", productRepository.findById(id).orElseThrow().getTitle());
+    }
+
+    @Test
+    void whenImportingManyProducts_thenInsertsAreSentInJdbcBatches() {
+
+        // given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<Product> products = IntStream.range(0, 1000).mapToObj(i -> product("Batch " + i)).toList();
+
+        // when
+        ImportResult result = underTest.importProducts(products.iterator());
+
+        // then
+        assertEquals(1000, result.getCreated());
+        assertEquals(1000, statistics.getEntityInsertCount());
+        // 20 batches of 50 inserts, 20 sequence calls for blocks of 50 ids and one title query per chunk
+        assertTrue(statistics.getPrepareStatementCount() < 100,
+                "statements prepared: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void whenTheInputCannotBeRead_thenProductsBeforeItAreStillImported() {
+
+        // given
+        List<Product> readable = new ArrayList<>(List.of(product("Före fel 1"), product("Före fel 2")));
+        Iterator<Product> products = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Product next() {
+                if (readable.isEmpty()) {
+                    throw new IllegalStateException("trasig json");
+                }
+                return readable.remove(0);
+            }
+        };
+
+        // when
+        ImportResult result = underTest.importProducts(products);
+
+        // then
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getRejected());
+        assertTrue(productRepository.findByTitle("Före fel 2").isPresent());
+    }
+
+    private static Product product(String title) {
+        return new Product(title, 10.0, "electronics", "bra att ha", "url");
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.exception.ServiceUnavailableException;
+import com.example.produktapi.exception.TooManyRequestsException;
+import com.example.produktapi.model.ImportItemResult;
+import com.example.produktapi.model.ImportResult;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductIngestion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+class ProductIngestionQueueTest {
+
+    private final ProductImportService productImportService = mock(ProductImportService.class);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger ids = new AtomicInteger(100);
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ProductIngestionQueue underTest;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        underTest.destroy();
+    }
+
+    @Test
+    void whenProductsArriveWhileABatchIsWritten_thenTheyAreAllWrittenTogetherInTheNextOne() throws Exception {
+
+        // given
+        underTest = queue(100);
+        willAnswer(this::blockFirstBatch).given(productImportService).importProducts(any());
+        ProductIngestionQueue.Ingestion first = underTest.submit(product("Först"));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        // when
+        List<ProductIngestionQueue.Ingestion> waiting = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            waiting.add(underTest.submit(product("Väntar " + i)));
+        }
+        release.countDown();
+
+        // then
+        assertNotNull(first.getResult().get(10, TimeUnit.SECONDS).getId());
+        for (ProductIngestionQueue.Ingestion ingestion : waiting) {
+            Product created = ingestion.getResult().get(10, TimeUnit.SECONDS);
+            assertEquals(ProductIngestion.Status.CREATED, underTest.getStatus(ingestion.getTicket()).getStatus());
+            assertEquals(created.getId(), underTest.getStatus(ingestion.getTicket()).getId());
+        }
+        assertEquals(List.of(1, 20), batchSizes);
+    }
+
+    @Test
+    void whenAProductIsRejected_thenItsRequestFailsWithTheReasonAndTheOthersInTheBatchAreCreated() throws Exception {
+
+        // given
+        underTest = queue(100);
+        willAnswer(invocation -> {
+            Iterator<Product> products = invocation.getArgument(0);
+            List<ImportItemResult> results = new ArrayList<>();
+            for (int index = 0; products.hasNext(); index++) {
+                Product product = products.next();
+                results.add(product.getTitle().equals("Dubblett")
+                        ? ImportItemResult.rejected(index, "En produkt med titeln: Dubblett finns redan")
+                        : ImportItemResult.created(index, ids.incrementAndGet()));
+            }
+            return new ImportResult(results);
+        }).given(productImportService).importProducts(any());
+
+        // when
+        ProductIngestionQueue.Ingestion duplicate = underTest.submit(product("Dubblett"));
+        ProductIngestionQueue.Ingestion unique = underTest.submit(product("Unik"));
+
+        // then
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> duplicate.getResult().get(10, TimeUnit.SECONDS));
+        assertInstanceOf(BadRequestException.class, failure.getCause());
+        unique.getResult().get(10, TimeUnit.SECONDS);
+        ProductIngestion status = underTest.getStatus(duplicate.getTicket());
+        assertEquals(ProductIngestion.Status.REJECTED, status.getStatus());
+        assertEquals("En produkt med titeln: Dubblett finns redan", status.getMessage());
+    }
+
+    @Test
+    void whenTheQueueIsFull_thenFurtherProductsArePushedBackInsteadOfQueued() throws Exception {
+
+        // given
+        underTest = queue(3);
+        willAnswer(this::blockFirstBatch).given(productImportService).importProducts(any());
+        underTest.submit(product("Skrivs"));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            underTest.submit(product("Köad " + i));
+        }
+
+        // when
+        TooManyRequestsException pushedBack = assertThrows(TooManyRequestsException.class,
+                () -> underTest.submit(product("För många")));
+
+        // then
+        assertEquals(new ProductIngestionProperties().getRetryAfter(), pushedBack.getRetryAfter());
+    }
+
+    @Test
+    void whenTheApplicationStops_thenQueuedProductsAreWrittenAndNewOnesRefused() throws Exception {
+
+        // given
+        underTest = queue(100);
+        willAnswer(this::blockFirstBatch).given(productImportService).importProducts(any());
+        underTest.submit(product("Skrivs"));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        ProductIngestionQueue.Ingestion queued = underTest.submit(product("Köad"));
+
+        // when
+        Thread stopping = new Thread(() -> {
+            try {
+                underTest.destroy();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopping.start();
+        Thread.sleep(100);
+        assertThrows(ServiceUnavailableException.class, () -> underTest.submit(product("För sent")));
+        release.countDown();
+        stopping.join(10_000);
+
+        // then
+        assertNotNull(queued.getResult().get(10, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void whenAProductIsSubmittedAfterTheApplicationStopped_thenItIsRefusedInsteadOfLeftWaiting() throws Exception {
+
+        // given
+        underTest = queue(100);
+        willAnswer(this::blockFirstBatch).given(productImportService).importProducts(any());
+        release.countDown();
+        underTest.destroy();
+
+        // when
+        ServiceUnavailableException refused = assertThrows(ServiceUnavailableException.class,
+                () -> underTest.submit(product("För sent")));
+
+        // then
+        assertEquals(new ProductIngestionProperties().getRetryAfter(), refused.getRetryAfter());
+        then(productImportService).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void whenWritingABatchThrowsAnError_thenItsProductsFailAndTheNextBatchIsStillWritten() throws Exception {
+
+        // given
+        underTest = queue(100);
+        willThrow(new StackOverflowError("för djupt"))
+                .willAnswer(this::blockFirstBatch)
+                .given(productImportService).importProducts(any());
+        ProductIngestionQueue.Ingestion failing = underTest.submit(product("Misslyckas"));
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> failing.getResult().get(10, TimeUnit.SECONDS));
+
+        // when
+        release.countDown();
+        ProductIngestionQueue.Ingestion next = underTest.submit(product("Nästa"));
+
+        // then
+        assertInstanceOf(StackOverflowError.class, failure.getCause());
+        assertEquals(ProductIngestion.Status.REJECTED, underTest.getStatus(failing.getTicket()).getStatus());
+        assertNotNull(next.getResult().get(10, TimeUnit.SECONDS).getId());
+    }
+
+    private ProductIngestionQueue queue(int capacity) {
+        ProductIngestionProperties properties = new ProductIngestionProperties();
+        properties.setEnabled(true);
+        properties.setQueueCapacity(capacity);
+        return new ProductIngestionQueue(productImportService, properties);
+    }
+
+    /**
+     * Creates every product, holding the first batch until the test releases it.
+     */
+    private ImportResult blockFirstBatch(InvocationOnMock invocation) throws InterruptedException {
+        if (batchSizes.isEmpty()) {
+            writing.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+        }
+        Iterator<Product> products = invocation.getArgument(0);
+        List<ImportItemResult> results = new ArrayList<>();
+        for (int index = 0; products.hasNext(); index++) {
+            Product product = products.next();
+            product.setId(ids.incrementAndGet());
+            results.add(ImportItemResult.created(index, product.getId()));
+        }
+        batchSizes.add(results.size());
+        return new ImportResult(results);
+    }
+
+    private static Product product(String title) {
+        return new Product(title, 10.0, "electronics", "bra att ha", "url");
+    }
+}
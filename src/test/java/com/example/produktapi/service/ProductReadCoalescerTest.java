@@ -0,0 +1,132 @@
+package com.example.produktapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+class ProductReadCoalescerTest {
+
+    private static final int REQUESTS = 50;
+
+    private final ProductService productService = mock(ProductService.class);
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void whenIdenticalReadsArriveWhileOneIsRunning_thenTheyShareItWithoutBlocking() throws Exception {
+
+        // given
+        ProductReadCoalescer underTest = coalescer(Duration.ofSeconds(10));
+        given(productService.getAllCategories()).willAnswer(invocation -> blockingLoad(List.of("electronics")));
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(underTest::getAllCategories)
+                .thenCompose(result -> result);
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // when
+        List<CompletableFuture<List<String>>> joined = new ArrayList<>();
+        for (int i = 1; i < REQUESTS; i++) {
+            joined.add(underTest.getAllCategories());
+        }
+        boolean anyDoneBeforeTheLoad = joined.stream().anyMatch(CompletableFuture::isDone);
+        release.countDown();
+
+        // then
+        assertFalse(anyDoneBeforeTheLoad);
+        List<String> categories = first.get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<List<String>> result : joined) {
+            assertSame(categories, result.get(10, TimeUnit.SECONDS));
+        }
+        verify(productService, times(1)).getAllCategories();
+    }
+
+    @Test
+    void whenTheSharedReadFails_thenEveryRequestThatJoinedItGetsTheFailure() throws Exception {
+
+        // given
+        ProductReadCoalescer underTest = coalescer(Duration.ofSeconds(10));
+        given(productService.getAllCategories()).willAnswer(invocation -> {
+            blockingLoad(null);
+            throw new IllegalStateException("databasen svarar inte");
+        });
+        CompletableFuture<Void> first = CompletableFuture.runAsync(underTest::getAllCategories);
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // when
+        CompletableFuture<List<String>> joined = underTest.getAllCategories();
+        release.countDown();
+
+        // then
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> joined.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void whenAJoinedReadTakesLongerThanTheTimeout_thenTheWaiterGivesUpAndTheNextRequestReadsAgain() throws Exception {
+
+        // given
+        ProductReadCoalescer underTest = coalescer(Duration.ofMillis(100));
+        given(productService.getAllCategories())
+                .willAnswer(invocation -> blockingLoad(List.of("electronics")))
+                .willReturn(List.of("jewelery"));
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(underTest::getAllCategories)
+                .thenCompose(result -> result);
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // when
+        CompletableFuture<List<String>> joined = underTest.getAllCategories();
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> joined.get(10, TimeUnit.SECONDS));
+        List<String> next = underTest.getAllCategories().get(10, TimeUnit.SECONDS);
+        release.countDown();
+
+        // then
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+        assertEquals(List.of("jewelery"), next);
+        assertEquals(List.of("electronics"), first.get(10, TimeUnit.SECONDS));
+        verify(productService, times(2)).getAllCategories();
+    }
+
+    @Test
+    void whenAWriteCommitsDuringARead_thenLaterRequestsDoNotJoinTheReadThatStartedBeforeIt() throws Exception {
+
+        // given
+        ProductReadCoalescer underTest = coalescer(Duration.ofSeconds(10));
+        given(productService.getAllCategories())
+                .willAnswer(invocation -> blockingLoad(List.of("electronics")))
+                .willReturn(List.of("electronics", "jewelery"));
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(underTest::getAllCategories)
+                .thenCompose(result -> result);
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // when
+        underTest.onProductsChanged(new ProductChangedEvent(List.of()));
+        List<String> afterTheWrite = underTest.getAllCategories().get(10, TimeUnit.SECONDS);
+        release.countDown();
+
+        // then
+        assertEquals(List.of("electronics", "jewelery"), afterTheWrite);
+        assertEquals(List.of("electronics"), first.get(10, TimeUnit.SECONDS));
+    }
+
+    private ProductReadCoalescer coalescer(Duration timeout) {
+        SingleFlightProperties properties = new SingleFlightProperties();
+        properties.setTimeout(timeout);
+        return new ProductReadCoalescer(productService, properties);
+    }
+
+    private <T> T blockingLoad(T result) throws InterruptedException {
+        loading.countDown();
+        assertTrue(release.await(10, TimeUnit.SECONDS));
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private final ProductSearchIndex underTest = new ProductSearchIndex(2, 50);
+
+    {
+        underTest.addAll(List.of(
+                product(1, "Fjallraven Backpack", "Fin väska me plats för dator"),
+                product(2, "Mens Cotton Jacket", "Bomullsjacka, vad finns det mer att säga?!"),
+                product(3, "Silver Dragon Bracelet", "Silver drakens återkomst. Ett måste om man vill ha den!"),
+                product(4, "Väska", "En väska för datorn, väska för resan"),
+                product(5, "Rain Jacket", "Regnjacka i silver")));
+    }
+
+    @Test
+    void whenTokenizing_thenSwedishLettersAreKeptAndOtherAccentsFolded() {
+
+        // then
+        assertEquals(List.of("återkomst", "väska", "för", "cafe", "smörgås", "ä", "ö"),
+                ProductSearchIndex.tokenize("ÅTERKOMST, Väska för Café smörgås! Æ ø"));
+    }
+
+    @Test
+    void whenSearchingWithDifferentCase_thenTheSwedishWordIsFound() {
+
+        // when
+        List<Product> result = underTest.search("ÅTERKOMST", 10);
+
+        // then
+        assertEquals(List.of(3), ids(result));
+    }
+
+    @Test
+    void whenSearchingForAPrefix_thenEveryWordStartingWithItMatches() {
+
+        // when
+        List<Product> result = underTest.search("dat", 10);
+
+        // then
+        assertEquals(List.of(4, 1), ids(result));
+    }
+
+    @Test
+    void whenSearchingForSeveralWords_thenOnlyProductsWithAllOfThemAreReturnedBestFirst() {
+
+        // when
+        List<Product> silverJacket = underTest.search("silver jacket", 10);
+        List<Product> bag = underTest.search("väska", 10);
+
+        // then
+        assertEquals(List.of(5), ids(silverJacket));
+        // a title match and the word three times outranks a single mention in the description
+        assertEquals(List.of(4, 1), ids(bag));
+    }
+
+    @Test
+    void whenMoreProductsMatchThanTheLimit_thenOnlyTheBestAreReturned() {
+
+        // when
+        List<Product> result = underTest.search("silver", 1);
+
+        // then
+        assertEquals(List.of(3), ids(result));
+        assertEquals(List.of(3, 5), ids(underTest.search("silver", 10)));
+    }
+
+    @Test
+    void whenProductsChange_thenTheIndexFollowsWithoutARebuild() {
+
+        // when
+        underTest.apply(List.of(
+                ProductChange.updated(null, product(4, "Ryggsäck", "Rymlig")),
+                ProductChange.deleted(1, null),
+                ProductChange.created(product(6, "Datorväska", "Skyddar datorn"))));
+
+        // then
+        assertEquals(List.of(6), ids(underTest.search("dat", 10)));
+        assertTrue(underTest.search("väska", 10).isEmpty());
+        assertEquals(List.of(4), ids(underTest.search("ryggsäck", 10)));
+        assertEquals(5, underTest.size());
+    }
+
+    @Test
+    void whenTheSearchStopsEarly_thenTheSameProductsAreFoundAsWhenEveryMatchIsScored() {
+
+        // given
+        String[] words = {"stol", "stolar", "bord", "lampa", "väska", "vas", "soffa", "matta", "hylla", "säng"};
+        Random random = new Random(7);
+        ProductSearchIndex index = new ProductSearchIndex(2, 50);
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= 2000; id++) {
+            products.add(product(id, sentence(words, random, 1 + random.nextInt(3)),
+                    sentence(words, random, random.nextInt(12))));
+        }
+        index.addAll(products);
+
+        for (String query : List.of("stol", "st", "väska bord", "vas lampa s", "hylla säng matta")) {
+
+            // when
+            List<Integer> top = ids(index.search(query, 5));
+
+            // then
+            List<Integer> all = ids(index.search(query, products.size()));
+            assertEquals(all.subList(0, Math.min(5, all.size())), top, query);
+        }
+    }
+
+    @Test
+    void whenManyProductsChange_thenTheIndexFindsTheSameAsOneBuiltFromTheResult() {
+
+        // given
+        String[] words = {"stol", "stolar", "bord", "lampa", "väska", "vas", "soffa", "matta", "hylla", "säng"};
+        Random random = new Random(11);
+        ProductSearchIndex index = new ProductSearchIndex(2, 50);
+        Map<Integer, Product> products = new TreeMap<>();
+        for (int id = 1; id <= 1000; id++) {
+            products.put(id, product(id, sentence(words, random, 1 + random.nextInt(3)),
+                    sentence(words, random, random.nextInt(12))));
+        }
+        index.addAll(products.values());
+
+        // when
+        for (int i = 0; i < 5000; i++) {
+            int id = 1 + random.nextInt(1000);
+            if (random.nextInt(4) == 0) {
+                products.remove(id);
+                index.apply(List.of(ProductChange.deleted(id, null)));
+            } else {
+                Product product = product(id, sentence(words, random, 1 + random.nextInt(3)),
+                        sentence(words, random, random.nextInt(12)));
+                products.put(id, product);
+                index.apply(List.of(ProductChange.updated(null, product)));
+            }
+        }
+
+        // then
+        ProductSearchIndex rebuilt = new ProductSearchIndex(2, 50);
+        rebuilt.addAll(products.values());
+        assertEquals(products.size(), index.size());
+        for (String query : List.of("stol", "st", "väska bord", "vas lampa s", "hylla säng matta")) {
+            List<Integer> all = ids(rebuilt.search(query, products.size()));
+            assertEquals(all, ids(index.search(query, products.size())), query);
+            assertEquals(all.subList(0, Math.min(5, all.size())), ids(index.search(query, 5)), query);
+        }
+    }
+
+    @Test
+    void whenAPrefixHasMoreCompletionsThanAllowed_thenTheMostCommonOnesAreSearched() {
+
+        // given
+        ProductSearchIndex index = new ProductSearchIndex(2, 2);
+        index.addAll(List.of(
+                product(1, "Bordlampa", "lampa"),
+                product(2, "Bordsduk", "duk"),
+                product(3, "Bordsskiva", "skiva"),
+                product(4, "Bordsskiva i ek", "skiva"),
+                product(5, "Bordsskiva i bok", "skiva"),
+                product(6, "Bordstablett", "tablett"),
+                product(7, "Bordstablett i linne", "tablett")));
+
+        // when
+        List<Product> result = index.search("bord", 10);
+
+        // then
+        assertEquals(List.of(3, 4, 5, 6, 7), ids(result).stream().sorted().toList());
+    }
+
+    private static String sentence(String[] words, Random random, int length) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sentence.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return sentence.toString();
+    }
+
+    private static List<Integer> ids(List<Product> result) {
+        return result.stream().map(Product::getId).toList();
+    }
+
+    private static Product product(int id, String title, String description) {
+        Product product = new Product(title, 100.0, "kategori", description, "url");
+        product.setId(id);
+        return product;
+    }
+}
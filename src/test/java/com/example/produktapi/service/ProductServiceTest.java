@@ -1,8 +1,16 @@
 package com.example.produktapi.service;
 
 import com.example.produktapi.exception.BadRequestException;
+import com.example.produktapi.exception.ConflictException;
 import com.example.produktapi.exception.EntityNotFoundException;
 import com.example.produktapi.model.Product;
+import com.example.produktapi.model.ProductCursor;
+import com.example.produktapi.model.ProductField;
+import com.example.produktapi.model.ProductFilter;
+import com.example.produktapi.model.ProductLookup;
+import com.example.produktapi.model.ProductPage;
+import com.example.produktapi.model.ProductSort;
+import com.example.produktapi.model.ProductView;
 import com.example.produktapi.repository.ProductRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,7 +19,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.times;
@@ -22,6 +38,21 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Spy
+    private ProductCache productCache = new ProductCache(new ProductCacheProperties());
+
+    @Mock
+    private CatalogSnapshots catalogSnapshots;
+
+    @Mock
+    private CategoryStatistics categoryStatistics;
+
+    @Spy
+    private ProductChangeLog productChangeLog = new ProductChangeLog(null);
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ProductService underTest;
 
@@ -123,7 +154,7 @@ class ProductServiceTest {
     }
 
     @Test
-    void whenAddingAProduct_thenSaveMethodShouldBeInvokedOnceAndFindByTitleOnceAndTheSameProductUsedAsTheSaveParameterIsTheSameAsAddProduct() {
+    void whenAddingAProduct_thenSaveMethodShouldBeInvokedOnceAndTheSameProductUsedAsTheSaveParameterIsTheSameAsAddProduct() {
 
         // given
         Product product = new Product(
@@ -133,15 +164,15 @@ class ProductServiceTest {
                 "Description of item",
                 "URL");
 
+        given(productRepository.save(product)).willReturn(product);
+
         // when
         underTest.addProduct(product);
 
         // then
         verify(productRepository, times(1)).save(productCaptor.capture());
-        verify(productRepository, times(1)).findByTitle(stringCaptor.capture());
         verifyNoMoreInteractions(productRepository);
         assertEquals(product, productCaptor.getValue());
-        assertEquals(product.getTitle(), stringCaptor.getValue());
 
     }
 
@@ -157,7 +188,8 @@ class ProductServiceTest {
                 "Description of item",
                 "URL");
 
-        given(productRepository.findByTitle(product.getTitle())).willReturn(Optional.of(product));
+        given(productRepository.save(product)).willThrow(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", null, "PUBLIC.UK_PRODUCT_TITLE_INDEX_1")));
 
         // when
 
@@ -166,14 +198,29 @@ class ProductServiceTest {
                 // when
                 ()-> underTest.addProduct(product));
 
-        verify(productRepository, times(1)).findByTitle(title);
+        verify(productRepository, times(1)).save(product);
         verifyNoMoreInteractions(productRepository);
+        verifyNoInteractions(eventPublisher);
         assertEquals("En produkt med titeln: " + title + " finns redan", exception.getMessage());
 
     }
 
     @Test
-    void whenUpdatingProductWithAValidExistingProduct_saveMethodIsCalledOnceAndReturnsTheNewProduct() {
+    void whenAddingAProductViolatesAnotherConstraint_thenTheOriginalExceptionIsThrown() {
+
+        // given
+        Product product = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        given(productRepository.save(product)).willThrow(new DataIntegrityViolationException("other",
+                new ConstraintViolationException("other", null, "PUBLIC.CONSTRAINT_8")));
+
+        // then
+        assertThrows(DataIntegrityViolationException.class,
+                // when
+                () -> underTest.addProduct(product));
+    }
+
+    @Test
+    void whenUpdatingProductWithAValidExistingProduct_updateReturningByIdIsCalledOnceAndReturnsTheUpdatedProduct() {
 
         // given
         Product productNew = new Product(
@@ -184,29 +231,33 @@ class ProductServiceTest {
                 "URL");
 
         Product productOld = new Product(
-                "Computor",
-                33.0,
+                "Dator",
+                25.0,
                 "Electronics",
                 "Description of item",
                 "URL");
 
         productOld.setId(1);
+        productOld.setVersion(1);
 
-        given(productRepository.findById(any())).willReturn(Optional.of(productOld));
+        given(productRepository.updateReturningById(any(), any())).willReturn(Optional.of(productOld));
 
         // when
-        underTest.updateProduct(productNew, productOld.getId());
+        Product result = underTest.updateProduct(productNew, productOld.getId());
 
         // then
-        verify(productRepository, times(1)).save(productCaptor.capture());
-        verify(productRepository, times(1)).findById(idCaptor.capture());
+        verify(productRepository, times(1)).updateReturningById(idCaptor.capture(), productCaptor.capture());
         verifyNoMoreInteractions(productRepository);
         assertEquals(productNew, productCaptor.getValue());
         assertEquals(productOld.getId(), idCaptor.getValue());
+        assertEquals(1, result.getId());
+        assertEquals(2, result.getVersion());
+        assertEquals("Computor", result.getTitle());
+        assertEquals(35.0, result.getPrice());
     }
 
     @Test
-    void whenUpdatingProductWithANonExistingProduct_saveMethodIsNotCalledAndExceptionIsThrown() {
+    void whenUpdatingProductWithANonExistingProduct_exceptionIsThrown() {
 
         // given
         Product productNew = new Product(
@@ -218,7 +269,7 @@ class ProductServiceTest {
 
         Integer inputId = 10;
 
-        given(productRepository.findById(any())).willReturn(Optional.empty());
+        given(productRepository.updateReturningById(any(), any())).willReturn(Optional.empty());
 
         // then
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
@@ -226,14 +277,31 @@ class ProductServiceTest {
                 ()-> underTest.updateProduct(productNew, inputId));
 
         // then
-        verify(productRepository, times(1)).findById(inputId);
+        verify(productRepository, times(1)).updateReturningById(inputId, productNew);
         verifyNoMoreInteractions(productRepository);
+        verifyNoInteractions(eventPublisher);
         assertEquals("Produkt med id " + inputId +" hittades inte", exception.getMessage());
 
     }
 
     @Test
-    void whenDeletingAnExistingProduct_deleteByIdMethodShouldBeInvokedOnce() {
+    void whenUpdatingProductWithAStaleVersion_conflictExceptionIsThrown() {
+
+        // given
+        Product productNew = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        given(productRepository.updateReturningByIdAndVersion(1, 2, productNew)).willReturn(Optional.empty());
+        given(productRepository.existsById(1)).willReturn(true);
+
+        // then
+        assertThrows(ConflictException.class,
+                // when
+                () -> underTest.updateProduct(productNew, 1, 2));
+
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void whenDeletingAnExistingProduct_deleteReturningByIdMethodShouldBeInvokedOnce() {
 
         // given
         Product product = new Product(
@@ -245,14 +313,13 @@ class ProductServiceTest {
 
         product.setId(1);
 
-        given(productRepository.findById(any())).willReturn(Optional.of(product));
+        given(productRepository.deleteReturningById(any())).willReturn(Optional.of(product));
 
         // when
         underTest.deleteProduct(product.getId());
 
         // then
-        verify(productRepository, times(1)).deleteById(product.getId());
-        verify(productRepository, times(1)).findById(product.getId());
+        verify(productRepository, times(1)).deleteReturningById(product.getId());
         verifyNoMoreInteractions(productRepository);
 
     }
@@ -262,7 +329,7 @@ class ProductServiceTest {
 
         // given
         Integer inputId = 10;
-        given(productRepository.findById(any())).willReturn(Optional.empty());
+        given(productRepository.deleteReturningById(any())).willReturn(Optional.empty());
 
         // when
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
@@ -270,9 +337,177 @@ class ProductServiceTest {
                 ()-> underTest.deleteProduct(inputId));
 
         // then
-        verify(productRepository, times(1)).findById(inputId);
+        verify(productRepository, times(1)).deleteReturningById(inputId);
         verifyNoMoreInteractions(productRepository);
         assertEquals("Produkt med id " + inputId + " hittades inte", exception.getMessage());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenDeletingWithAnExpectedVersionThatIsStale_conflictExceptionIsThrown() {
+
+        // given
+        given(productRepository.deleteReturningByIdAndVersion(1, 0)).willReturn(Optional.empty());
+        given(productRepository.existsById(1)).willReturn(true);
+
+        // then
+        assertThrows(ConflictException.class,
+                // when
+                () -> underTest.deleteProduct(1, 0));
+    }
+
+    @Test
+    void whenGetProductPageFindsMoreProductsThanTheLimit_thenPageIsTrimmedAndNextCursorPointsAtLastProduct() {
+
+        // given
+        Product first = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        first.setId(1);
+        Product second = new Product("Monitor", 45.0, "Electronics", "Description of item", "URL");
+        second.setId(2);
+        given(productRepository.findPage(any(), any(), any(), anyInt())).willReturn(List.of(first, second));
+
+        // when
+        ProductPage<Product> page = underTest.getProductPage("Electronics", "price", null, 1);
+
+        // then
+        verify(productRepository, times(1)).findPage(ProductFilter.category("Electronics"), ProductSort.PRICE, null, 2);
+        verifyNoMoreInteractions(productRepository);
+        assertEquals(List.of(first), page.getItems());
+        ProductCursor cursor = ProductCursor.decode(page.getNextCursor(), ProductSort.PRICE);
+        assertEquals(first.getId(), cursor.getId());
+        assertEquals(first.getPrice(), cursor.getValue());
+    }
+
+    @Test
+    void whenAFieldsPageIsRequested_thenTheCursorIsMadeFromTheRowAndOnlyTheRequestedFieldsAreReturned() {
+
+        // given
+        Map<String, Object> first = new LinkedHashMap<>(Map.of("id", 1, "title", "Computor", "price", 35.0));
+        Map<String, Object> second = new LinkedHashMap<>(Map.of("id", 2, "title", "Monitor", "price", 45.0));
+        given(productRepository.findFieldsPage(any(), any(), any(), anyInt(), any())).willReturn(List.of(first, second));
+        ProductView view = ProductView.fromParameters("title", null);
+
+        // when
+        ProductPage<?> page = underTest.getProductPage("Electronics", view, "price", null, 1);
+
+        // then
+        verify(productRepository, times(1)).findFieldsPage(ProductFilter.category("Electronics"), ProductSort.PRICE,
+                null, 2, EnumSet.of(ProductField.TITLE));
+        verifyNoMoreInteractions(productRepository);
+        assertEquals(List.of(Map.of("title", "Computor")), page.getItems());
+        ProductCursor cursor = ProductCursor.decode(page.getNextCursor(), ProductSort.PRICE);
+        assertEquals(1, cursor.getId());
+        assertEquals(35.0, cursor.getValue());
+    }
+
+    @Test
+    void whenGetProductPageIsGivenACursorForAnotherSort_thenBadRequestExceptionIsThrown() {
+
+        // given
+        Product product = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        product.setId(1);
+        String cursor = ProductCursor.after(product, ProductSort.ID).encode();
+
+        // then
+        assertThrows(BadRequestException.class,
+                // when
+                () -> underTest.getProductPage(null, "title", cursor, 10));
+
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void whenGetProductByIdIsCalledTwice_findByIdIsInvokedOnlyOnce() {
+
+        // given
+        Product product = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        product.setId(1);
+        given(productRepository.findById(1)).willReturn(Optional.of(product));
+
+        // when
+        underTest.getProductById(1);
+        Product cached = underTest.getProductById(1);
+
+        // then
+        verify(productRepository, times(1)).findById(1);
+        verifyNoMoreInteractions(productRepository);
+        assertEquals(product, cached);
+    }
+
+    @Test
+    void whenUpdatingAProduct_aChangedEventWithTheOldAndNewProductIsPublished() {
+
+        // given
+        Product productNew = new Product("Computor", 35.0, "Computers", "Description of item", "URL");
+        Product productOld = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        productOld.setId(1);
+        productOld.setVersion(1);
+        given(productRepository.updateReturningById(1, productNew)).willReturn(Optional.of(productOld));
+        ArgumentCaptor<ProductChangedEvent> eventCaptor = ArgumentCaptor.forClass(ProductChangedEvent.class);
+
+        // when
+        Product result = underTest.updateProduct(productNew, 1);
+
+        // then
+        verify(eventPublisher, times(1)).publishEvent(eventCaptor.capture());
+        ProductChange change = eventCaptor.getValue().getChanges().get(0);
+        assertEquals(ProductChange.Type.UPDATED, change.getType());
+        assertEquals(1, change.getId());
+        assertEquals(productOld, change.getBefore());
+        assertEquals(result, change.getAfter());
+    }
+
+    @Test
+    void whenASnapshotIsAvailable_getProductByIdIsServedWithoutTheRepository() {
+
+        // given
+        Product product = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        product.setId(1);
+        given(catalogSnapshots.current()).willReturn(CatalogSnapshot.of(List.of(product)));
+
+        // when
+        Product found = underTest.getProductById(1);
+
+        // then
+        verifyNoInteractions(productRepository);
+        assertEquals("Computor", found.getTitle());
+    }
+
+    @Test
+    void whenGetProductsByIdsIsCalled_thenOneFindAllByIdQueryRunsAndOrderAndMissingIdsAreKept() {
+
+        // given
+        Product first = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        first.setId(3);
+        Product second = new Product("Monitor", 45.0, "Electronics", "Description of item", "URL");
+        second.setId(1);
+        given(productRepository.findAllById(any())).willReturn(List.of(second, first));
+
+        // when
+        ProductLookup lookup = underTest.getProductsByIds(List.of(3, 7, 1, 3));
+
+        // then
+        verify(productRepository, times(1)).findAllById(List.of(3, 7, 1));
+        verifyNoMoreInteractions(productRepository);
+        assertEquals(List.of(first, second), lookup.getProducts());
+        assertEquals(List.of(7), lookup.getMissingIds());
+    }
+
+    @Test
+    void whenGetProductsByIdsIsCalledForCachedProducts_thenOnlyTheOthersAreQueried() {
+
+        // given
+        Product cached = new Product("Computor", 35.0, "Electronics", "Description of item", "URL");
+        cached.setId(1);
+        given(productRepository.findById(1)).willReturn(Optional.of(cached));
+        underTest.getProductById(1);
+
+        // when
+        ProductLookup lookup = underTest.getProductsByIds(List.of(1, 2));
+
+        // then
+        verify(productRepository, times(1)).findAllById(List.of(2));
+        assertEquals(List.of(cached), lookup.getProducts());
+        assertEquals(List.of(2), lookup.getMissingIds());
+    }
+}
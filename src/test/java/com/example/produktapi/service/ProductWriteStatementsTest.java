@@ -0,0 +1,111 @@
+package com.example.produktapi.service;
+
+import com.example.produktapi.exception.ConflictException;
+import com.example.produktapi.model.Product;
+import com.example.produktapi.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the JDBC statements each write in {@link ProductService} sends to the database. The writes commit, so
+ * every test changes only products it added itself and leaves the seed data other tests read alone.
+ */
+@DataJpaTest(showSql = false)
+@Import({ProductService.class, ProductCache.class, CatalogSnapshots.class, CategoryStatistics.class,
+        ProductChangeLog.class})
+@EnableConfigurationProperties(ProductCacheProperties.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductWriteStatementsTest {
+
+    @Autowired
+    private ProductService underTest;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // reserves a block of ids so the sequence call is not counted against the insert below
+        underTest.addProduct(new Product("Uppvärmning " + System.nanoTime(), 1.0, "electronics", "bra", "url"));
+        statistics.clear();
+    }
+
+    @Test
+    void whenAddingAProduct_thenOneStatementIsSent() {
+
+        // when
+        Product created = underTest.addProduct(new Product("Ny dator", 25000.0, "electronics", "bra att ha", "url"));
+
+        // then
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertNotNull(created.getId());
+    }
+
+    @Test
+    void whenUpdatingAProduct_thenOneStatementIsSentAndTheNewVersionReturned() {
+
+        // given
+        Product product = underTest.addProduct(new Product("Ska uppdateras", 1.0, "jewelery", "gammal", "url"));
+        statistics.clear();
+        Product update = new Product("Uppdaterad titel", 1.0, "jewelery", "ny", "url");
+
+        // when
+        Product updated = underTest.updateProduct(update, product.getId(), product.getVersion());
+
+        // then
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(product.getVersion() + 1, updated.getVersion());
+        assertEquals("Uppdaterad titel", productRepository.findById(product.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void whenUpdatingWithAStaleVersion_thenTheProductIsLeftAloneAndAConflictReported() {
+
+        // given
+        Product product = underTest.addProduct(new Product("Ska uppdateras två gånger", 1.0, "jewelery", "gammal", "url"));
+        Integer id = product.getId();
+        underTest.updateProduct(new Product("Första versionen", 1.0, "jewelery", "ny", "url"), id, product.getVersion());
+
+        // then
+        assertThrows(ConflictException.class,
+                // when
+                () -> underTest.updateProduct(new Product("Andra versionen", 1.0, "jewelery", "ny", "url"), id,
+                        product.getVersion()));
+
+        assertEquals("Första versionen", productRepository.findById(id).orElseThrow().getTitle());
+    }
+
+    @Test
+    void whenDeletingAProduct_thenOneStatementIsSent() {
+
+        // given
+        Product product = underTest.addProduct(new Product("Ska bort", 1.0, "electronics", "bra", "url"));
+        statistics.clear();
+
+        // when
+        underTest.deleteProduct(product.getId());
+
+        // then
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(productRepository.findById(product.getId()).isEmpty());
+    }
+}